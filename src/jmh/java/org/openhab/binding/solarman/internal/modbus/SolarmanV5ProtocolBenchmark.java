@@ -0,0 +1,74 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks encoding the request frames and decoding the response frames, using a response recorded from a
+ * SUN-10K-SG04LP3-EU inverter.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolarmanV5ProtocolBenchmark {
+    private static final String RECORDED_RESPONSE = "a53b0010150007482ee38d020121d0060091010000403e486301032800ffffff160a12"
+            + "162420ffffffffffffffffffffffffffffffffffff0001ffff0001ffff000003e81fa45115";
+    private static final int FIRST_REGISTER = 0x3c;
+    private static final int LAST_REGISTER = 0x4f;
+    private static final int MODBUS_RESPONSE_OFFSET = 25;
+
+    private SolarmanV5Protocol solarmanV5Protocol;
+    private byte[] requestFrame;
+    private byte[] responseFrame;
+    private RegisterBank registerBank;
+
+    @Setup
+    public void setUp() {
+        solarmanV5Protocol = new SolarmanV5Protocol(
+                new SolarmanLoggerConfiguration("192.168.1.1", 8899, "1234567890", "deye_sg04lp3", 60, null));
+        requestFrame = solarmanV5Protocol.buildSolarmanV5Frame(0, (byte) 0x03, FIRST_REGISTER, LAST_REGISTER).clone();
+        responseFrame = HexFormat.of().parseHex(RECORDED_RESPONSE);
+        registerBank = new RegisterBank();
+    }
+
+    @Benchmark
+    public byte[] buildSolarmanV5Frame() {
+        return solarmanV5Protocol.buildSolarmanV5Frame(0, (byte) 0x03, FIRST_REGISTER, LAST_REGISTER);
+    }
+
+    @Benchmark
+    public int calculateCrc() {
+        return CRC16Modbus.calculate(responseFrame, MODBUS_RESPONSE_OFFSET, responseFrame.length
+                - MODBUS_RESPONSE_OFFSET - 4);
+    }
+
+    @Benchmark
+    public boolean isValidResponseFrame() {
+        return solarmanV5Protocol.isValidResponseFrame(responseFrame, requestFrame, false);
+    }
+
+    @Benchmark
+    public boolean parseModbusReadHoldingRegistersResponse() {
+        registerBank.clear();
+        return solarmanV5Protocol.parseModbusReadHoldingRegistersResponse(responseFrame, MODBUS_RESPONSE_OFFSET,
+                responseFrame.length - MODBUS_RESPONSE_OFFSET - 2, FIRST_REGISTER, LAST_REGISTER, false,
+                registerBank);
+    }
+}
@@ -0,0 +1,154 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.solarman.internal.DefinitionParser;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.binding.solarman.internal.modbus.CRC16Modbus;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnection;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
+import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.openhab.binding.solarman.internal.planner.SolarmanRequestPlanner;
+import org.openhab.binding.solarman.internal.state.LoggerState;
+import org.openhab.core.thing.ChannelUID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a whole polling cycle for every bundled definition, from sending the requests to publishing the channel
+ * states, without the network. The logger is replaced by a connection answering every request with a valid frame,
+ * built from the definition, in which all the registers hold a value every rule can decode.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolarmanChannelUpdaterBenchmark {
+    // Decodes as a valid date and time too: 23/1/23 1:23:1
+    private static final short REGISTER_VALUE = 0x1701;
+
+    @Param({"deye_2mppt", "deye_4mppt", "deye_hybrid", "deye_sg04lp3", "deye_string", "kstar_hybrid", "sofar_g3hyd",
+            "sofar_hyd3k-6k-es", "sofar_lsw3", "sofar_wifikit", "solis_1p8k-5g", "solis_hybrid",
+            "zcs_azzurro-ktl-v3"})
+    public String inverterType;
+
+    private final LoggerState loggerState = new LoggerState();
+    private List<Request> requests;
+    private Map<ParameterItem, ChannelUID> paramToChannelMapping;
+    private SolarmanLoggerConnector solarmanLoggerConnector;
+    private SolarmanV5Protocol solarmanV5Protocol;
+    private SolarmanChannelUpdater solarmanChannelUpdater;
+    private int publishedStates;
+
+    @Setup
+    public void setUp() {
+        InverterDefinition inverterDefinition = Objects.requireNonNull(
+                new DefinitionParser().parseDefinition(inverterType));
+        requests = new SolarmanRequestPlanner(0).planRequests(inverterDefinition.getRequests());
+
+        paramToChannelMapping = new HashMap<>();
+        inverterDefinition.getParameters().stream()
+                .flatMap(parameter -> parameter.getItems().stream())
+                .forEach(parameterItem -> paramToChannelMapping.put(parameterItem,
+                        new ChannelUID("solarman:logger:benchmark:channel" + paramToChannelMapping.size())));
+
+        Map<Integer, byte[]> responseFrames = new HashMap<>();
+        requests.forEach(request -> responseFrames.put(request.getStart(), buildResponseFrame(request)));
+
+        SolarmanLoggerConfiguration config = new SolarmanLoggerConfiguration("127.0.0.1", 8899, "1234567890",
+                inverterType, 60, null);
+        SolarmanLoggerConnection solarmanLoggerConnection = new ReplayingConnection(responseFrames);
+        solarmanLoggerConnector = new SolarmanLoggerConnector(config) {
+            @Override
+            public SolarmanLoggerConnection createConnection() {
+                return solarmanLoggerConnection;
+            }
+        };
+        solarmanV5Protocol = new SolarmanV5Protocol(config);
+        // Publish every state, unchanged registers would otherwise not be decoded again
+        solarmanChannelUpdater = new SolarmanChannelUpdater((channelUID, state) -> publishedStates++,
+                paramToChannelMapping.keySet(), Map.of(), 0);
+    }
+
+    @Benchmark
+    public int fetchDataFromLogger() {
+        solarmanChannelUpdater.fetchDataFromLogger(requests, solarmanLoggerConnector, solarmanV5Protocol,
+                paramToChannelMapping, loggerState).join();
+        return publishedStates;
+    }
+
+    private static byte[] buildResponseFrame(Request request) {
+        int registerCount = request.getEnd() - request.getStart() + 1;
+        // Slave address, function code, byte count, the registers and the CRC
+        int modbusLength = 3 + registerCount * 2 + 2;
+        int payloadLength = 14 + modbusLength;
+        byte[] frame = new byte[11 + payloadLength + 2];
+
+        frame[0] = (byte) 0xA5;
+        frame[1] = (byte) payloadLength;
+        frame[2] = (byte) (payloadLength >> 8);
+        frame[3] = (byte) 0x10;
+        frame[4] = (byte) 0x15;
+        frame[11] = (byte) 0x02;
+        frame[12] = (byte) 0x01;
+
+        int modbusOffset = 25;
+        frame[modbusOffset] = (byte) 0x01;
+        frame[modbusOffset + 1] = (byte) request.getMbFunctioncode().intValue();
+        frame[modbusOffset + 2] = (byte) (registerCount * 2);
+        for (int i = 0; i < registerCount; i++) {
+            frame[modbusOffset + 3 + i * 2] = (byte) (REGISTER_VALUE >> 8);
+            frame[modbusOffset + 4 + i * 2] = (byte) REGISTER_VALUE;
+        }
+        int crc = CRC16Modbus.calculate(frame, modbusOffset, modbusLength - 2);
+        frame[modbusOffset + modbusLength - 2] = (byte) crc;
+        frame[modbusOffset + modbusLength - 1] = (byte) (crc >> 8);
+
+        frame[frame.length - 1] = (byte) 0x15;
+        return frame;
+    }
+
+    /**
+     * Answers every request with the frame built for the first register it reads
+     */
+    private static class ReplayingConnection extends SolarmanLoggerConnection {
+        private final Map<Integer, byte[]> responseFrames;
+
+        private ReplayingConnection(Map<Integer, byte[]> responseFrames) {
+            super("127.0.0.1", 8899);
+            this.responseFrames = responseFrames;
+        }
+
+        @Override
+        public byte[] sendRequest(byte[] reqFrame, Boolean allowLogging) {
+            int firstRegister = ((reqFrame[28] & 0xFF) << 8) | (reqFrame[29] & 0xFF);
+            return responseFrames.getOrDefault(firstRegister, new byte[0]);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> sendRequestAsync(byte[] reqFrame, Boolean allowLogging) {
+            return CompletableFuture.completedFuture(sendRequest(reqFrame, allowLogging));
+        }
+    }
+}
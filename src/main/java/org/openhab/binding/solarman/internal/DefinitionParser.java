@@ -14,9 +14,13 @@ package org.openhab.binding.solarman.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.defmodel.LookupTable;
+import org.openhab.core.library.types.StringType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +36,8 @@ public class DefinitionParser {
     private final Logger logger = LoggerFactory.getLogger(DefinitionParser.class);
 
     private final ObjectMapper mapper;
+    // The states of the lookup labels, shared by all the definitions parsed
+    private final Map<String, StringType> internedStates = new ConcurrentHashMap<>();
 
     public DefinitionParser() {
         mapper = new ObjectMapper(new YAMLFactory());
@@ -49,6 +55,15 @@ public class DefinitionParser {
             InverterDefinition inverterDefinition = mapper.readValue(is, InverterDefinition.class);
             inverterDefinition.setInverterDefinitionId(definitionId);
 
+            // Items inherit the polling tier of their group unless they have their own
+            inverterDefinition.getParameters().forEach(parameter -> parameter.getItems().stream()
+                    .filter(item -> item.getPollingTier() == null)
+                    .forEach(item -> item.setPollingTier(parameter.getPollingTier())));
+
+            // Lookups are compiled up front, so decoding them while polling does not build any state
+            inverterDefinition.getParameters().forEach(parameter -> parameter.getItems()
+                    .forEach(item -> item.setLookupTable(LookupTable.compile(item.getLookup(), internedStates))));
+
             return inverterDefinition;
         } catch (IOException e) {
             logger.error("Error parsing definition with ID: {}", definitionId, e);
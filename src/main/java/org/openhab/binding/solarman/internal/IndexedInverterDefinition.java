@@ -0,0 +1,39 @@
+package org.openhab.binding.solarman.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.typeprovider.ChannelUtils;
+import org.openhab.core.thing.type.ChannelTypeUID;
+
+/**
+ * The {@link IndexedInverterDefinition} is a parsed {@link InverterDefinition} along with the index built once for
+ * all its users: the parameter of each channel type.
+ * <p>
+ * The definition is shared by all the things using it and must not be modified.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class IndexedInverterDefinition {
+    private final InverterDefinition inverterDefinition;
+    private final Map<ChannelTypeUID, ParameterItem> parameterItemsByChannelType = new LinkedHashMap<>();
+
+    public IndexedInverterDefinition(InverterDefinition inverterDefinition) {
+        this.inverterDefinition = inverterDefinition;
+
+        inverterDefinition.getParameters().forEach(parameter -> parameter.getItems().forEach(item ->
+                parameterItemsByChannelType.put(ChannelUtils.computeChannelTypeId(
+                        inverterDefinition.getInverterDefinitionId(), parameter.getGroup(), item.getName()), item)));
+    }
+
+    public InverterDefinition getInverterDefinition() {
+        return inverterDefinition;
+    }
+
+    public Map<ChannelTypeUID, ParameterItem> getParameterItemsByChannelType() {
+        return Collections.unmodifiableMap(parameterItemsByChannelType);
+    }
+}
@@ -27,4 +27,16 @@ public class SolarmanBindingConstants {
     public static final String SOLARMAN_BINDING_ID = "solarman";
     public static final ThingTypeUID THING_TYPE_SOLARMAN_LOGGER = new ThingTypeUID(SOLARMAN_BINDING_ID, "logger");
     public static final String DYNAMIC_CHANNEL = "dynamic_channel";
+    public static final String POLLING_MODE_VIRTUAL = "virtual";
+
+    // Diagnostic channels
+    public static final String CHANNEL_GROUP_DIAGNOSTICS = "diagnostics";
+    public static final String CHANNEL_POLL_DURATION = "pollDuration";
+    public static final String CHANNEL_ROUND_TRIP_TIME = "roundTripTime";
+    public static final String CHANNEL_BYTES_SENT = "bytesSent";
+    public static final String CHANNEL_BYTES_RECEIVED = "bytesReceived";
+    public static final String CHANNEL_TIMEOUTS = "timeouts";
+    public static final String CHANNEL_RECONNECTS = "reconnects";
+    public static final String CHANNEL_CRC_ERRORS = "crcErrors";
+    public static final String CHANNEL_MODBUS_EXCEPTIONS = "modbusExceptions";
 }
@@ -0,0 +1,45 @@
+package org.openhab.binding.solarman.internal;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanDefinitionRegistry} parses each inverter definition once, the first time it is needed, and
+ * shares it between all the things and the channel type provider.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+@Component(service = SolarmanDefinitionRegistry.class)
+public class SolarmanDefinitionRegistry {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanDefinitionRegistry.class);
+    private final DefinitionParser definitionParser = new DefinitionParser();
+    // Definitions that could not be parsed are remembered as well, so they are not read again on every request
+    private final Map<String, Optional<IndexedInverterDefinition>> definitions = new ConcurrentHashMap<>();
+
+    /**
+     * @return the definition or null if it does not exist or can't be parsed
+     */
+    public @Nullable IndexedInverterDefinition getIndexedDefinition(String definitionId) {
+        return definitions.computeIfAbsent(definitionId, id -> {
+            LOGGER.debug("Parsing definition {}", id);
+            InverterDefinition inverterDefinition = definitionParser.parseDefinition(id);
+            return inverterDefinition == null ? Optional.empty()
+                    : Optional.of(new IndexedInverterDefinition(inverterDefinition));
+        }).orElse(null);
+    }
+
+    /**
+     * @return the definition or null if it does not exist or can't be parsed
+     */
+    public @Nullable InverterDefinition getDefinition(String definitionId) {
+        IndexedInverterDefinition indexedInverterDefinition = getIndexedDefinition(definitionId);
+        return indexedInverterDefinition == null ? null : indexedInverterDefinition.getInverterDefinition();
+    }
+}
@@ -16,6 +16,9 @@ import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnectorRegistry;
+import org.openhab.binding.solarman.internal.planner.SolarmanPollScheduler;
+import org.openhab.core.io.monitor.MeterRegistryProvider;
 import org.openhab.core.thing.Thing;
 import org.openhab.core.thing.ThingTypeUID;
 import org.openhab.core.thing.binding.BaseThingHandlerFactory;
@@ -24,6 +27,8 @@ import org.openhab.core.thing.binding.ThingHandlerFactory;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 
 /**
  * The {@link SolarmanHandlerFactory} is responsible for creating things and thing
@@ -36,6 +41,21 @@ import org.osgi.service.component.annotations.Reference;
 public class SolarmanHandlerFactory extends BaseThingHandlerFactory {
     private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Set
             .of(SolarmanBindingConstants.THING_TYPE_SOLARMAN_LOGGER);
+    private final SolarmanLoggerConnectorRegistry solarmanLoggerConnectorRegistry;
+    private final SolarmanDefinitionRegistry solarmanDefinitionRegistry;
+    private final SolarmanPollScheduler solarmanPollScheduler;
+    // Only there when the openHAB metrics are enabled
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private volatile @Nullable MeterRegistryProvider meterRegistryProvider;
+
+    @Activate
+    public SolarmanHandlerFactory(@Reference SolarmanLoggerConnectorRegistry solarmanLoggerConnectorRegistry,
+            @Reference SolarmanDefinitionRegistry solarmanDefinitionRegistry,
+            @Reference SolarmanPollScheduler solarmanPollScheduler) {
+        this.solarmanLoggerConnectorRegistry = solarmanLoggerConnectorRegistry;
+        this.solarmanDefinitionRegistry = solarmanDefinitionRegistry;
+        this.solarmanPollScheduler = solarmanPollScheduler;
+    }
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -47,7 +67,9 @@ public class SolarmanHandlerFactory extends BaseThingHandlerFactory {
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
         if (SolarmanBindingConstants.THING_TYPE_SOLARMAN_LOGGER.equals(thingTypeUID)) {
-            return new SolarmanLoggerHandler(thing);
+            MeterRegistryProvider meterRegistryProvider = this.meterRegistryProvider;
+            return new SolarmanLoggerHandler(thing, solarmanLoggerConnectorRegistry, solarmanDefinitionRegistry,
+                    solarmanPollScheduler, meterRegistryProvider == null ? null : meterRegistryProvider.getOHMeterRegistry());
         }
 
         return null;
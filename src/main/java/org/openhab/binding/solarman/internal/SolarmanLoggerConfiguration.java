@@ -31,8 +31,20 @@ public class SolarmanLoggerConfiguration {
     public String serialNumber = "";
     public String inverterType = "sg04lp3";
     public int refreshInterval = 30;
+    public int fastRefreshInterval = 5;
+    public int slowRefreshInterval = 600;
     @Nullable
     public String additionalRequests = "";
+    public boolean persistentConnection = true;
+    public int idleTimeout = 120;
+    public int maxRequestGap = 0;
+    public boolean pollLinkedChannelsOnly = true;
+    public int maxSilenceInterval = 300;
+    public String transport = "blocking";
+    public String pollingMode = "scheduler";
+    public int maxInFlightRequests = 1;
+    public int historyRetention = 0;
+    public int writeCoalescingWindow = 100;
 
     public SolarmanLoggerConfiguration() {
     }
@@ -67,8 +79,56 @@ public class SolarmanLoggerConfiguration {
         return refreshInterval;
     }
 
+    public int getFastRefreshInterval() {
+        return fastRefreshInterval;
+    }
+
+    public int getSlowRefreshInterval() {
+        return slowRefreshInterval;
+    }
+
     @Nullable
     public String getAdditionalRequests() {
         return additionalRequests;
     }
+
+    public boolean isPersistentConnection() {
+        return persistentConnection;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getMaxRequestGap() {
+        return maxRequestGap;
+    }
+
+    public boolean isPollLinkedChannelsOnly() {
+        return pollLinkedChannelsOnly;
+    }
+
+    public int getMaxSilenceInterval() {
+        return maxSilenceInterval;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public String getPollingMode() {
+        return pollingMode;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public int getHistoryRetention() {
+        return historyRetention;
+    }
+
+    public int getWriteCoalescingWindow() {
+        return writeCoalescingWindow;
+    }
 }
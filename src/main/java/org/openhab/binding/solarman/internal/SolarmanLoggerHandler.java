@@ -12,9 +12,15 @@
  */
 package org.openhab.binding.solarman.internal;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -30,18 +36,42 @@ import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
 import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
 import org.openhab.binding.solarman.internal.defmodel.Request;
 import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.binding.solarman.internal.history.RegisterSnapshotStore;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
+import org.openhab.binding.solarman.internal.metrics.PollMetrics;
+import org.openhab.binding.solarman.internal.metrics.PollMetricsBinder;
 import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnectorRegistry;
 import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.openhab.binding.solarman.internal.planner.PollingTier;
+import org.openhab.binding.solarman.internal.planner.SolarmanPollScheduler;
+import org.openhab.binding.solarman.internal.planner.SolarmanPollScheduler.ScheduledPoll;
+import org.openhab.binding.solarman.internal.planner.SolarmanPollingPlan;
+import org.openhab.binding.solarman.internal.planner.SolarmanPollingPlanner;
 import org.openhab.binding.solarman.internal.state.LoggerState;
+import org.openhab.binding.solarman.internal.updater.Deadband;
 import org.openhab.binding.solarman.internal.updater.SolarmanChannelUpdater;
+import org.openhab.binding.solarman.internal.util.VirtualThreads;
+import org.openhab.binding.solarman.internal.writer.SolarmanChannelWriter;
+import org.openhab.binding.solarman.internal.writer.SolarmanRegisterWriter;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.unit.MetricPrefix;
+import org.openhab.core.library.unit.Units;
 import org.openhab.core.thing.*;
 import org.openhab.core.thing.binding.BaseThingHandler;
 import org.openhab.core.thing.binding.builder.ThingBuilder;
 import org.openhab.core.types.Command;
+import org.openhab.core.types.RefreshType;
+import org.openhab.core.types.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.openhab.binding.solarman.internal.SolarmanBindingConstants.DYNAMIC_CHANNEL;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import static org.openhab.binding.solarman.internal.SolarmanBindingConstants.*;
 
 /**
  * The {@link SolarmanLoggerHandler} is responsible for handling commands, which are
@@ -53,21 +83,80 @@ import static org.openhab.binding.solarman.internal.SolarmanBindingConstants.DYN
 public class SolarmanLoggerHandler extends BaseThingHandler {
     private final Logger logger = LoggerFactory.getLogger(SolarmanLoggerHandler.class);
 
-    private final DefinitionParser definitionParser;
+    private final SolarmanDefinitionRegistry solarmanDefinitionRegistry;
+    private final SolarmanLoggerConnectorRegistry solarmanLoggerConnectorRegistry;
     private final SolarmanChannelManager solarmanChannelManager;
     private final LoggerState loggerState;
+    private final @Nullable MeterRegistry meterRegistry;
+    private final SolarmanPollScheduler solarmanPollScheduler;
     @Nullable
-    private volatile ScheduledFuture<?> scheduledFuture;
-
-    public SolarmanLoggerHandler(Thing thing) {
+    private volatile ScheduledPoll scheduledPoll;
+    @Nullable
+    private volatile SolarmanLoggerConnector solarmanLoggerConnector;
+    @Nullable
+    private volatile SolarmanPollingPlanner pollingPlanner;
+    @Nullable
+    private volatile SolarmanChannelUpdater solarmanChannelUpdater;
+    @Nullable
+    private volatile ExecutorService pollingExecutor;
+    @Nullable
+    private volatile PollMetricsBinder pollMetricsBinder;
+    @Nullable
+    private volatile RegisterSnapshotStore registerSnapshotStore;
+    @Nullable
+    private volatile SolarmanChannelWriter solarmanChannelWriter;
+
+    /**
+     * @param meterRegistry - the registry the metrics of the logger are published to, null if metrics are disabled
+     */
+    public SolarmanLoggerHandler(Thing thing, SolarmanLoggerConnectorRegistry solarmanLoggerConnectorRegistry,
+                                 SolarmanDefinitionRegistry solarmanDefinitionRegistry,
+                                 SolarmanPollScheduler solarmanPollScheduler,
+                                 @Nullable MeterRegistry meterRegistry) {
         super(thing);
-        this.definitionParser = new DefinitionParser();
+        this.solarmanLoggerConnectorRegistry = solarmanLoggerConnectorRegistry;
+        this.solarmanDefinitionRegistry = solarmanDefinitionRegistry;
+        this.solarmanPollScheduler = solarmanPollScheduler;
         this.solarmanChannelManager = new SolarmanChannelManager();
         this.loggerState = new LoggerState();
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
+        if (command instanceof RefreshType)
+            return;
+
+        SolarmanChannelWriter solarmanChannelWriter = this.solarmanChannelWriter;
+        if (solarmanChannelWriter == null || !solarmanChannelWriter.isWritable(channelUID)) {
+            logger.debug("Channel {} is not writable, ignoring command {}", channelUID.getId(), command);
+            return;
+        }
+
+        if (solarmanChannelWriter.handleCommand(channelUID, command) == null)
+            logger.warn("Unable to write {} to channel {}", command, channelUID.getId());
+    }
+
+    @Override
+    public void channelLinked(ChannelUID channelUID) {
+        SolarmanPollingPlanner pollingPlanner = this.pollingPlanner;
+        if (pollingPlanner != null)
+            pollingPlanner.channelLinked(channelUID);
+
+        SolarmanChannelUpdater solarmanChannelUpdater = this.solarmanChannelUpdater;
+        if (solarmanChannelUpdater != null)
+            solarmanChannelUpdater.channelLinked(channelUID);
+
+        super.channelLinked(channelUID);
+    }
+
+    @Override
+    public void channelUnlinked(ChannelUID channelUID) {
+        SolarmanPollingPlanner pollingPlanner = this.pollingPlanner;
+        if (pollingPlanner != null)
+            pollingPlanner.channelUnlinked(channelUID);
+
+        super.channelUnlinked(channelUID);
     }
 
     @Override
@@ -75,7 +164,6 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
         updateStatus(ThingStatus.UNKNOWN);
 
         SolarmanLoggerConfiguration config = getConfigAs(SolarmanLoggerConfiguration.class);
-        SolarmanLoggerConnector solarmanLoggerConnector = new SolarmanLoggerConnector(config);
 
         if (config == null) {
             updateStatus(ThingStatus.UNINITIALIZED,
@@ -86,9 +174,10 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
 
         List<Channel> staticChannels = thing.getChannels().stream()
                 .filter(channel -> !channel.getProperties().containsKey(DYNAMIC_CHANNEL))
+                .filter(channel -> !CHANNEL_GROUP_DIAGNOSTICS.equals(channel.getUID().getGroupId()))
                 .toList();
 
-        InverterDefinition inverterDefinition = definitionParser.parseDefinition(config.inverterType);
+        InverterDefinition inverterDefinition = solarmanDefinitionRegistry.getDefinition(config.inverterType);
 
         if (inverterDefinition == null) {
             logger.error("Unable to find a definition for the provided inverter type");
@@ -101,8 +190,19 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
                 logger.debug("Found definition for {}", config.inverterType);
             }
         }
-        SolarmanLoggerConnector solarmanV5Connector = new SolarmanLoggerConnector(config);
-        SolarmanV5Protocol solarmanV5Protocol = new SolarmanV5Protocol(config);
+        SolarmanV5Protocol solarmanV5Protocol;
+        try {
+            solarmanV5Protocol = new SolarmanV5Protocol(config);
+        } catch (NumberFormatException e) {
+            updateStatus(ThingStatus.UNINITIALIZED,
+                    ThingStatusDetail.CONFIGURATION_ERROR,
+                    "Invalid logger serial number");
+            return;
+        }
+
+        SolarmanLoggerConnector solarmanLoggerConnector = solarmanLoggerConnectorRegistry.acquireConnector(config);
+        this.solarmanLoggerConnector = solarmanLoggerConnector;
+        LoggerMetrics loggerMetrics = solarmanLoggerConnector.getLoggerMetrics();
 
         List<Request> mergedRequests = (StringUtils.isNotEmpty(config.getAdditionalRequests())) ?
                 mergeRequests(
@@ -115,33 +215,173 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
                 setupChannelsForInverterDefinition(inverterDefinition)
         );
 
+        SolarmanPollingPlanner pollingPlanner = new SolarmanPollingPlanner(
+                getThing().getUID().getAsString(),
+                config,
+                mergedRequests,
+                paramToChannelMapping,
+                extractChannelPollingTiers(paramToChannelMapping),
+                this::isLinked
+        );
+        this.pollingPlanner = pollingPlanner;
+
+        RegisterSnapshotStore registerSnapshotStore = openRegisterSnapshotStore(config);
+        this.registerSnapshotStore = registerSnapshotStore;
+
+        // Commands sent together are written together, over the connection used by the polls, and read back so the
+        // state published right away can be corrected without waiting for the next poll. As these states are not
+        // polled, the next poll publishes the polled state even if the registers did not change.
+        SolarmanChannelWriter solarmanChannelWriter = new SolarmanChannelWriter(
+                new SolarmanRegisterWriter(solarmanLoggerConnector, solarmanV5Protocol, scheduler,
+                        config.getWriteCoalescingWindow()),
+                paramToChannelMapping,
+                this::updateCommandedState
+        );
+        this.solarmanChannelWriter = solarmanChannelWriter;
+
         SolarmanChannelUpdater solarmanChannelUpdater = new SolarmanChannelUpdater(
-                this::updateState
+                solarmanChannelWriter.trackPolledStates(this::updateState),
+                paramToChannelMapping.keySet(),
+                extractChannelDeadbands(paramToChannelMapping),
+                config.getMaxSilenceInterval(),
+                mergedRequests,
+                registerSnapshotStore
         );
+        this.solarmanChannelUpdater = solarmanChannelUpdater;
+
+        ExecutorService pollingExecutor = createPollingExecutor(config);
+        this.pollingExecutor = pollingExecutor;
+        String pollingMode = pollingExecutor == null ? "scheduler" : POLLING_MODE_VIRTUAL;
+
+        // The meters of the logger are published once by its connector, the ones of the polls by every thing, tagged
+        // with the polling mode so that both modes can be compared
+        PollMetrics pollMetrics = solarmanChannelUpdater.getPollMetrics();
+        MeterRegistry meterRegistry = this.meterRegistry;
+        if (meterRegistry != null) {
+            solarmanLoggerConnector.bindMetrics(meterRegistry);
+            PollMetricsBinder pollMetricsBinder = new PollMetricsBinder(pollMetrics,
+                    Tags.of("thing", thing.getUID().getAsString(), "logger", solarmanLoggerConnector.getLoggerId(),
+                            "pollingMode", pollingMode));
+            pollMetricsBinder.bindTo(meterRegistry);
+            this.pollMetricsBinder = pollMetricsBinder;
+        }
+
+        // Polled by the binding wide scheduler, so that the things do not all poll at the same time. The ticks and the
+        // tiers of the planner share the phase derived from the thing UID, so the tiers are due on the ticks
+        scheduledPoll = solarmanPollScheduler.schedule(getThing().getUID().getAsString(),
+                TimeUnit.SECONDS.toMillis(pollingPlanner.getTickInterval()), () -> {
+                    long now = System.currentTimeMillis();
+                    Set<PollingTier> duePollingTiers = pollingPlanner.getDuePollingTiers(now);
+                    SolarmanPollingPlan pollingPlan = pollingPlanner.getPollingPlan(duePollingTiers);
+                    if (pollingPlan.requests().isEmpty()) {
+                        pollingPlanner.markPolled(duePollingTiers, now, parameterItem -> true);
+                        return CompletableFuture.completedFuture(null);
+                    }
 
-        scheduledFuture = scheduler.scheduleAtFixedRate(() -> {
-                    boolean fetchSuccessful = solarmanChannelUpdater.fetchDataFromLogger(
-                            mergedRequests,
+                    Supplier<CompletableFuture<Boolean>> fetch = () -> solarmanChannelUpdater.fetchDataFromLogger(
+                            pollingPlan.requests(),
                             solarmanLoggerConnector,
                             solarmanV5Protocol,
-                            paramToChannelMapping,
+                            pollingPlan.paramToChannelMapping(),
                             loggerState);
 
-                    if (fetchSuccessful) {
-                        updateStatus(ThingStatus.ONLINE);
-                        loggerState.setOnline();
-                    } else {
-                        updateStatus(ThingStatus.OFFLINE);
-                        loggerState.setPossiblyOffline();
+                    CompletableFuture<Boolean> poll;
+                    try {
+                        // On a virtual thread a blocking read does not hold one of the few scheduler threads
+                        poll = pollingExecutor == null ? fetch.get()
+                                : CompletableFuture.supplyAsync(fetch, pollingExecutor).thenCompose(Function.identity());
+                    } catch (RejectedExecutionException e) {
+                        logger.debug("Polling executor shut down, skipping this poll");
+                        return CompletableFuture.completedFuture(null);
                     }
 
-                    if (loggerState.isJustBecameOffline()) {
-                        logger.info("Assuming logger is OFFLINE after {} failed requests. Disabling connection error logging until it becomes available again",
-                                LoggerState.NO_FAILED_REQUESTS);
-                    }
-                },
-                0, config.refreshInterval, TimeUnit.SECONDS
-        );
+                    return poll.thenAccept(fetchSuccessful -> {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Polled logger in {} ms using the {} polling mode",
+                                    System.currentTimeMillis() - now, pollingMode);
+                        }
+                        // The serial number and firmware channels are read again until all their registers were read,
+                        // even when the other ranges of the poll succeeded
+                        pollingPlanner.markPolled(duePollingTiers, now, solarmanChannelUpdater::hasRead);
+                        updateDiagnosticChannels(loggerMetrics, pollMetrics);
+
+                        if (fetchSuccessful) {
+                            updateStatus(ThingStatus.ONLINE);
+                            loggerState.setOnline();
+                        } else {
+                            updateStatus(ThingStatus.OFFLINE);
+                            loggerState.setPossiblyOffline();
+                        }
+
+                        if (loggerState.isJustBecameOffline()) {
+                            logger.info("Assuming logger is OFFLINE after {} failed requests. Disabling connection error logging until it becomes available again",
+                                    LoggerState.NO_FAILED_REQUESTS);
+                        }
+                    });
+                });
+    }
+
+    private void updateDiagnosticChannels(LoggerMetrics loggerMetrics, PollMetrics pollMetrics) {
+        updateDiagnosticChannel(CHANNEL_POLL_DURATION,
+                new QuantityType<>(pollMetrics.getPollDuration().getLastMillis(), MetricPrefix.MILLI(Units.SECOND)));
+        updateDiagnosticChannel(CHANNEL_ROUND_TRIP_TIME,
+                new QuantityType<>(loggerMetrics.getRoundTripTime().getLastMillis(), MetricPrefix.MILLI(Units.SECOND)));
+        updateDiagnosticChannel(CHANNEL_BYTES_SENT, new QuantityType<>(loggerMetrics.getBytesSent(), Units.BYTE));
+        updateDiagnosticChannel(CHANNEL_BYTES_RECEIVED,
+                new QuantityType<>(loggerMetrics.getBytesReceived(), Units.BYTE));
+        updateDiagnosticChannel(CHANNEL_TIMEOUTS, new DecimalType(loggerMetrics.getTimeouts()));
+        updateDiagnosticChannel(CHANNEL_RECONNECTS, new DecimalType(loggerMetrics.getReconnects()));
+        updateDiagnosticChannel(CHANNEL_CRC_ERRORS, new DecimalType(loggerMetrics.getCrcErrors()));
+        updateDiagnosticChannel(CHANNEL_MODBUS_EXCEPTIONS, new DecimalType(loggerMetrics.getModbusExceptions()));
+    }
+
+    private void updateDiagnosticChannel(String channelId, State state) {
+        String groupChannelId = CHANNEL_GROUP_DIAGNOSTICS + "#" + channelId;
+        if (isLinked(groupChannelId))
+            updateState(groupChannelId, state);
+    }
+
+    /**
+     * Publishes the state of a command or of its read back, which the next poll must not consider already published
+     */
+    private void updateCommandedState(ChannelUID channelUID, State state) {
+        updateState(channelUID, state);
+        SolarmanChannelUpdater solarmanChannelUpdater = this.solarmanChannelUpdater;
+        if (solarmanChannelUpdater != null)
+            solarmanChannelUpdater.forgetPublishedState(channelUID);
+    }
+
+    /**
+     * @return the store keeping the registers read on every poll, null if the register history is disabled
+     */
+    private @Nullable RegisterSnapshotStore openRegisterSnapshotStore(SolarmanLoggerConfiguration config) {
+        if (config.getHistoryRetention() <= 0)
+            return null;
+
+        Path directory = Path.of(OpenHAB.getUserDataFolder(), SOLARMAN_BINDING_ID, "history",
+                thing.getUID().getId());
+        try {
+            return new RegisterSnapshotStore(directory, RegisterSnapshotStore.DEFAULT_SEGMENT_SIZE,
+                    TimeUnit.DAYS.toMillis(config.getHistoryRetention()));
+        } catch (IOException e) {
+            logger.warn("Unable to open the register history in {}, the registers read are not kept: {}", directory,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the executor running each poll on its own virtual thread, null to poll on the scheduler thread
+     */
+    private @Nullable ExecutorService createPollingExecutor(SolarmanLoggerConfiguration config) {
+        if (!POLLING_MODE_VIRTUAL.equalsIgnoreCase(config.getPollingMode().trim()))
+            return null;
+
+        ExecutorService virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (virtualThreadExecutor == null)
+            logger.warn("Virtual threads are not supported by this Java runtime, polling on the scheduler instead");
+
+        return virtualThreadExecutor;
     }
 
     private <K, V> Map<K, V> mergeMaps(Map<K, V> map1,
@@ -174,6 +414,31 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
+    private Map<ChannelUID, PollingTier> extractChannelPollingTiers(Map<ParameterItem, ChannelUID> paramToChannelMapping) {
+        // The polling tier set on the channel takes precedence over the one from the definition
+        return paramToChannelMapping.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getValue, entry -> {
+                    Channel channel = thing.getChannel(entry.getValue());
+                    String channelPollingTier = channel == null ? null
+                            : channel.getConfiguration().as(BaseChannelConfig.class).pollingTier;
+
+                    return PollingTier.fromString(StringUtils.isNotBlank(channelPollingTier) ? channelPollingTier
+                            : entry.getKey().getPollingTier(), PollingTier.NORMAL);
+                }, (t1, t2) -> t1));
+    }
+
+    private Map<ChannelUID, Deadband> extractChannelDeadbands(Map<ParameterItem, ChannelUID> paramToChannelMapping) {
+        Map<ChannelUID, Deadband> channelDeadbands = new HashMap<>();
+        paramToChannelMapping.values().forEach(channelUID -> {
+            Channel channel = thing.getChannel(channelUID);
+            Deadband deadband = channel == null ? null
+                    : Deadband.fromString(channel.getConfiguration().as(BaseChannelConfig.class).deadband);
+            if (deadband != null)
+                channelDeadbands.put(channelUID, deadband);
+        });
+        return channelDeadbands;
+    }
+
     private List<Integer> parseRegisters(String registers) {
         String[] tokens = registers.split(",");
         Pattern pattern = Pattern.compile("\\s*(0x[\\da-fA-F]+|[\\d]+)\\s*");
@@ -185,7 +450,7 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
                 .collect(Collectors.toList());
     }
 
-    // TODO for now just concatenate the list, in the future, merge overlapping requests
+    // Overlapping requests are merged afterwards by the SolarmanRequestPlanner
     private List<Request> mergeRequests(List<Request> requestList1, List<Request> requestList2) {
         return Stream.concat(requestList1.stream(), requestList2.stream())
                 .collect(Collectors.toList());
@@ -248,7 +513,45 @@ public class SolarmanLoggerHandler extends BaseThingHandler {
     public void dispose() {
         super.dispose();
 
-        if (scheduledFuture != null)
-            Objects.requireNonNull(scheduledFuture).cancel(false);
+        if (scheduledPoll != null) {
+            Objects.requireNonNull(scheduledPoll).cancel();
+            scheduledPoll = null;
+        }
+
+        pollingPlanner = null;
+        solarmanChannelUpdater = null;
+
+        SolarmanChannelWriter solarmanChannelWriter = this.solarmanChannelWriter;
+        if (solarmanChannelWriter != null) {
+            solarmanChannelWriter.dispose();
+            this.solarmanChannelWriter = null;
+        }
+
+        if (pollingExecutor != null) {
+            Objects.requireNonNull(pollingExecutor).shutdownNow();
+            pollingExecutor = null;
+        }
+
+        RegisterSnapshotStore registerSnapshotStore = this.registerSnapshotStore;
+        if (registerSnapshotStore != null) {
+            try {
+                registerSnapshotStore.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the register history: {}", e.getMessage());
+            }
+            this.registerSnapshotStore = null;
+        }
+
+        PollMetricsBinder pollMetricsBinder = this.pollMetricsBinder;
+        MeterRegistry meterRegistry = this.meterRegistry;
+        if (pollMetricsBinder != null && meterRegistry != null) {
+            pollMetricsBinder.unbind(meterRegistry);
+            this.pollMetricsBinder = null;
+        }
+
+        if (solarmanLoggerConnector != null) {
+            solarmanLoggerConnectorRegistry.releaseConnector(Objects.requireNonNull(solarmanLoggerConnector));
+            solarmanLoggerConnector = null;
+        }
     }
 }
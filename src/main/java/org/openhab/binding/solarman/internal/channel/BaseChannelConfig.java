@@ -13,4 +13,6 @@ public class BaseChannelConfig {
     public Integer rule = 1;
     public BigDecimal offset = BigDecimal.ZERO;
     public String registers = "";
+    public @Nullable String pollingTier;
+    public @Nullable String deadband;
 }
\ No newline at end of file
@@ -34,23 +34,24 @@ public class SolarmanChannelManager {
 
                     return parameter.getItems().stream().map(item -> {
                         String channelId = groupName + "_" + escapeName(item.getName());
+                        ChannelUID channelUID = new ChannelUID(thing.getUID(), channelId);
 
                         return Pair.of(item,
                                 ChannelBuilder
-                                        .create(new ChannelUID(thing.getUID(), channelId))
+                                        .create(channelUID)
                                         .withType(ChannelUtils.computeChannelTypeId(inverterDefinition.getInverterDefinitionId(), groupName, item.getName()))
                                         .withLabel(item.getName())
                                         .withKind(ChannelKind.STATE)
                                         .withAcceptedItemType(ChannelUtils.getItemType(item))
                                         .withProperties(Map.of(DYNAMIC_CHANNEL, Boolean.TRUE.toString()))
-                                        .withConfiguration(buildConfigurationFromItem(item)).build()
+                                        .withConfiguration(buildConfigurationFromItem(item, thing.getChannel(channelUID))).build()
                         );
                     });
                 })
                 .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
     }
 
-    private Configuration buildConfigurationFromItem(ParameterItem item) {
+    private Configuration buildConfigurationFromItem(ParameterItem item, Channel existingChannel) {
         Configuration configuration = new Configuration();
 
         BaseChannelConfig baseChannelConfig = new BaseChannelConfig();
@@ -60,6 +61,12 @@ public class SolarmanChannelManager {
         baseChannelConfig.registers = convertRegisters(item.getRegisters());
         baseChannelConfig.scale = item.getScale();
         baseChannelConfig.uom = item.getUom();
+        // Dynamic channels are re-created on every initialization, keep the settings made by the user
+        if (existingChannel != null) {
+            BaseChannelConfig existingChannelConfig = existingChannel.getConfiguration().as(BaseChannelConfig.class);
+            baseChannelConfig.pollingTier = existingChannelConfig.pollingTier;
+            baseChannelConfig.deadband = existingChannelConfig.deadband;
+        }
 
         Map<String, Object> configurationMap = objectMapper
                 .convertValue(baseChannelConfig, new TypeReference<>() {
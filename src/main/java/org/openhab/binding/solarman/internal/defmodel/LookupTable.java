@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010-2023 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.solarman.internal.defmodel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.library.types.StringType;
+
+/**
+ * The {@link LookupTable} is the compiled form of the lookup of a {@link ParameterItem}, mapping the raw value of its
+ * registers to a label. The states of the labels are built once, when the definition is loaded, so looking up a value
+ * while polling is an array access and does not allocate.
+ * <p>
+ * Small keys, as in the usual status enumerations, index an array. Larger ones, as the fault bits of some inverters,
+ * are looked up with a binary search over the sorted keys.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class LookupTable {
+    // Keys below this index an array, larger ones would waste too much of it
+    private static final int MAX_DIRECT_KEY = 256;
+
+    private final int[] keys;
+    private final StringType[] states;
+    private final StringType @Nullable [] directStates;
+    private final Map<String, Integer> keysByLabel = new HashMap<>();
+
+    private LookupTable(TreeMap<Integer, StringType> statesByKey) {
+        this.keys = statesByKey.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.states = statesByKey.values().toArray(StringType[]::new);
+        statesByKey.forEach((key, state) -> keysByLabel.putIfAbsent(state.toString(), key));
+
+        boolean direct = keys.length > 0 && keys[0] >= 0 && keys[keys.length - 1] < MAX_DIRECT_KEY;
+        if (direct) {
+            StringType[] directStates = new StringType[keys[keys.length - 1] + 1];
+            for (int i = 0; i < keys.length; i++) {
+                directStates[keys[i]] = states[i];
+            }
+            this.directStates = directStates;
+        } else {
+            this.directStates = null;
+        }
+    }
+
+    /**
+     * @param internedStates - the states already built for other lookups, so the labels repeated across the items of
+     *                       a definition share the same state
+     * @return the compiled lookup or null if it has no entry
+     */
+    public static @Nullable LookupTable compile(@Nullable List<LookupEntry> lookup,
+                                                Map<String, StringType> internedStates) {
+        if (lookup == null || lookup.isEmpty())
+            return null;
+
+        TreeMap<Integer, StringType> statesByKey = new TreeMap<>();
+        for (LookupEntry lookupEntry : lookup) {
+            if (lookupEntry.getKey() == null || lookupEntry.getValue() == null)
+                continue;
+            // The first entry of a key wins, as with the lookups of the original integration
+            statesByKey.putIfAbsent(lookupEntry.getKey(),
+                    internedStates.computeIfAbsent(lookupEntry.getValue(), StringType::new));
+        }
+        return statesByKey.isEmpty() ? null : new LookupTable(statesByKey);
+    }
+
+    /**
+     * @return the state of the label of the key or null if the key is not in the lookup
+     */
+    public @Nullable StringType lookup(long key) {
+        StringType[] directStates = this.directStates;
+        if (directStates != null)
+            return key >= 0 && key < directStates.length ? directStates[(int) key] : null;
+
+        if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE)
+            return null;
+        int index = Arrays.binarySearch(keys, (int) key);
+        return index >= 0 ? states[index] : null;
+    }
+
+    /**
+     * @return the key of the label or null if the label is not in the lookup
+     */
+    public @Nullable Integer keyOf(String label) {
+        return keysByLabel.get(label);
+    }
+
+    /**
+     * @return the states of the labels, in the order of their keys
+     */
+    public List<StringType> getStates() {
+        return List.of(states);
+    }
+}
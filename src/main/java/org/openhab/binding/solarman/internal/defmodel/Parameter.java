@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * @author Catalin Sanda - Initial contribution
@@ -24,6 +25,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 public class Parameter {
     private String group;
     private List<ParameterItem> items = new ArrayList<ParameterItem>();
+    @JsonProperty("polling_tier")
+    private String pollingTier;
 
     public String getGroup() {
         return group;
@@ -40,4 +43,12 @@ public class Parameter {
     public void setItems(List<ParameterItem> items) {
         this.items = items;
     }
+
+    public String getPollingTier() {
+        return pollingTier;
+    }
+
+    public void setPollingTier(String pollingTier) {
+        this.pollingTier = pollingTier;
+    }
 }
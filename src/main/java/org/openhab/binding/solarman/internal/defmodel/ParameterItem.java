@@ -14,8 +14,13 @@ package org.openhab.binding.solarman.internal.defmodel;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.library.types.StringType;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -37,6 +42,12 @@ public class ParameterItem {
     private Validation validation;
     private BigDecimal offset;
     private Boolean isstr;
+    @JsonProperty("polling_tier")
+    private String pollingTier;
+    private Boolean writable;
+    private List<LookupEntry> lookup;
+    @JsonIgnore
+    private @Nullable LookupTable lookupTable;
 
     public ParameterItem() {
     }
@@ -142,4 +153,51 @@ public class ParameterItem {
     public void setItemClass(String itemClass) {
         this.itemClass = itemClass;
     }
+
+    public String getPollingTier() {
+        return pollingTier;
+    }
+
+    public void setPollingTier(String pollingTier) {
+        this.pollingTier = pollingTier;
+    }
+
+    public void setWritable(Boolean writable) {
+        this.writable = writable;
+    }
+
+    /**
+     * @return true if commands sent to the channel are written to the registers of the parameter
+     */
+    public boolean isWritable() {
+        return Boolean.TRUE.equals(writable);
+    }
+
+    public List<LookupEntry> getLookup() {
+        return lookup;
+    }
+
+    public void setLookup(List<LookupEntry> lookup) {
+        this.lookup = lookup;
+        this.lookupTable = null;
+    }
+
+    /**
+     * @return the compiled lookup of the parameter, compiled on first use unless the definition parser did it, or
+     *         null if the parameter has no lookup
+     */
+    @JsonIgnore
+    public @Nullable LookupTable getLookupTable() {
+        LookupTable lookupTable = this.lookupTable;
+        if (lookupTable == null && lookup != null) {
+            lookupTable = LookupTable.compile(lookup, new HashMap<>());
+            this.lookupTable = lookupTable;
+        }
+        return lookupTable;
+    }
+
+    @JsonIgnore
+    public void setLookupTable(@Nullable LookupTable lookupTable) {
+        this.lookupTable = lookupTable;
+    }
 }
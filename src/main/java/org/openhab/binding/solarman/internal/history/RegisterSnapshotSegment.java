@@ -0,0 +1,232 @@
+package org.openhab.binding.solarman.internal.history;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.openhab.binding.solarman.internal.history.RegisterSnapshotStore.SnapshotConsumer;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RegisterSnapshotSegment} is one file of a {@link RegisterSnapshotStore}, holding the register snapshots
+ * taken over a period of time.
+ * <p>
+ * The file is mapped in memory with its full capacity while it is written, and truncated to its content once sealed.
+ * Each snapshot is a record made of:
+ * <ul>
+ * <li>the length of the rest of the record</li>
+ * <li>the time elapsed since the previous snapshot, the first one holding the epoch millis</li>
+ * <li>the number of registers that changed since the previous snapshot</li>
+ * <li>for each of these registers, in ascending order, the distance to the previous one and the difference to its
+ * previous value, zigzag encoded</li>
+ * </ul>
+ * All the numbers are unsigned LEB128 varints. The first snapshot of a segment stores all the registers, so a segment
+ * can be decoded, or deleted, on its own. A register keeps its value until it is read with another one, registers not
+ * read by a polling cycle are not told apart from the ones that did not change.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+class RegisterSnapshotSegment {
+    private final static Logger LOGGER = LoggerFactory.getLogger(RegisterSnapshotSegment.class);
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    // The registers as of the last snapshot, the next one only holds the ones that changed since
+    private final RegisterBank lastValues = new RegisterBank();
+    private final RecordBuffer registers = new RecordBuffer();
+    private final RecordBuffer header = new RecordBuffer();
+    private long lastTimestamp = 0;
+    private int previousRegister;
+    private int changedRegisters;
+
+    private RegisterSnapshotSegment(Path path, FileChannel channel, int capacity) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Creates a new segment file, failing if it exists already
+     */
+    static RegisterSnapshotSegment create(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new RegisterSnapshotSegment(path, channel, capacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    /**
+     * @return false if the segment is full, nothing is written then
+     */
+    boolean append(long timestamp, RegisterBank registerBank) throws IOException {
+        registers.clear();
+        previousRegister = -1;
+        changedRegisters = 0;
+        registerBank.forEach(this::encodeRegister);
+
+        header.clear();
+        header.writeVarint(timestamp - lastTimestamp);
+        header.writeVarint(changedRegisters);
+        int length = header.length + registers.length;
+
+        if (varintSize(length) + length > buffer.remaining()) {
+            if (!isEmpty())
+                return false;
+
+            // A single snapshot larger than a segment gets a segment of its own
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, varintSize(length) + length);
+        }
+
+        writeVarint(buffer, length);
+        buffer.put(header.bytes, 0, header.length);
+        buffer.put(registers.bytes, 0, registers.length);
+
+        registerBank.forEach(lastValues::put);
+        lastTimestamp = timestamp;
+        return true;
+    }
+
+    private void encodeRegister(int register, short value) {
+        if (lastValues.contains(register) && lastValues.get(register) == value)
+            return;
+
+        registers.writeVarint(register - previousRegister - 1);
+        registers.writeVarint(zigzag((short) (value - lastValues.get(register))));
+        previousRegister = register;
+        changedRegisters++;
+    }
+
+    /**
+     * Flushes the segment to disk and truncates the file to its content, the segment is not written anymore
+     */
+    void seal() throws IOException {
+        try {
+            buffer.force();
+            channel.truncate(buffer.position());
+        } catch (IOException e) {
+            // Some platforms do not truncate a mapped file, the zeroes left at the end are skipped when replaying
+            LOGGER.debug("Unable to truncate register snapshots segment {}: {}", path, e.getMessage());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decodes the snapshots of a segment file, stopping at the first one that cannot be decoded, like the last one
+     * written before a crash.
+     *
+     * @param from     - the time of the first snapshot to replay
+     * @param to       - the time of the last snapshot to replay
+     * @param consumer - called with all the registers known at the time of each snapshot
+     */
+    static void replay(Path path, long from, long to, SnapshotConsumer consumer) throws IOException {
+        // Read rather than mapped, a mapped file cannot be deleted on every platform until it is garbage collected
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+
+        RegisterBank registerBank = new RegisterBank();
+        long timestamp = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                int length = (int) readVarint(buffer);
+                if (length <= 0 || length > buffer.remaining())
+                    return;
+
+                int end = buffer.position() + length;
+                timestamp += readVarint(buffer);
+                long count = readVarint(buffer);
+                int register = -1;
+                for (long i = 0; i < count; i++) {
+                    register += (int) readVarint(buffer) + 1;
+                    registerBank.put(register, (short) (registerBank.get(register) + unzigzag(readVarint(buffer))));
+                }
+                if (buffer.position() != end)
+                    return;
+
+                if (timestamp > to)
+                    return;
+                if (timestamp >= from)
+                    consumer.accept(timestamp, registerBank);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // Garbage at the end of a segment that was not sealed
+        }
+    }
+
+    private static int zigzag(short value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IndexOutOfBoundsException("Malformed varint");
+    }
+
+    /**
+     * A record being encoded, reused from one snapshot to the next
+     */
+    private static class RecordBuffer {
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+
+        void clear() {
+            length = 0;
+        }
+
+        void writeVarint(long value) {
+            if (length + 10 > bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.openhab.binding.solarman.internal.history;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RegisterSnapshotStore} keeps the history of the raw registers read from a logger, one snapshot per
+ * polling cycle. Unlike the decoded states kept by the openHAB persistence, raw registers can be decoded again once
+ * the definition of a parameter is fixed, and only the registers that changed since the previous cycle are stored.
+ * <p>
+ * The snapshots are appended to segment files named after the time of their first snapshot, see
+ * {@link RegisterSnapshotSegment} for their format. A new segment is started once the current one is full, once it
+ * spans a fraction of the retention and on every restart, so that a segment which may have been cut short by a crash
+ * is never written again. Segments older than the retention are deleted whenever a segment is started, and
+ * consecutive segments that fit in a single one, without spanning more than that fraction, are merged. As the
+ * snapshots only hold the registers that changed, a full segment can take weeks to fill, splitting them by age is what
+ * keeps the snapshots from outliving the retention by more than a fraction of it.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class RegisterSnapshotStore implements AutoCloseable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(RegisterSnapshotStore.class);
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+    static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // A segment spans at most this fraction of the retention. As the expired segments are deleted when a segment is
+    // started, the snapshots outlive the retention by at most twice that fraction.
+    private static final int SEGMENTS_PER_RETENTION = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionMillis;
+    private final long maxSegmentAgeMillis;
+    // Sealed segments, oldest first
+    private final List<Path> segments = new ArrayList<>();
+    private @Nullable RegisterSnapshotSegment currentSegment;
+    private long currentSegmentStart;
+    private boolean closed = false;
+
+    /**
+     * @param directory       - the directory holding the segments, created if needed
+     * @param segmentSize     - the size of a segment file, in bytes
+     * @param retentionMillis - how long the snapshots are kept
+     */
+    public RegisterSnapshotStore(Path directory, int segmentSize, long retentionMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionMillis = retentionMillis;
+        this.maxSegmentAgeMillis = Math.max(1, retentionMillis / SEGMENTS_PER_RETENTION);
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                if (file.getFileName().toString().endsWith(TEMPORARY_SUFFIX))
+                    Files.delete(file);
+                else if (firstTimestamp(file) != null)
+                    segments.add(file);
+            }
+        }
+
+        applyRetention(System.currentTimeMillis());
+        compact();
+    }
+
+    /**
+     * Stores the registers read by a polling cycle, nothing is stored once the store is closed
+     */
+    public synchronized void append(long timestamp, RegisterBank registerBank) throws IOException {
+        if (closed)
+            return;
+
+        RegisterSnapshotSegment currentSegment = this.currentSegment;
+        if (currentSegment != null && timestamp - currentSegmentStart < maxSegmentAgeMillis
+                && currentSegment.append(timestamp, registerBank))
+            return;
+
+        if (currentSegment != null) {
+            seal(currentSegment);
+            applyRetention(timestamp);
+            compact();
+        }
+
+        currentSegment = RegisterSnapshotSegment.create(segmentPath(timestamp), segmentSize);
+        this.currentSegment = currentSegment;
+        this.currentSegmentStart = timestamp;
+        currentSegment.append(timestamp, registerBank);
+    }
+
+    /**
+     * Replays the snapshots taken in a period of time, oldest first
+     *
+     * @param from     - the time of the first snapshot to replay, in epoch millis
+     * @param to       - the time of the last snapshot to replay, in epoch millis
+     * @param consumer - called with all the registers known at the time of each snapshot
+     */
+    public synchronized void replay(long from, long to, SnapshotConsumer consumer) throws IOException {
+        RegisterSnapshotSegment currentSegment = this.currentSegment;
+        List<Path> paths = new ArrayList<>(segments);
+        if (currentSegment != null)
+            paths.add(currentSegment.getPath());
+
+        replay(paths, from, to, consumer);
+    }
+
+    /**
+     * Replays the snapshots kept in a directory without opening a store on it, so that nothing is deleted or merged,
+     * like when the history of a thing is replayed while it is still being written.
+     *
+     * @see #replay(long, long, SnapshotConsumer)
+     */
+    public static void replay(Path directory, long from, long to, SnapshotConsumer consumer) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(file -> firstTimestamp(file) != null).sorted().toList();
+        }
+
+        replay(paths, from, to, consumer);
+    }
+
+    private static void replay(List<Path> paths, long from, long to, SnapshotConsumer consumer) throws IOException {
+        for (int i = 0; i < paths.size(); i++) {
+            Long nextTimestamp = i + 1 < paths.size() ? firstTimestamp(paths.get(i + 1)) : null;
+            if (nextTimestamp != null && nextTimestamp < from)
+                continue;
+
+            Long firstTimestamp = firstTimestamp(paths.get(i));
+            if (firstTimestamp != null && firstTimestamp > to)
+                break;
+
+            RegisterSnapshotSegment.replay(paths.get(i), from, to, consumer);
+        }
+    }
+
+    /**
+     * Deletes the segments only holding snapshots older than the retention
+     */
+    private void applyRetention(long now) throws IOException {
+        // A segment holds the snapshots taken until the next one starts
+        RegisterSnapshotSegment currentSegment = this.currentSegment;
+        while (!segments.isEmpty()) {
+            Path next = segments.size() > 1 ? segments.get(1)
+                    : currentSegment == null ? null : currentSegment.getPath();
+            Long nextTimestamp = next == null ? null : firstTimestamp(next);
+            if (nextTimestamp == null || nextTimestamp >= now - retentionMillis)
+                return;
+
+            LOGGER.debug("Deleting register snapshots segment {}", segments.get(0));
+            Files.delete(segments.remove(0));
+        }
+    }
+
+    /**
+     * Merges consecutive sealed segments whose snapshots fit in a single segment and do not span more than a segment
+     * may. Snapshots are re-encoded against the previous one, so the full snapshot starting each merged segment is not
+     * stored anymore.
+     */
+    private void compact() throws IOException {
+        int first = 0;
+        while (first < segments.size()) {
+            long size = Files.size(segments.get(first));
+            long start = Objects.requireNonNull(firstTimestamp(segments.get(first)));
+            int last = first;
+            while (last + 1 < segments.size() && size + Files.size(segments.get(last + 1)) <= segmentSize
+                    && segmentEnd(last + 1) - start < maxSegmentAgeMillis) {
+                last++;
+                size += Files.size(segments.get(last));
+            }
+
+            if (last > first)
+                merge(segments.subList(first, last + 1));
+            first++;
+        }
+    }
+
+    /**
+     * @return the time the sealed segment was followed by the next one, its own start when it is the last one
+     */
+    private long segmentEnd(int index) {
+        Path next = index + 1 < segments.size() ? segments.get(index + 1)
+                : currentSegment == null ? segments.get(index) : currentSegment.getPath();
+        return Objects.requireNonNull(firstTimestamp(next));
+    }
+
+    private void merge(List<Path> sources) throws IOException {
+        Path target = sources.get(0);
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+        LOGGER.debug("Merging {} register snapshots segments into {}", sources.size(), target);
+
+        RegisterSnapshotSegment merged = RegisterSnapshotSegment.create(temporary, segmentSize);
+        try {
+            for (Path source : sources) {
+                RegisterSnapshotSegment.replay(source, Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, registerBank) -> {
+                    if (!merged.append(timestamp, registerBank))
+                        throw new IOException("Merged segments do not fit in " + temporary);
+                });
+            }
+        } finally {
+            merged.seal();
+        }
+
+        for (int i = sources.size() - 1; i > 0; i--) {
+            Files.delete(sources.remove(i));
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void seal(RegisterSnapshotSegment segment) throws IOException {
+        currentSegment = null;
+        if (segment.isEmpty()) {
+            segment.seal();
+            Files.delete(segment.getPath());
+            return;
+        }
+
+        segment.seal();
+        segments.add(segment.getPath());
+    }
+
+    private Path segmentPath(long timestamp) {
+        return directory.resolve(String.format("%020d%s", timestamp, SEGMENT_SUFFIX));
+    }
+
+    synchronized List<Path> getSegments() {
+        return List.copyOf(segments);
+    }
+
+    private static @Nullable Long firstTimestamp(Path path) {
+        String fileName = path.getFileName().toString();
+        if (!fileName.endsWith(SEGMENT_SUFFIX))
+            return null;
+
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        RegisterSnapshotSegment currentSegment = this.currentSegment;
+        if (currentSegment != null)
+            seal(currentSegment);
+    }
+
+    @FunctionalInterface
+    public interface SnapshotConsumer {
+        /**
+         * @param timestamp    - the time of the snapshot, in epoch millis
+         * @param registerBank - all the registers known at that time, only valid during the call
+         */
+        void accept(long timestamp, RegisterBank registerBank) throws IOException;
+    }
+}
@@ -0,0 +1,51 @@
+package org.openhab.binding.solarman.internal.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * The {@link DurationSummary} keeps the number, total and last of the durations recorded, in milliseconds. Their
+ * distribution is not kept, every duration is handed to the listeners instead, like the histograms of the metrics
+ * registry.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class DurationSummary {
+    private long count = 0;
+    private long totalMillis = 0;
+    private long lastMillis = 0;
+    private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    void record(long millis) {
+        synchronized (this) {
+            count++;
+            totalMillis += millis;
+            lastMillis = millis;
+        }
+        listeners.forEach(listener -> listener.accept(millis));
+    }
+
+    /**
+     * @param listener - called with every duration recorded from now on, in milliseconds
+     */
+    public void addListener(LongConsumer listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LongConsumer listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized long getLastMillis() {
+        return lastMillis;
+    }
+}
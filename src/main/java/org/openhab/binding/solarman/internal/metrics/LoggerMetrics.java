@@ -0,0 +1,94 @@
+package org.openhab.binding.solarman.internal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link LoggerMetrics} collects how talking to one logger goes: how long the requests take, how much data goes
+ * over the wire and how often things go wrong. The metrics belong to the connector, so they are shared by all the
+ * things polling the same logger, while the polls of each thing are counted by its {@link PollMetrics}. They are
+ * published as diagnostic channels and, when available, to the openHAB metrics registry.
+ * <p>
+ * All the values are counted since the binding started, so rates can be derived by whoever reads them.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class LoggerMetrics {
+    private final DurationSummary roundTripTime = new DurationSummary();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder crcErrors = new LongAdder();
+    private final LongAdder invalidResponses = new LongAdder();
+    private final LongAdder modbusExceptions = new LongAdder();
+
+    public void recordRequest(int frameLength) {
+        requests.increment();
+        bytesSent.add(frameLength);
+    }
+
+    public void recordResponse(int frameLength, long roundTripMillis) {
+        bytesReceived.add(frameLength);
+        roundTripTime.record(roundTripMillis);
+    }
+
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public void recordReconnect() {
+        reconnects.increment();
+    }
+
+    /**
+     * A response that could not be decoded, including the ones with a bad CRC
+     */
+    public void recordInvalidResponse() {
+        invalidResponses.increment();
+    }
+
+    public void recordCrcError() {
+        crcErrors.increment();
+    }
+
+    public void recordModbusException() {
+        modbusExceptions.increment();
+    }
+
+    public DurationSummary getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    public long getInvalidResponses() {
+        return invalidResponses.sum();
+    }
+
+    public long getCrcErrors() {
+        return crcErrors.sum();
+    }
+
+    public long getModbusExceptions() {
+        return modbusExceptions.sum();
+    }
+}
@@ -0,0 +1,91 @@
+package org.openhab.binding.solarman.internal.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.ToDoubleFunction;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The {@link LoggerMetricsBinder} publishes the {@link LoggerMetrics} of a logger to a Micrometer registry. It is bound
+ * once per connector, however many things poll the logger, so summing the meters across loggers counts every request
+ * once. The counters read the metrics when the registry is scraped, only the round trip times are recorded by a
+ * Micrometer timer, which publishes their histogram.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class LoggerMetricsBinder implements MeterBinder {
+    static final String PREFIX = "solarman.logger.";
+
+    private final LoggerMetrics loggerMetrics;
+    private final Tags tags;
+    private final List<Meter> meters = new ArrayList<>();
+    private @Nullable LongConsumer roundTripTimeListener;
+
+    public LoggerMetricsBinder(LoggerMetrics loggerMetrics, Tags tags) {
+        this.loggerMetrics = loggerMetrics;
+        this.tags = tags;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // Each request reads one register range
+        Timer requests = Timer.builder(PREFIX + "requests")
+                .description("Requests answered by the logger, from sending the request to receiving the response")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        meters.add(requests);
+        LongConsumer roundTripTimeListener = millis -> requests.record(millis, TimeUnit.MILLISECONDS);
+        loggerMetrics.getRoundTripTime().addListener(roundTripTimeListener);
+        this.roundTripTimeListener = roundTripTimeListener;
+
+        counter(registry, "requests.sent", LoggerMetrics::getRequests, null, "Requests sent to the logger");
+        counter(registry, "bytes.sent", LoggerMetrics::getBytesSent, BaseUnits.BYTES, "Bytes sent to the logger");
+        counter(registry, "bytes.received", LoggerMetrics::getBytesReceived, BaseUnits.BYTES,
+                "Bytes of the responses received from the logger");
+        counter(registry, "timeouts", LoggerMetrics::getTimeouts, null, "Requests not answered in time");
+        counter(registry, "reconnects", LoggerMetrics::getReconnects, null,
+                "Connections found broken and opened again");
+        counter(registry, "responses.invalid", LoggerMetrics::getInvalidResponses, null,
+                "Responses that could not be decoded");
+        counter(registry, "crc.errors", LoggerMetrics::getCrcErrors, null, "Responses with an invalid Modbus CRC");
+        counter(registry, "modbus.exceptions", LoggerMetrics::getModbusExceptions, null,
+                "Requests answered with a Modbus exception");
+    }
+
+    private void counter(MeterRegistry registry, String name, ToDoubleFunction<LoggerMetrics> value, String baseUnit,
+                         String description) {
+        meters.add(FunctionCounter.builder(PREFIX + name, loggerMetrics, value)
+                .description(description)
+                .baseUnit(baseUnit)
+                .tags(tags)
+                .register(registry));
+    }
+
+    /**
+     * Removes the meters registered by {@link #bindTo(MeterRegistry)}
+     */
+    public void unbind(MeterRegistry registry) {
+        LongConsumer roundTripTimeListener = this.roundTripTimeListener;
+        if (roundTripTimeListener != null) {
+            loggerMetrics.getRoundTripTime().removeListener(roundTripTimeListener);
+            this.roundTripTimeListener = null;
+        }
+        meters.forEach(registry::remove);
+        meters.clear();
+    }
+}
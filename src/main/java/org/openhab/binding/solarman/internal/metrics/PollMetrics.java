@@ -0,0 +1,40 @@
+package org.openhab.binding.solarman.internal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link PollMetrics} collects how the polls of one thing go: how long they take, how many of them fail and how
+ * many channel states they publish. Unlike the {@link LoggerMetrics}, which are shared by all the things polling the
+ * same logger, every thing has its own, as they poll their own registers at their own pace.
+ * <p>
+ * All the values are counted since the thing was initialized.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class PollMetrics {
+    private final DurationSummary pollDuration = new DurationSummary();
+    private final LongAdder failedPolls = new LongAdder();
+    private final LongAdder channelUpdates = new LongAdder();
+
+    public void recordPoll(long durationMillis, boolean successful) {
+        pollDuration.record(durationMillis);
+        if (!successful)
+            failedPolls.increment();
+    }
+
+    public void recordChannelUpdates(int count) {
+        channelUpdates.add(count);
+    }
+
+    public DurationSummary getPollDuration() {
+        return pollDuration;
+    }
+
+    public long getFailedPolls() {
+        return failedPolls.sum();
+    }
+
+    public long getChannelUpdates() {
+        return channelUpdates.sum();
+    }
+}
@@ -0,0 +1,73 @@
+package org.openhab.binding.solarman.internal.metrics;
+
+import static org.openhab.binding.solarman.internal.metrics.LoggerMetricsBinder.PREFIX;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The {@link PollMetricsBinder} publishes the {@link PollMetrics} of a thing to a Micrometer registry, next to the
+ * meters of the logger it polls. The poll durations are recorded by a Micrometer timer, which publishes their
+ * histogram.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class PollMetricsBinder implements MeterBinder {
+    private final PollMetrics pollMetrics;
+    private final Tags tags;
+    private final List<Meter> meters = new ArrayList<>();
+    private @Nullable LongConsumer pollDurationListener;
+
+    public PollMetricsBinder(PollMetrics pollMetrics, Tags tags) {
+        this.pollMetrics = pollMetrics;
+        this.tags = tags;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Timer polls = Timer.builder(PREFIX + "polls")
+                .description("Polls of the logger, from the first request to the last channel update")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(registry);
+        meters.add(polls);
+        LongConsumer pollDurationListener = millis -> polls.record(millis, TimeUnit.MILLISECONDS);
+        pollMetrics.getPollDuration().addListener(pollDurationListener);
+        this.pollDurationListener = pollDurationListener;
+        meters.add(FunctionCounter.builder(PREFIX + "polls.failed", pollMetrics, PollMetrics::getFailedPolls)
+                .description("Polls that read no register")
+                .tags(tags)
+                .register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "channel.updates", pollMetrics, PollMetrics::getChannelUpdates)
+                .description("Channel states published")
+                .tags(tags)
+                .register(registry));
+    }
+
+    /**
+     * Removes the meters registered by {@link #bindTo(MeterRegistry)}
+     */
+    public void unbind(MeterRegistry registry) {
+        LongConsumer pollDurationListener = this.pollDurationListener;
+        if (pollDurationListener != null) {
+            pollMetrics.getPollDuration().removeListener(pollDurationListener);
+            this.pollDurationListener = null;
+        }
+        meters.forEach(registry::remove);
+        meters.clear();
+    }
+}
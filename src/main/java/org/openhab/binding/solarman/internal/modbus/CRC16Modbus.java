@@ -21,9 +21,13 @@ public class CRC16Modbus {
     }
 
     public static int calculate(byte[] data) {
+        return calculate(data, 0, data.length);
+    }
+
+    public static int calculate(byte[] data, int offset, int length) {
         int crc = 0xFFFF;
-        for (byte b : data) {
-            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ b) & 0xFF];
+        for (int i = offset; i < offset + length; i++) {
+            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ data[i]) & 0xFF];
         }
         return crc;
     }
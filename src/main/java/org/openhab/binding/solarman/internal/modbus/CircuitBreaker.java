@@ -0,0 +1,87 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CircuitBreaker} stops sending requests to a logger that keeps failing, so an offline logger does not cost
+ * a full timeout for every request of every poll.
+ * <p>
+ * After {@link #FAILURE_THRESHOLD} consecutive failures the breaker opens and requests fail right away. Once the open
+ * interval is over, a single request is let through to probe the logger: if it succeeds the breaker closes again,
+ * otherwise it opens for twice as long, up to {@link #MAX_OPEN_MILLIS}. Intervals are randomized between half and the
+ * whole interval, so loggers that went offline together, like after a power cut, are not probed in lockstep.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class CircuitBreaker {
+    private final static Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    static final int FAILURE_THRESHOLD = 3;
+    static final long MIN_OPEN_MILLIS = 5_000;
+    static final long MAX_OPEN_MILLIS = 300_000;
+
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openInterval = 0;
+    private long openUntil = 0;
+
+    public CircuitBreaker() {
+        this(System::currentTimeMillis);
+    }
+
+    CircuitBreaker(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if a request can be sent, in which case its outcome must be reported with
+     *         {@link #recordSuccess()} or {@link #recordFailure()}
+     */
+    public synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (clock.getAsLong() < openUntil) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                yield true;
+            }
+            // Only the probe goes through until its outcome is known
+            case HALF_OPEN -> false;
+        };
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            LOGGER.debug("Logger answered again, resuming requests");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        openInterval = 0;
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN || (state == State.CLOSED && ++consecutiveFailures >= FAILURE_THRESHOLD)) {
+            openInterval = openInterval == 0 ? MIN_OPEN_MILLIS : Math.min(MAX_OPEN_MILLIS, openInterval * 2);
+            long delay = openInterval / 2 + ThreadLocalRandom.current().nextLong(openInterval / 2 + 1);
+            openUntil = clock.getAsLong() + delay;
+            state = State.OPEN;
+            LOGGER.debug("Logger is not answering, not sending requests for {} ms", delay);
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+}
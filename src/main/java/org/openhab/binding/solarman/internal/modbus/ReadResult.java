@@ -0,0 +1,25 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+/**
+ * The outcome of reading or writing a range of registers.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public enum ReadResult {
+    /**
+     * The registers were read and stored in the register bank, or written
+     */
+    SUCCESS,
+    /**
+     * The inverter refused to read or write the registers, like for addresses it does not have
+     */
+    MODBUS_EXCEPTION,
+    /**
+     * The logger answered with a frame that could not be decoded
+     */
+    INVALID_RESPONSE,
+    /**
+     * The logger could not be reached or did not answer in time
+     */
+    NO_RESPONSE,
+}
@@ -0,0 +1,137 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@link RegisterBank} holds the values of the registers read from the inverter during a polling cycle.
+ * <p>
+ * Values are stored as primitives in pages of {@link #PAGE_SIZE} registers, allocated the first time a register in
+ * the page is written, with a bitset telling which registers hold a value. Pages are kept when the bank is cleared, so
+ * once the first polling cycle is done reading the registers does not allocate anymore.
+ * <p>
+ * A bank is not thread safe. When the responses to pipelined requests are handled concurrently, it is filled and
+ * read while holding its lock.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class RegisterBank {
+    private static final int REGISTER_COUNT = 0x10000;
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final short[][] pages = new short[REGISTER_COUNT / PAGE_SIZE][];
+    private final long[][] validity = new long[REGISTER_COUNT / PAGE_SIZE][];
+    private int size = 0;
+
+    public void put(int register, short value) {
+        int page = page(register);
+        if (pages[page] == null) {
+            pages[page] = new short[PAGE_SIZE];
+            validity[page] = new long[PAGE_SIZE / Long.SIZE];
+        }
+
+        int index = register & PAGE_MASK;
+        long bit = 1L << index;
+        if ((validity[page][index >> 6] & bit) == 0) {
+            validity[page][index >> 6] |= bit;
+            size++;
+        }
+        pages[page][index] = value;
+    }
+
+    /**
+     * Stores the big endian register values found in a buffer, typically the Modbus response frame.
+     *
+     * @param firstReg - the register the first value belongs to
+     * @param buffer   - the buffer holding the values
+     * @param offset   - the offset of the first value in the buffer
+     * @param count    - the number of registers to store
+     */
+    public void put(int firstReg, byte[] buffer, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            int p = offset + i * 2;
+            put(firstReg + i, (short) (((buffer[p] & 0xFF) << 8) | (buffer[p + 1] & 0xFF)));
+        }
+    }
+
+    /**
+     * @return the value of the register, 0 if it was not read
+     */
+    public short get(int register) {
+        short[] page = pages[page(register)];
+        return page == null ? 0 : page[register & PAGE_MASK];
+    }
+
+    public boolean contains(int register) {
+        if (register < 0 || register >= REGISTER_COUNT) {
+            return false;
+        }
+        long[] bits = validity[page(register)];
+        int index = register & PAGE_MASK;
+        return bits != null && (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    public boolean containsAll(List<Integer> registers) {
+        for (int i = 0; i < registers.size(); i++) {
+            if (!contains(registers.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Calls the consumer with the value of each register read, in ascending register order.
+     */
+    public void forEach(RegisterConsumer consumer) {
+        for (int page = 0; page < validity.length; page++) {
+            long[] bits = validity[page];
+            if (bits == null) {
+                continue;
+            }
+            for (int word = 0; word < bits.length; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(remaining);
+                    consumer.accept((page << PAGE_BITS) | index, pages[page][index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets all the values, keeping the pages allocated for the next polling cycle.
+     */
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        for (long[] bits : validity) {
+            if (bits != null) {
+                Arrays.fill(bits, 0L);
+            }
+        }
+        size = 0;
+    }
+
+    private static int page(int register) {
+        if (register < 0 || register >= REGISTER_COUNT) {
+            throw new IndexOutOfBoundsException("Invalid register " + register);
+        }
+        return register >> PAGE_BITS;
+    }
+
+    @FunctionalInterface
+    public interface RegisterConsumer {
+        void accept(int register, short value);
+    }
+}
@@ -0,0 +1,52 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+/**
+ * The {@link RoundTripEstimator} keeps track of how long a logger takes to answer, as a smoothed average and variation
+ * of the measured response times, the way TCP does (RFC 6298), and derives from it how long to wait for a response.
+ * <p>
+ * Until the first response is measured, and after a timeout, the timeout is generous. Once the logger answers
+ * regularly, it closes in on the actual response time, so an unreachable logger is given up on quickly.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class RoundTripEstimator {
+    static final long MIN_TIMEOUT_MILLIS = 2_000;
+    static final long MAX_TIMEOUT_MILLIS = 10_000;
+    private static final double ALPHA = 1 / 8.0;
+    private static final double BETA = 1 / 4.0;
+    private static final int K = 4;
+
+    private double smoothedRtt = -1;
+    private double rttVariation = 0;
+    private long timeoutMillis = MAX_TIMEOUT_MILLIS;
+
+    /**
+     * @param rttMillis - the time the logger took to answer a request
+     */
+    public synchronized void addSample(long rttMillis) {
+        if (smoothedRtt < 0) {
+            smoothedRtt = rttMillis;
+            rttVariation = rttMillis / 2.0;
+        } else {
+            rttVariation = (1 - BETA) * rttVariation + BETA * Math.abs(smoothedRtt - rttMillis);
+            smoothedRtt = (1 - ALPHA) * smoothedRtt + ALPHA * rttMillis;
+        }
+        timeoutMillis = Math.max(MIN_TIMEOUT_MILLIS,
+                Math.min(MAX_TIMEOUT_MILLIS, Math.round(smoothedRtt + K * rttVariation)));
+    }
+
+    /**
+     * Doubles the timeout after a request timed out, in case the logger is just slower than it used to be. The next
+     * response measured brings it back in line.
+     */
+    public synchronized void timedOut() {
+        timeoutMillis = Math.min(MAX_TIMEOUT_MILLIS, timeoutMillis * 2);
+    }
+
+    /**
+     * @return how long to wait for the logger to accept a connection or to answer a request
+     */
+    public synchronized long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -1,26 +1,148 @@
 package org.openhab.binding.solarman.internal.modbus;
 
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.*;
 import java.util.Arrays;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.openhab.binding.solarman.internal.modbus.SolarmanV5Frames.*;
 
 public class SolarmanLoggerConnection implements AutoCloseable {
     private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanLoggerConnection.class);
+    static final int MAX_DISCARDED_FRAMES = 10;
 
     private SocketAddress sockaddr;
-    private Socket socket;
+    private volatile Socket socket;
+    private volatile long lastActivity = System.nanoTime();
+    private final ReentrantLock requestLock = new ReentrantLock(true);
+    // Only used while holding the request lock, grows when a response does not fit
+    private byte[] receiveBuffer = new byte[1024];
+    // Echoed by the logger in its responses, starts at a random value so responses to a previous connection are not
+    // taken for the answer to the first requests sent over this one
+    private final AtomicInteger sequenceNumber = new AtomicInteger(ThreadLocalRandom.current().nextInt(0x100));
+
+    // Shared by all the connections to the same logger
+    private final RoundTripEstimator roundTripEstimator;
+    private final CircuitBreaker circuitBreaker;
+    private final LoggerMetrics loggerMetrics;
+
+    // Set when the connection goes through the non-blocking transport
+    private final SolarmanNioTransport.LoggerChannel loggerChannel;
 
     public SolarmanLoggerConnection(String hostName, int port) {
+        this(hostName, port, new RoundTripEstimator(), new CircuitBreaker(), new LoggerMetrics());
+    }
+
+    public SolarmanLoggerConnection(String hostName, int port, RoundTripEstimator roundTripEstimator,
+                                    CircuitBreaker circuitBreaker, LoggerMetrics loggerMetrics) {
         sockaddr = new InetSocketAddress(hostName, port);
+        this.roundTripEstimator = roundTripEstimator;
+        this.circuitBreaker = circuitBreaker;
+        this.loggerMetrics = loggerMetrics;
+        loggerChannel = null;
+    }
+
+    /**
+     * @param maxInFlightRequests - how many requests are sent before the response to the first one is received
+     */
+    public SolarmanLoggerConnection(String hostName, int port, SolarmanNioTransport solarmanNioTransport,
+                                    int maxInFlightRequests, RoundTripEstimator roundTripEstimator,
+                                    CircuitBreaker circuitBreaker, LoggerMetrics loggerMetrics) {
+        sockaddr = new InetSocketAddress(hostName, port);
+        this.roundTripEstimator = roundTripEstimator;
+        this.circuitBreaker = circuitBreaker;
+        this.loggerMetrics = loggerMetrics;
+        loggerChannel = solarmanNioTransport.openChannel(sockaddr, maxInFlightRequests, roundTripEstimator,
+                circuitBreaker, loggerMetrics);
+    }
+
+    public LoggerMetrics getLoggerMetrics() {
+        return loggerMetrics;
+    }
+
+    /**
+     * @return the sequence number of the next request sent over this connection, between 0 and 255
+     */
+    public int nextSequenceNumber() {
+        return sequenceNumber.getAndIncrement() & 0xFF;
+    }
+
+    /**
+     * Sends the request without blocking when the connection goes through the non-blocking transport. Otherwise the
+     * request is sent right away and the returned future is already completed.
+     * <p>
+     * The request frame is not copied: it belongs to the connection until the returned future is completed, and can
+     * be reused by the caller afterwards.
+     */
+    public CompletableFuture<byte[]> sendRequestAsync(byte[] reqFrame, Boolean allowLogging) {
+        if (loggerChannel == null) {
+            return CompletableFuture.completedFuture(sendRequest(reqFrame, allowLogging));
+        }
+
+        if (!circuitBreaker.tryAcquire()) {
+            LOGGER.debug("Logger is not answering, skipping request");
+            return CompletableFuture.completedFuture(new byte[0]);
+        }
+
+        // The channel reports the outcome to the circuit breaker, once per failure rather than once per request failed
+        return loggerChannel.sendRequest(reqFrame, allowLogging)
+                .whenComplete((response, e) -> lastActivity = System.nanoTime());
     }
 
     public byte[] sendRequest(byte[] reqFrame, Boolean allowLogging) {
-        // Will not be used by multiple threads, so not bothering making it thread safe for now
+        if (loggerChannel != null) {
+            return sendRequestAsync(reqFrame, allowLogging).join();
+        }
+
+        // The connection can be shared by several things polling the same logger, the fair lock makes sure only one
+        // request is in flight at a time and that waiting requests are sent in the order they were queued
+        requestLock.lock();
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                LOGGER.debug("Logger is not answering, skipping request");
+                return new byte[0];
+            }
+
+            boolean reusingSocket = socket != null;
+            byte[] response = doSendRequest(reqFrame, allowLogging);
+
+            if (response == null && reusingSocket) {
+                // The logger silently drops long-lived connections, so reconnect once and resend before giving up
+                LOGGER.debug("Connection to logger was lost, reconnecting");
+                loggerMetrics.recordReconnect();
+                closeSocket();
+                response = doSendRequest(reqFrame, allowLogging);
+            }
+
+            lastActivity = System.nanoTime();
+            recordOutcome(response);
+            return response == null ? new byte[0] : response;
+        } finally {
+            requestLock.unlock();
+        }
+    }
+
+    private void recordOutcome(byte[] response) {
+        if (response != null && response.length > 0) {
+            circuitBreaker.recordSuccess();
+        } else {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    /**
+     * @return the response frame, an empty array if no response was received in time or null if the connection is
+     *         broken
+     */
+    private byte[] doSendRequest(byte[] reqFrame, Boolean allowLogging) {
         if (socket == null) {
             if ((socket = connectSocket(allowLogging)) == null) {
                 if (allowLogging)
@@ -30,56 +152,147 @@ public class SolarmanLoggerConnection implements AutoCloseable {
         }
 
         try {
-            LOGGER.debug("Request frame: " + bytesToHex(reqFrame));
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("Request frame: " + bytesToHex(reqFrame));
             socket.getOutputStream().write(reqFrame);
+            loggerMetrics.recordRequest(reqFrame.length);
         } catch (IOException e) {
             if (allowLogging)
                 LOGGER.info("Unable to send frame to logger", e);
-            return new byte[0];
+            return null;
         }
 
 
-        byte[] buffer = new byte[1024];
-        int attempts = 5;
+        try {
+            long sentAt = System.nanoTime();
+            byte[] data = readResponseFrame(reqFrame, allowLogging);
+            if (data != null && data.length > 0) {
+                long roundTripMillis = (System.nanoTime() - sentAt) / 1_000_000;
+                roundTripEstimator.addSample(roundTripMillis);
+                loggerMetrics.recordResponse(data.length, roundTripMillis);
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Response frame: " + bytesToHex(data));
+            }
+            return data;
+        } catch (IOException e) {
+            if (allowLogging)
+                LOGGER.info("Connection error", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads exactly one response frame, using the payload length from the V5 header, so responses split over
+     * several TCP segments or longer than a single read are received whole. Frames that do not answer the request,
+     * like the heartbeats the logger sends to the cloud, are discarded. The response is waited for as long as the
+     * round-trip estimate allows.
+     *
+     * @return the response frame, an empty array if no response was received in time or null if the connection is
+     *         broken
+     */
+    private byte[] readResponseFrame(byte[] reqFrame, Boolean allowLogging) throws IOException {
+        InputStream inputStream = socket.getInputStream();
+        long timeoutMillis = roundTripEstimator.getTimeoutMillis();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        int discardedFrames = 0;
 
-        while (attempts > 0) {
-            attempts--;
+        while (true) {
             try {
-                int bytesRead = socket.getInputStream().read(buffer);
-                if (bytesRead < 0) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMillis <= 0)
+                    throw new SocketTimeoutException();
+                socket.setSoTimeout((int) remainingMillis);
+
+                if (!readFully(inputStream, 0, 1)) {
                     if (allowLogging)
                         LOGGER.info("No data received");
-                } else {
-                    byte[] data = Arrays.copyOfRange(buffer, 0, bytesRead);
-                    if (LOGGER.isDebugEnabled())
-                        LOGGER.debug("Response frame: " + bytesToHex(data));
-                    return data;
+                    return null;
                 }
             } catch (SocketTimeoutException e) {
-                LOGGER.debug("Connection timeout", e);
-                if (attempts == 0 && allowLogging) {
-                    LOGGER.info("Too many connection timeouts");
+                if (allowLogging)
+                    LOGGER.info("No response received within " + timeoutMillis + " ms");
+                roundTripEstimator.timedOut();
+                loggerMetrics.recordTimeout();
+                return new byte[0];
+            }
+
+            if (receiveBuffer[0] != FRAME_START) {
+                // Not a V5 frame, hand over whatever arrived so it gets reported as an invalid response
+                int bytesRead = inputStream.read(receiveBuffer, 1,
+                        Math.min(Math.max(inputStream.available(), 0), receiveBuffer.length - 1));
+                return Arrays.copyOf(receiveBuffer, 1 + Math.max(bytesRead, 0));
+            }
+
+            try {
+                // Once a frame started arriving the rest follows, do not let the deadline cut it short
+                socket.setSoTimeout((int) timeoutMillis);
+                // A frame that stops half way leaves the stream in an unknown state, treat it as a broken connection
+                if (!readFully(inputStream, 1, HEADER_LENGTH - 1)) {
+                    return null;
+                }
+                int frameLength = frameLength(receiveBuffer);
+                ensureReceiveBufferCapacity(frameLength);
+                if (!readFully(inputStream, HEADER_LENGTH, frameLength - HEADER_LENGTH)) {
+                    return null;
+                }
+
+                if (isResponseTo(receiveBuffer, reqFrame)) {
+                    return Arrays.copyOf(receiveBuffer, frameLength);
                 }
-            } catch (IOException e) {
+
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Discarding unsolicited frame: "
+                            + bytesToHex(Arrays.copyOf(receiveBuffer, frameLength)));
+                if (++discardedFrames >= MAX_DISCARDED_FRAMES) {
+                    if (allowLogging)
+                        LOGGER.info("Too many unsolicited frames received");
+                    return new byte[0];
+                }
+            } catch (SocketTimeoutException e) {
                 if (allowLogging)
-                    LOGGER.info("Connection error", e);
+                    LOGGER.info("Timeout while receiving frame");
+                return null;
             }
         }
+    }
 
-        return new byte[0];
+    /**
+     * @return false if the end of the stream was reached before reading all the bytes
+     */
+    private boolean readFully(InputStream inputStream, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int bytesRead = inputStream.read(receiveBuffer, offset + read, length - read);
+            if (bytesRead < 0) {
+                return false;
+            }
+            read += bytesRead;
+        }
+        return true;
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        return IntStream.range(0, bytes.length).mapToObj(i -> String.format("%02X", bytes[i]))
-                .collect(Collectors.joining());
+    private void ensureReceiveBufferCapacity(int capacity) {
+        if (receiveBuffer.length < capacity) {
+            receiveBuffer = Arrays.copyOf(receiveBuffer, capacity);
+        }
+    }
+
+    /**
+     * @return the number of milliseconds since a request was last sent over this connection
+     */
+    public long getIdleTimeMillis() {
+        return (System.nanoTime() - lastActivity) / 1_000_000;
     }
 
     private Socket connectSocket(Boolean allowLogging) {
         try {
             Socket clientSocket = new Socket();
+            int timeoutMillis = (int) roundTripEstimator.getTimeoutMillis();
 
-            clientSocket.setSoTimeout(10_000);
-            clientSocket.connect(sockaddr, 10_000);
+            clientSocket.setSoTimeout(timeoutMillis);
+            clientSocket.setKeepAlive(true);
+            clientSocket.setTcpNoDelay(true);
+            clientSocket.connect(sockaddr, timeoutMillis);
 
             return clientSocket;
         } catch (IOException e) {
@@ -89,8 +302,22 @@ public class SolarmanLoggerConnection implements AutoCloseable {
         }
     }
 
+    private void closeSocket() {
+        try {
+            close();
+        } catch (Exception e) {
+            LOGGER.debug("Error closing socket", e);
+        }
+        socket = null;
+    }
+
     @Override
     public void close() throws Exception {
+        if (loggerChannel != null) {
+            loggerChannel.close();
+        }
+
+        Socket socket = this.socket;
         if (socket != null && !socket.isClosed()) {
             socket.close();
         }
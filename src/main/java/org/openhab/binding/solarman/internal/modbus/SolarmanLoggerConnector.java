@@ -1,32 +1,146 @@
 package org.openhab.binding.solarman.internal.modbus;
 
-import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.SocketAddress;
-import java.net.SocketTimeoutException;
-import java.util.Arrays;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
+import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
-import org.openhab.core.thing.binding.ThingHandlerFactory;
-import org.osgi.service.component.annotations.Component;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetricsBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
 /**
  * @author Catalin Sanda - Initial contribution
  */
 public class SolarmanLoggerConnector {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanLoggerConnector.class);
     private final SolarmanLoggerConfiguration solarmanLoggerConfiguration;
+    private final @Nullable SolarmanNioTransport solarmanNioTransport;
+    // Outlive the connections, so what was learnt about the logger is not lost when reconnecting
+    private final RoundTripEstimator roundTripEstimator = new RoundTripEstimator();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final LoggerMetrics loggerMetrics = new LoggerMetrics();
+    // Shared by all the things polling the logger, so their requests are serialized on the same socket
+    private SolarmanLoggerConnection sharedConnection;
+    private int sharedConnectionUsers = 0;
+    private @Nullable MeterRegistry meterRegistry;
+    private @Nullable LoggerMetricsBinder loggerMetricsBinder;
+
     public SolarmanLoggerConnector(SolarmanLoggerConfiguration solarmanLoggerConfiguration) {
+        this(solarmanLoggerConfiguration, null);
+    }
+
+    /**
+     * @param solarmanNioTransport - the transport used by the connections, null to use blocking sockets
+     */
+    public SolarmanLoggerConnector(SolarmanLoggerConfiguration solarmanLoggerConfiguration,
+                                   @Nullable SolarmanNioTransport solarmanNioTransport) {
         this.solarmanLoggerConfiguration = solarmanLoggerConfiguration;
+        this.solarmanNioTransport = solarmanNioTransport;
     }
 
     public SolarmanLoggerConnection createConnection() {
-        return new SolarmanLoggerConnection(solarmanLoggerConfiguration.getHostname(),
-                solarmanLoggerConfiguration.getPort());
+        SolarmanNioTransport solarmanNioTransport = this.solarmanNioTransport;
+        return solarmanNioTransport == null
+                ? new SolarmanLoggerConnection(solarmanLoggerConfiguration.getHostname(),
+                        solarmanLoggerConfiguration.getPort(), roundTripEstimator, circuitBreaker,
+                        loggerMetrics)
+                : new SolarmanLoggerConnection(solarmanLoggerConfiguration.getHostname(),
+                        solarmanLoggerConfiguration.getPort(), solarmanNioTransport,
+                        solarmanLoggerConfiguration.getMaxInFlightRequests(), roundTripEstimator, circuitBreaker,
+                        loggerMetrics);
+    }
+
+    /**
+     * @return the metrics of the logger, shared by all the things polling it
+     */
+    public LoggerMetrics getLoggerMetrics() {
+        return loggerMetrics;
+    }
+
+    /**
+     * @return the logger, as its hostname, port and serial number, which tells its metrics apart from the ones of the
+     * other loggers
+     */
+    public String getLoggerId() {
+        return solarmanLoggerConfiguration.getHostname().trim().toLowerCase() + ":"
+                + solarmanLoggerConfiguration.getPort() + ":" + solarmanLoggerConfiguration.getSerialNumber().trim();
+    }
+
+    /**
+     * Publishes the metrics of the logger to the registry. They are only published once, however many things share
+     * the connector, and are removed when the connector is disposed.
+     */
+    public synchronized void bindMetrics(MeterRegistry meterRegistry) {
+        if (loggerMetricsBinder != null)
+            return;
+
+        LoggerMetricsBinder loggerMetricsBinder = new LoggerMetricsBinder(loggerMetrics,
+                Tags.of("logger", getLoggerId()));
+        loggerMetricsBinder.bindTo(meterRegistry);
+        this.loggerMetricsBinder = loggerMetricsBinder;
+        this.meterRegistry = meterRegistry;
     }
 
+    /**
+     * Returns the connection to use for a polling cycle. The same connection is shared by all the things polling the
+     * logger, so that their requests are serialized instead of being sent over parallel sockets. When persistent
+     * connections are enabled it is only re-created once it has been idle for longer than the idle timeout, as the
+     * loggers tend to silently drop sockets that have not been used for a while. Otherwise it is closed as soon as no
+     * thing is using it anymore.
+     * Every call must be paired with a call to {@link #releaseConnection(SolarmanLoggerConnection)}.
+     */
+    public synchronized SolarmanLoggerConnection acquireConnection() {
+        if (sharedConnection != null && sharedConnectionUsers == 0
+                && sharedConnection.getIdleTimeMillis() > solarmanLoggerConfiguration.getIdleTimeout() * 1000L) {
+            LOGGER.debug("Connection to logger was idle for too long, reconnecting");
+            closeQuietly(sharedConnection);
+            sharedConnection = null;
+        }
+
+        if (sharedConnection == null) {
+            sharedConnection = createConnection();
+        }
+
+        sharedConnectionUsers++;
+        return sharedConnection;
+    }
+
+    public synchronized void releaseConnection(SolarmanLoggerConnection solarmanLoggerConnection) {
+        if (solarmanLoggerConnection != sharedConnection) {
+            closeQuietly(solarmanLoggerConnection);
+            return;
+        }
+
+        sharedConnectionUsers--;
+        if (sharedConnectionUsers == 0 && !solarmanLoggerConfiguration.isPersistentConnection()) {
+            closeQuietly(sharedConnection);
+            sharedConnection = null;
+        }
+    }
+
+    public synchronized void dispose() {
+        LoggerMetricsBinder loggerMetricsBinder = this.loggerMetricsBinder;
+        MeterRegistry meterRegistry = this.meterRegistry;
+        if (loggerMetricsBinder != null && meterRegistry != null) {
+            loggerMetricsBinder.unbind(meterRegistry);
+            this.loggerMetricsBinder = null;
+            this.meterRegistry = null;
+        }
+
+        if (sharedConnection != null) {
+            closeQuietly(sharedConnection);
+            sharedConnection = null;
+            sharedConnectionUsers = 0;
+        }
+    }
+
+    private static void closeQuietly(SolarmanLoggerConnection solarmanLoggerConnection) {
+        try {
+            solarmanLoggerConnection.close();
+        } catch (Exception e) {
+            LOGGER.debug("Error closing connection to logger", e);
+        }
+    }
 }
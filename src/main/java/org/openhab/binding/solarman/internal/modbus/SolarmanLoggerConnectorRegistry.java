@@ -0,0 +1,99 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.core.common.ThreadPoolManager;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanLoggerConnectorRegistry} hands out one {@link SolarmanLoggerConnector} per logger, so that all
+ * things pointing at the same logger share a single connection. The loggers only tolerate one or two concurrent
+ * clients, the shared connection serializes the requests of all things instead.
+ * <p>
+ * The connection settings of the first thing acquiring a connector are used for everybody sharing it.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+@Component(service = SolarmanLoggerConnectorRegistry.class)
+public class SolarmanLoggerConnectorRegistry {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanLoggerConnectorRegistry.class);
+    static final String TRANSPORT_NIO = "nio";
+    private static final String THREAD_POOL_NAME = "solarman";
+
+    private final Map<ConnectorKey, SharedConnector> connectors = new HashMap<>();
+    private @Nullable SolarmanNioTransport solarmanNioTransport;
+
+    public synchronized SolarmanLoggerConnector acquireConnector(SolarmanLoggerConfiguration solarmanLoggerConfiguration) {
+        ConnectorKey key = new ConnectorKey(solarmanLoggerConfiguration.getHostname().trim().toLowerCase(),
+                solarmanLoggerConfiguration.getPort(), solarmanLoggerConfiguration.getSerialNumber().trim());
+
+        SharedConnector sharedConnector = connectors.computeIfAbsent(key,
+                k -> new SharedConnector(new SolarmanLoggerConnector(solarmanLoggerConfiguration,
+                        TRANSPORT_NIO.equalsIgnoreCase(solarmanLoggerConfiguration.getTransport().trim())
+                                ? getSolarmanNioTransport() : null)));
+        sharedConnector.references++;
+
+        if (sharedConnector.references > 1) {
+            LOGGER.debug("Sharing connection to logger {}:{} between {} things", key.hostname(), key.port(),
+                    sharedConnector.references);
+        }
+
+        return sharedConnector.connector;
+    }
+
+    public synchronized void releaseConnector(SolarmanLoggerConnector solarmanLoggerConnector) {
+        connectors.entrySet().removeIf(entry -> {
+            SharedConnector sharedConnector = entry.getValue();
+            if (sharedConnector.connector != solarmanLoggerConnector || --sharedConnector.references > 0) {
+                return false;
+            }
+
+            sharedConnector.connector.dispose();
+            return true;
+        });
+    }
+
+    @Deactivate
+    public synchronized void deactivate() {
+        connectors.values().forEach(sharedConnector -> sharedConnector.connector.dispose());
+        connectors.clear();
+
+        if (solarmanNioTransport != null) {
+            solarmanNioTransport.close();
+            solarmanNioTransport = null;
+        }
+    }
+
+    /**
+     * @return the transport shared by all the loggers using non-blocking IO, null if it can't be started
+     */
+    private @Nullable SolarmanNioTransport getSolarmanNioTransport() {
+        if (solarmanNioTransport == null) {
+            try {
+                solarmanNioTransport = new SolarmanNioTransport(ThreadPoolManager.getPool(THREAD_POOL_NAME));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to start the non-blocking transport, using blocking sockets instead", e);
+            }
+        }
+        return solarmanNioTransport;
+    }
+
+    private record ConnectorKey(String hostname, int port, String serialNumber) {
+    }
+
+    private static class SharedConnector {
+        private final SolarmanLoggerConnector connector;
+        private int references = 0;
+
+        private SharedConnector(SolarmanLoggerConnector connector) {
+            this.connector = connector;
+        }
+    }
+}
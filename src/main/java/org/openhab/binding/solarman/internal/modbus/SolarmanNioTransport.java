@@ -0,0 +1,530 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import static org.openhab.binding.solarman.internal.modbus.SolarmanV5Frames.*;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanNioTransport} talks to all the loggers from a single thread, using non-blocking sockets and a
+ * {@link Selector}. Every request has a deadline, so an unreachable logger never holds a thread while it is waited
+ * for, and never delays the requests sent to the other loggers.
+ * <p>
+ * Each {@link LoggerChannel} sends its requests in the order they were queued, optionally without waiting for the
+ * previous responses. Requests are completed on the completion executor, never on the selector thread.
+ * <p>
+ * The channel reports the outcome of its requests to the {@link CircuitBreaker} of the logger: a success per response
+ * and a single failure per timeout, failed connection or reset, however many requests it fails at once. Requests
+ * only failed because they were queued behind the one that timed out say nothing more about the logger.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanNioTransport implements AutoCloseable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanNioTransport.class);
+
+    private final Selector selector;
+    private final Executor completionExecutor;
+    private final Thread selectorThread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Only used by the selector thread
+    private final Set<LoggerChannel> activeChannels = new HashSet<>();
+    private volatile boolean running = true;
+
+    public SolarmanNioTransport(Executor completionExecutor) throws IOException {
+        this.selector = Selector.open();
+        this.completionExecutor = completionExecutor;
+        this.selectorThread = new Thread(this::run, "OH-binding-solarman-nio");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    /**
+     * @param maxInFlight        - how many requests can be sent before the response to the first one is received
+     * @param roundTripEstimator - gives the timeouts and is told about the response times
+     * @param circuitBreaker     - is told about the responses and the failures, the channel does not check it
+     * @param loggerMetrics      - is told about the traffic, the timeouts and the reconnects
+     * @return a channel to the logger, connected when the first request is sent
+     */
+    public LoggerChannel openChannel(SocketAddress address, int maxInFlight, RoundTripEstimator roundTripEstimator,
+                                     CircuitBreaker circuitBreaker, LoggerMetrics loggerMetrics) {
+        return new LoggerChannel(address, maxInFlight, roundTripEstimator, circuitBreaker, loggerMetrics);
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select(computeSelectTimeout());
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    ((LoggerChannel) key.attachment()).handleSelected(key);
+                }
+
+                long now = System.currentTimeMillis();
+                new ArrayList<>(activeChannels).forEach(channel -> channel.checkDeadline(now));
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Unexpected error in the logger selector loop", e);
+            }
+        }
+
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+        activeChannels.addAll(selector.keys().stream().map(key -> (LoggerChannel) key.attachment()).toList());
+        new ArrayList<>(activeChannels).forEach(LoggerChannel::closeNow);
+    }
+
+    private long computeSelectTimeout() {
+        long now = System.currentTimeMillis();
+        long nearestDeadline = activeChannels.stream()
+                .mapToLong(LoggerChannel::nextDeadline)
+                .filter(deadline -> deadline > 0)
+                .min()
+                .orElse(0);
+        return nearestDeadline == 0 ? 0 : Math.max(1, nearestDeadline - now);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(RoundTripEstimator.MAX_TIMEOUT_MILLIS);
+            selector.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing selector", e);
+        }
+    }
+
+    /**
+     * A connection to one logger, driven by the selector thread. All fields are only used by the selector thread.
+     * <p>
+     * Up to {@code maxInFlight} requests are written back to back without waiting for the previous responses, which
+     * are matched to their request by the sequence number they echo.
+     */
+    public class LoggerChannel {
+        private final SocketAddress address;
+        private final int maxInFlight;
+        private final RoundTripEstimator roundTripEstimator;
+        private final CircuitBreaker circuitBreaker;
+        private final LoggerMetrics loggerMetrics;
+        private final Deque<PendingRequest> pendingRequests = new ArrayDeque<>();
+        // Requests written, or being written, to the socket that are waiting for their response, oldest first
+        private final Deque<PendingRequest> inFlightRequests = new ArrayDeque<>();
+        private SocketChannel socketChannel;
+        private SelectionKey selectionKey;
+        private boolean connected = false;
+        private boolean reused = false;
+        private long connectDeadline = 0;
+        // The frames waiting to be written, copied so that the ones answered can be reused by their owner right away
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(1024).limit(0);
+        private byte[] receiveBuffer = new byte[1024];
+        private int received = 0;
+        private int discardedFrames = 0;
+
+        private LoggerChannel(SocketAddress address, int maxInFlight, RoundTripEstimator roundTripEstimator,
+                              CircuitBreaker circuitBreaker, LoggerMetrics loggerMetrics) {
+            this.address = address;
+            this.maxInFlight = Math.max(1, maxInFlight);
+            this.roundTripEstimator = roundTripEstimator;
+            this.circuitBreaker = circuitBreaker;
+            this.loggerMetrics = loggerMetrics;
+        }
+
+        /**
+         * The request frame is kept, not copied, to match the responses, so the caller must not modify it until the
+         * returned future is completed. The channel does not use it anymore once it is.
+         *
+         * @return the response frame, an empty array if no response was received in time or the logger could not
+         *         be reached
+         */
+        public CompletableFuture<byte[]> sendRequest(byte[] reqFrame, boolean allowLogging) {
+            PendingRequest pendingRequest = new PendingRequest(reqFrame, allowLogging);
+            execute(() -> {
+                if (!running) {
+                    circuitBreaker.recordFailure();
+                    complete(pendingRequest, new byte[0]);
+                    return;
+                }
+                pendingRequests.add(pendingRequest);
+                sendNext();
+            });
+            return pendingRequest.future;
+        }
+
+        public void close() {
+            execute(this::closeNow);
+        }
+
+        private void closeNow() {
+            closeSocket();
+            // Still reported, the probe of a half open breaker may be among them
+            if (failRequests(inFlightRequests) | failRequests(pendingRequests))
+                circuitBreaker.recordFailure();
+            activeChannels.remove(this);
+        }
+
+        private long nextDeadline() {
+            if (!connected) {
+                return connectDeadline;
+            }
+            PendingRequest oldestRequest = inFlightRequests.peek();
+            return oldestRequest == null ? 0 : oldestRequest.deadline;
+        }
+
+        private void sendNext() {
+            if (pendingRequests.isEmpty()) {
+                if (inFlightRequests.isEmpty()) {
+                    activeChannels.remove(this);
+                }
+                return;
+            }
+
+            activeChannels.add(this);
+            if (socketChannel == null) {
+                connect();
+                return;
+            }
+            if (!connected) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            long deadline = now + roundTripEstimator.getTimeoutMillis();
+            while (!pendingRequests.isEmpty() && inFlightRequests.size() < maxInFlight) {
+                PendingRequest pendingRequest = pendingRequests.poll();
+                pendingRequest.sentAt = now;
+                pendingRequest.deadline = deadline;
+                inFlightRequests.add(pendingRequest);
+                appendToWriteBuffer(pendingRequest.reqFrame);
+                loggerMetrics.recordRequest(pendingRequest.reqFrame.length);
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Request frame: " + bytesToHex(pendingRequest.reqFrame));
+            }
+            updateInterestOps();
+        }
+
+        private void appendToWriteBuffer(byte[] frame) {
+            writeBuffer.compact();
+            if (writeBuffer.remaining() < frame.length) {
+                ByteBuffer grownBuffer = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2,
+                        writeBuffer.position() + frame.length));
+                writeBuffer = grownBuffer.put(writeBuffer.flip());
+            }
+            writeBuffer.put(frame).flip();
+        }
+
+        private void updateInterestOps() {
+            selectionKey.interestOps(SelectionKey.OP_READ | (writeBuffer.hasRemaining() ? SelectionKey.OP_WRITE : 0));
+        }
+
+        private void connect() {
+            try {
+                socketChannel = SocketChannel.open();
+                socketChannel.configureBlocking(false);
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                socketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                connected = false;
+                reused = false;
+                connectDeadline = System.currentTimeMillis() + roundTripEstimator.getTimeoutMillis();
+
+                if (socketChannel.connect(address)) {
+                    selectionKey = socketChannel.register(selector, 0, this);
+                    connected();
+                } else {
+                    selectionKey = socketChannel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException | RuntimeException e) {
+                connectFailed(e);
+            }
+        }
+
+        private void connected() {
+            connected = true;
+            connectDeadline = 0;
+            updateInterestOps();
+            sendNext();
+        }
+
+        private void connectFailed(Exception e) {
+            if (isLoggingAllowed())
+                LOGGER.error("Could not open socket on IP " + address, e);
+            giveUp();
+        }
+
+        /**
+         * Fails all the requests, the logger can't be reached and they would only wait for the same timeout one after
+         * the other. The logger failed once, not once per request.
+         */
+        private void giveUp() {
+            closeSocket();
+            if (failRequests(inFlightRequests) | failRequests(pendingRequests))
+                circuitBreaker.recordFailure();
+            activeChannels.remove(this);
+        }
+
+        private void handleSelected(SelectionKey key) {
+            if (!key.isValid() || key != selectionKey) {
+                return;
+            }
+
+            try {
+                if (key.isConnectable()) {
+                    socketChannel.finishConnect();
+                    connected();
+                    return;
+                }
+                if (key.isWritable()) {
+                    socketChannel.write(writeBuffer);
+                    updateInterestOps();
+                }
+                if (key == selectionKey && key.isValid() && key.isReadable()) {
+                    if (inFlightRequests.isEmpty()) {
+                        // Data nobody asked for, like a heartbeat arriving between two requests
+                        drainIdleChannel();
+                    } else {
+                        read();
+                    }
+                }
+            } catch (IOException e) {
+                if (!connected) {
+                    connectFailed(e);
+                } else {
+                    connectionBroken(e);
+                }
+            }
+        }
+
+        private void read() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(receiveBuffer, received, receiveBuffer.length - received);
+            int bytesRead = socketChannel.read(buffer);
+            if (bytesRead < 0) {
+                connectionBroken(null);
+                return;
+            }
+            received += bytesRead;
+
+            while (!inFlightRequests.isEmpty() && received > 0) {
+                if (receiveBuffer[0] != FRAME_START) {
+                    // Not a V5 frame, hand over whatever arrived so it gets reported as an invalid response
+                    complete(inFlightRequests.poll(), Arrays.copyOf(receiveBuffer, received));
+                    // The logger answered, the requests failed with the reset are not held against it
+                    circuitBreaker.recordSuccess();
+                    closeSocket();
+                    failRequests(inFlightRequests);
+                    sendNext();
+                    return;
+                }
+                if (received < HEADER_LENGTH) {
+                    return;
+                }
+
+                int frameLength = frameLength(receiveBuffer);
+                if (receiveBuffer.length < frameLength) {
+                    receiveBuffer = Arrays.copyOf(receiveBuffer, frameLength);
+                }
+                if (received < frameLength) {
+                    return;
+                }
+
+                byte[] frame = Arrays.copyOf(receiveBuffer, frameLength);
+                System.arraycopy(receiveBuffer, frameLength, receiveBuffer, 0, received - frameLength);
+                received -= frameLength;
+
+                PendingRequest answeredRequest = inFlightRequests.stream()
+                        .filter(inFlightRequest -> isResponseTo(frame, inFlightRequest.reqFrame))
+                        .findFirst()
+                        .orElse(null);
+
+                if (answeredRequest != null) {
+                    if (LOGGER.isDebugEnabled())
+                        LOGGER.debug("Response frame: " + bytesToHex(frame));
+                    inFlightRequests.remove(answeredRequest);
+                    long roundTripMillis = System.currentTimeMillis() - answeredRequest.sentAt;
+                    roundTripEstimator.addSample(roundTripMillis);
+                    loggerMetrics.recordResponse(frame.length, roundTripMillis);
+                    reused = true;
+                    discardedFrames = 0;
+                    circuitBreaker.recordSuccess();
+                    complete(answeredRequest, frame);
+                } else {
+                    if (LOGGER.isDebugEnabled())
+                        LOGGER.debug("Discarding unsolicited frame: " + bytesToHex(frame));
+                    if (++discardedFrames >= SolarmanLoggerConnection.MAX_DISCARDED_FRAMES) {
+                        if (isLoggingAllowed())
+                            LOGGER.info("Too many unsolicited frames received");
+                        resetConnection();
+                        return;
+                    }
+                }
+            }
+
+            sendNext();
+        }
+
+        private void drainIdleChannel() {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(receiveBuffer);
+                if (socketChannel.read(buffer) < 0) {
+                    closeSocket();
+                }
+            } catch (IOException e) {
+                closeSocket();
+            }
+        }
+
+        private void connectionBroken(IOException e) {
+            boolean wasReused = reused;
+            closeSocket();
+
+            // The logger silently drops long-lived connections, so reconnect once and resend before giving up
+            boolean resending = false;
+            boolean failed = false;
+            Iterator<PendingRequest> newestFirst = inFlightRequests.descendingIterator();
+            while (newestFirst.hasNext()) {
+                PendingRequest inFlightRequest = newestFirst.next();
+                if (wasReused && !inFlightRequest.retried) {
+                    inFlightRequest.retried = true;
+                    pendingRequests.addFirst(inFlightRequest);
+                    resending = true;
+                } else {
+                    if (inFlightRequest.allowLogging)
+                        LOGGER.info("Connection error", e);
+                    complete(inFlightRequest, new byte[0]);
+                    failed = true;
+                }
+            }
+            inFlightRequests.clear();
+            if (failed)
+                circuitBreaker.recordFailure();
+
+            if (resending) {
+                LOGGER.debug("Connection to logger was lost, reconnecting");
+                loggerMetrics.recordReconnect();
+            }
+            sendNext();
+        }
+
+        private void checkDeadline(long now) {
+            long deadline = nextDeadline();
+            if (deadline == 0 || now < deadline) {
+                return;
+            }
+
+            if (!connected) {
+                connectFailed(new IOException("Timeout connecting to " + address));
+                return;
+            }
+
+            if (isLoggingAllowed())
+                LOGGER.info("Timeout waiting for a response from " + address);
+            roundTripEstimator.timedOut();
+            loggerMetrics.recordTimeout();
+            giveUp();
+        }
+
+        /**
+         * Gives up on the requests sent over the current connection and starts over with a new one, as late
+         * responses could otherwise be taken for the answer to the next requests.
+         */
+        private void resetConnection() {
+            closeSocket();
+            if (failRequests(inFlightRequests))
+                circuitBreaker.recordFailure();
+            sendNext();
+        }
+
+        private boolean isLoggingAllowed() {
+            PendingRequest pendingRequest = inFlightRequests.isEmpty() ? pendingRequests.peek()
+                    : inFlightRequests.peek();
+            return pendingRequest != null && pendingRequest.allowLogging;
+        }
+
+        private void closeSocket() {
+            if (selectionKey != null) {
+                selectionKey.cancel();
+                selectionKey = null;
+            }
+            if (socketChannel != null) {
+                try {
+                    socketChannel.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Error closing socket", e);
+                }
+                socketChannel = null;
+            }
+            connected = false;
+            reused = false;
+            connectDeadline = 0;
+            writeBuffer.clear().limit(0);
+            received = 0;
+            discardedFrames = 0;
+        }
+
+        /**
+         * @return true if there was any request to fail
+         */
+        private boolean failRequests(Queue<PendingRequest> requests) {
+            boolean failed = !requests.isEmpty();
+            requests.forEach(pendingRequest -> complete(pendingRequest, new byte[0]));
+            requests.clear();
+            return failed;
+        }
+
+        private void complete(PendingRequest pendingRequest, byte[] response) {
+            completionExecutor.execute(() -> pendingRequest.future.complete(response));
+        }
+    }
+
+    private static class PendingRequest {
+        private final byte[] reqFrame;
+        private final boolean allowLogging;
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        private boolean retried = false;
+        private long sentAt = 0;
+        private long deadline = 0;
+
+        private PendingRequest(byte[] reqFrame, boolean allowLogging) {
+            this.reqFrame = reqFrame;
+            this.allowLogging = allowLogging;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Framing rules of the Solarman V5 protocol shared by the transports: how long a frame is and which frames answer a
+ * request.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+final class SolarmanV5Frames {
+    static final byte FRAME_START = (byte) 0xA5;
+    static final int HEADER_LENGTH = 11;
+    // Checksum and end of frame
+    static final int TRAILER_LENGTH = 2;
+    // Second byte of the handshake, data, info, heartbeat and report control codes
+    private static final Set<Byte> UNSOLICITED_CONTROL_CODES = Set.of((byte) 0x41, (byte) 0x42, (byte) 0x43,
+            (byte) 0x47, (byte) 0x48);
+
+    private SolarmanV5Frames() {
+    }
+
+    /**
+     * @param header - a buffer holding at least the {@link #HEADER_LENGTH} bytes of the header of a frame
+     * @return the length of the whole frame, based on the payload length found in the header
+     */
+    static int frameLength(byte[] header) {
+        return HEADER_LENGTH + ((header[1] & 0xFF) | ((header[2] & 0xFF) << 8)) + TRAILER_LENGTH;
+    }
+
+    /**
+     * Responses echo the first byte of the request sequence number, frames sent by the logger on its own have a
+     * control code of their own.
+     */
+    static boolean isResponseTo(byte[] frame, byte[] reqFrame) {
+        return frame[5] == reqFrame[5] && !UNSOLICITED_CONTROL_CODES.contains(frame[4]);
+    }
+
+    static String bytesToHex(byte[] bytes) {
+        return IntStream.range(0, bytes.length).mapToObj(i -> String.format("%02X", bytes[i]))
+                .collect(Collectors.joining());
+    }
+}
@@ -2,13 +2,15 @@ package org.openhab.binding.solarman.internal.modbus;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
 import org.openhab.binding.solarman.internal.SolarmanLoggerHandler;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,119 +19,335 @@ import org.slf4j.LoggerFactory;
  */
 public class SolarmanV5Protocol {
     private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanLoggerHandler.class);
-    private final SolarmanLoggerConfiguration solarmanLoggerConfiguration;
+    private static final int MODBUS_REQUEST_OFFSET = 26;
+    private static final int MODBUS_REQUEST_LENGTH = 8;
+    private static final int REQUEST_PAYLOAD_LENGTH = 15 + MODBUS_REQUEST_LENGTH;
+    private static final int REQUEST_FRAME_LENGTH = MODBUS_REQUEST_OFFSET + MODBUS_REQUEST_LENGTH + 2;
+    private static final int MODBUS_RESPONSE_OFFSET = 25;
+    // Slave address, function code with the error bit set, exception code and CRC
+    private static final int MODBUS_EXCEPTION_LENGTH = 5;
+    private static final int ERROR_RESPONSE_FRAME_LENGTH = 29;
+    private static final byte WRITE_MULTIPLE_REGISTERS = 0x10;
+    // Slave address, function code, starting address and quantity of registers
+    private static final int MODBUS_WRITE_HEADER_LENGTH = 6;
+    // Most registers a Write Multiple Registers request can hold
+    public static final int MAX_WRITE_REGISTERS = 123;
+
+    private final int loggerSerial;
+    // Read request frames whose response was handled, reused by the next requests. A frame is owned by its request
+    // until then, so only as many frames are allocated as requests are waiting for their response at once.
+    private final Deque<byte[]> requestFrames = new ArrayDeque<>();
 
+    /**
+     * @throws NumberFormatException if the serial number of the logger is not a valid unsigned integer
+     */
     public SolarmanV5Protocol(SolarmanLoggerConfiguration solarmanLoggerConfiguration) {
-        this.solarmanLoggerConfiguration = solarmanLoggerConfiguration;
+        this.loggerSerial = (int) Long.parseUnsignedLong(solarmanLoggerConfiguration.getSerialNumber().trim());
     }
 
-    public Map<Integer, byte[]> readRegisters(SolarmanLoggerConnection solarmanLoggerConnection, byte mbFunctionCode, int firstReg, int lastReg, Boolean allowLogging) {
-        byte[] solarmanV5Frame = buildSolarmanV5Frame(mbFunctionCode, firstReg, lastReg);
-        byte[] respFrame = solarmanLoggerConnection.sendRequest(solarmanV5Frame, allowLogging);
-        if (respFrame.length > 0) {
-            byte[] modbusRespFrame = extractModbusResponseFrame(respFrame, solarmanV5Frame, allowLogging);
-            return parseModbusReadHoldingRegistersResponse(modbusRespFrame, firstReg, lastReg, allowLogging);
-        } else {
-            return Collections.emptyMap();
+    /**
+     * Reads the registers from firstReg to lastReg and stores their values in the register bank. Unlike
+     * {@link #readRegistersAsync}, this can be called from any thread, like to read back the registers just written.
+     *
+     * @return true if the registers were read
+     */
+    public boolean readRegisters(SolarmanLoggerConnection solarmanLoggerConnection, byte mbFunctionCode, int firstReg,
+                                 int lastReg, Boolean allowLogging, RegisterBank registerBank) {
+        byte[] solarmanV5Frame = acquireRequestFrame();
+        try {
+            encodeSolarmanV5Frame(solarmanV5Frame, solarmanLoggerConnection.nextSequenceNumber(), mbFunctionCode,
+                    firstReg, lastReg);
+            byte[] respFrame = solarmanLoggerConnection.sendRequest(solarmanV5Frame, allowLogging);
+            return handleReadRegistersResponse(respFrame, solarmanV5Frame, firstReg, lastReg, allowLogging,
+                    registerBank, solarmanLoggerConnection.getLoggerMetrics()) == ReadResult.SUCCESS;
+        } finally {
+            releaseRequestFrame(solarmanV5Frame);
         }
     }
 
     /**
-     * Builds a SolarMAN V5 frame to request data from firstReg to lastReg.
-     * Frame format is based on
-     * <a href="https://pysolarmanv5.readthedocs.io/en/latest/solarmanv5_protocol.html">Solarman V5 Protocol</a>
+     * Same as {@link #readRegisters}, without waiting for the response when the connection does not block.
+     * Several requests can be sent without waiting for the previous ones to complete, the responses are then stored in
+     * the register bank while holding its lock.
      *
-     * @param mbFunctionCode
-     * @param firstReg       - the start register
-     * @param lastReg        - the end register
-     * @return byte array containing the Solarman V5 frame
+     * @return the outcome of the request, telling why the registers could not be read
      */
-    protected byte[] buildSolarmanV5Frame(byte mbFunctionCode, int firstReg, int lastReg) {
-        byte[] requestPayload = buildSolarmanV5FrameRequestPayload(mbFunctionCode, firstReg, lastReg);
-        byte[] header = buildSolarmanV5FrameHeader(requestPayload.length);
-        byte[] trailer = buildSolarmanV5FrameTrailer(header, requestPayload);
+    public CompletableFuture<ReadResult> readRegistersAsync(SolarmanLoggerConnection solarmanLoggerConnection,
+                                                         byte mbFunctionCode, int firstReg, int lastReg,
+                                                         Boolean allowLogging, RegisterBank registerBank) {
+        // Handed over to the connection until the response arrives, while the next requests use other frames
+        byte[] solarmanV5Frame = acquireRequestFrame();
+        encodeSolarmanV5Frame(solarmanV5Frame, solarmanLoggerConnection.nextSequenceNumber(), mbFunctionCode,
+                firstReg, lastReg);
+        return solarmanLoggerConnection.sendRequestAsync(solarmanV5Frame, allowLogging).thenApply(respFrame -> {
+            try {
+                return handleReadRegistersResponse(respFrame, solarmanV5Frame, firstReg, lastReg, allowLogging,
+                        registerBank, solarmanLoggerConnection.getLoggerMetrics());
+            } finally {
+                releaseRequestFrame(solarmanV5Frame);
+            }
+        });
+    }
 
-        return ByteBuffer.allocate(header.length + requestPayload.length + trailer.length).put(header)
-                .put(requestPayload).put(trailer).array();
+    /**
+     * @return a read request frame no other request uses, to give back with {@link #releaseRequestFrame} once its
+     *         response was handled
+     */
+    private byte[] acquireRequestFrame() {
+        synchronized (requestFrames) {
+            byte[] frame = requestFrames.poll();
+            return frame == null ? new byte[REQUEST_FRAME_LENGTH] : frame;
+        }
     }
 
-    private byte[] buildSolarmanV5FrameTrailer(byte[] header, byte[] requestPayload) {
-        byte[] headerAndPayload = ByteBuffer.allocate(header.length + requestPayload.length).put(header)
-                .put(requestPayload).array();
-        // (one byte) – Denotes the V5 frame checksum. The checksum is computed on the entire V5 frame except for Start,
-        // Checksum (obviously!) and End.
-        // Note, that this field is completely separate to the Modbus RTU checksum, which coincidentally, is the two
-        // bytes immediately preceding this field.
-        byte[] checksum = new byte[]{
-                computeChecksum(Arrays.copyOfRange(headerAndPayload, 1, headerAndPayload.length))};
+    private void releaseRequestFrame(byte[] frame) {
+        synchronized (requestFrames) {
+            requestFrames.push(frame);
+        }
+    }
 
-        // (one byte) – Denotes the end of the V5 frame. Always 0x15.
-        byte[] end = new byte[]{(byte) 0x15};
+    /**
+     * Writes the values to the registers starting at firstReg, with the Modbus function Write Multiple Registers.
+     * The request is queued on the connection like the read requests, so it is sent in between the requests of a poll
+     * using the same connection.
+     *
+     * @param values - the values of the registers, at most {@link #MAX_WRITE_REGISTERS}
+     * @return the outcome of the request, {@link ReadResult#SUCCESS} once the inverter acknowledged the write
+     */
+    public CompletableFuture<ReadResult> writeRegistersAsync(SolarmanLoggerConnection solarmanLoggerConnection,
+                                                          int firstReg, short[] values, Boolean allowLogging) {
+        if (values.length == 0 || values.length > MAX_WRITE_REGISTERS)
+            throw new IllegalArgumentException("Unable to write " + values.length + " registers in one request");
+
+        byte[] solarmanV5Frame = buildSolarmanV5WriteFrame(solarmanLoggerConnection.nextSequenceNumber(), firstReg,
+                values);
+        LoggerMetrics loggerMetrics = solarmanLoggerConnection.getLoggerMetrics();
+        return solarmanLoggerConnection.sendRequestAsync(solarmanV5Frame, allowLogging).thenApply(respFrame -> {
+            ReadResult writeResult = decodeWriteRegistersResponse(respFrame, solarmanV5Frame, firstReg,
+                    values.length, allowLogging, loggerMetrics);
+            if (writeResult == ReadResult.MODBUS_EXCEPTION) {
+                loggerMetrics.recordModbusException();
+            } else if (writeResult == ReadResult.INVALID_RESPONSE) {
+                loggerMetrics.recordInvalidResponse();
+            }
+            return writeResult;
+        });
+    }
+
+    private ReadResult decodeWriteRegistersResponse(byte[] respFrame, byte[] solarmanV5Frame, int firstReg,
+                                                    int regCount, Boolean allowLogging, LoggerMetrics loggerMetrics) {
+        if (respFrame.length == 0) {
+            return ReadResult.NO_RESPONSE;
+        } else if (isModbusExceptionResponse(respFrame)) {
+            if (allowLogging)
+                logModbusException(respFrame[MODBUS_RESPONSE_OFFSET + 2]);
+            return ReadResult.MODBUS_EXCEPTION;
+        } else if (respFrame.length == ERROR_RESPONSE_FRAME_LENGTH) {
+            return parseResponseErrorCode(respFrame, solarmanV5Frame) ? ReadResult.MODBUS_EXCEPTION
+                    : ReadResult.INVALID_RESPONSE;
+        } else if (!isValidResponseFrame(respFrame, solarmanV5Frame, allowLogging)) {
+            return ReadResult.INVALID_RESPONSE;
+        }
+
+        // The inverter echoes the starting address and the quantity of registers written
+        int offset = MODBUS_RESPONSE_OFFSET;
+        if (respFrame.length < offset + MODBUS_WRITE_HEADER_LENGTH + 2 + 2
+                || respFrame[offset + 1] != WRITE_MULTIPLE_REGISTERS
+                || (((respFrame[offset + 2] & 0xFF) << 8) | (respFrame[offset + 3] & 0xFF)) != firstReg
+                || (((respFrame[offset + 4] & 0xFF) << 8) | (respFrame[offset + 5] & 0xFF)) != regCount) {
+            if (allowLogging)
+                LOGGER.error("Response frame does not acknowledge the registers written");
+            return ReadResult.INVALID_RESPONSE;
+        }
 
-        return ByteBuffer.allocate(checksum.length + end.length).put(checksum).put(end).array();
+        int actualCrc = (respFrame[offset + MODBUS_WRITE_HEADER_LENGTH] & 0xFF)
+                | ((respFrame[offset + MODBUS_WRITE_HEADER_LENGTH + 1] & 0xFF) << 8);
+        int expectedCrc = CRC16Modbus.calculate(respFrame, offset, MODBUS_WRITE_HEADER_LENGTH);
+        if (actualCrc != expectedCrc) {
+            loggerMetrics.recordCrcError();
+            if (allowLogging)
+                LOGGER.error(String.format("Modbus frame crc is not valid. Expected %04x, got %04x", expectedCrc, actualCrc));
+            return ReadResult.INVALID_RESPONSE;
+        }
+
+        return ReadResult.SUCCESS;
     }
 
-    private byte computeChecksum(byte[] frame) {
-        // [-91, 23, 0, 16, 69, 0, 0, 46, -13, 90, 102, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 3, 0, 0, 0, 39,
-        // 5, -48, 122, 21]
-        int checksumValue = 0;
-        for (byte b : frame) {
-            checksumValue += Byte.toUnsignedInt(b);
+    private ReadResult handleReadRegistersResponse(byte[] respFrame, byte[] solarmanV5Frame, int firstReg,
+                                                   int lastReg, Boolean allowLogging, RegisterBank registerBank,
+                                                   LoggerMetrics loggerMetrics) {
+        ReadResult readResult = decodeReadRegistersResponse(respFrame, solarmanV5Frame, firstReg, lastReg,
+                allowLogging, registerBank, loggerMetrics);
+        if (readResult == ReadResult.MODBUS_EXCEPTION) {
+            loggerMetrics.recordModbusException();
+        } else if (readResult == ReadResult.INVALID_RESPONSE) {
+            loggerMetrics.recordInvalidResponse();
         }
-        return (byte) (checksumValue & 0xFF);
+        return readResult;
     }
 
-    private byte[] buildSolarmanV5FrameHeader(int payloadSize) {
-        // (one byte) Denotes the start of the V5 frame. Always 0xA5.
-        byte[] start = new byte[]{(byte) 0xA5};
+    private ReadResult decodeReadRegistersResponse(byte[] respFrame, byte[] solarmanV5Frame, int firstReg,
+                                                   int lastReg, Boolean allowLogging, RegisterBank registerBank,
+                                                   LoggerMetrics loggerMetrics) {
+        if (respFrame.length == 0) {
+            return ReadResult.NO_RESPONSE;
+        } else if (isModbusExceptionResponse(respFrame)) {
+            if (allowLogging)
+                logModbusException(respFrame[MODBUS_RESPONSE_OFFSET + 2]);
+            return ReadResult.MODBUS_EXCEPTION;
+        } else if (respFrame.length == ERROR_RESPONSE_FRAME_LENGTH) {
+            return parseResponseErrorCode(respFrame, solarmanV5Frame) ? ReadResult.MODBUS_EXCEPTION
+                    : ReadResult.INVALID_RESPONSE;
+        } else if (!isValidResponseFrame(respFrame, solarmanV5Frame, allowLogging)) {
+            return ReadResult.INVALID_RESPONSE;
+        }
+
+        synchronized (registerBank) {
+            return parseModbusReadHoldingRegistersResponse(respFrame, MODBUS_RESPONSE_OFFSET,
+                    respFrame.length - MODBUS_RESPONSE_OFFSET - 2, firstReg, lastReg, allowLogging, registerBank,
+                    loggerMetrics) ? ReadResult.SUCCESS : ReadResult.INVALID_RESPONSE;
+        }
+    }
+
+    /**
+     * @return true if the Modbus frame in the response has the error bit of its function code set
+     */
+    private boolean isModbusExceptionResponse(byte[] respFrame) {
+        return respFrame.length == MODBUS_RESPONSE_OFFSET + MODBUS_EXCEPTION_LENGTH + 2
+                && respFrame[0] == (byte) 0xA5
+                && (respFrame[MODBUS_RESPONSE_OFFSET + 1] & 0x80) != 0;
+    }
+
+    /**
+     * Builds a SolarMAN V5 frame to request data from firstReg to lastReg.
+     * Frame format is based on
+     * <a href="https://pysolarmanv5.readthedocs.io/en/latest/solarmanv5_protocol.html">Solarman V5 Protocol</a>
+     * <p>
+     * The requests sent by this protocol encode their frame in a reused buffer instead, see
+     * {@link #readRegistersAsync}.
+     *
+     * @param sequenceNumber - the sequence number the logger echoes in its response
+     * @param mbFunctionCode
+     * @param firstReg       - the start register
+     * @param lastReg        - the end register
+     * @return byte array containing the Solarman V5 frame
+     */
+    protected byte[] buildSolarmanV5Frame(int sequenceNumber, byte mbFunctionCode, int firstReg, int lastReg) {
+        byte[] frame = new byte[REQUEST_FRAME_LENGTH];
+        encodeSolarmanV5Frame(frame, sequenceNumber, mbFunctionCode, firstReg, lastReg);
+        return frame;
+    }
+
+    private void encodeSolarmanV5Frame(byte[] frame, int sequenceNumber, byte mbFunctionCode, int firstReg,
+                                       int lastReg) {
+        // Header
+
+        // (one byte) – Denotes the start of the V5 frame. Always 0xA5.
+        frame[0] = (byte) 0xA5;
 
         // (two bytes) Payload length
-        byte[] length = ByteBuffer.allocate(Short.BYTES).order(ByteOrder.LITTLE_ENDIAN).putShort((short) payloadSize)
-                .array();
+        putShortLittleEndian(frame, 1, REQUEST_PAYLOAD_LENGTH);
 
         // (two bytes) – Describes the type of V5 frame. For Modbus RTU requests, the control code is 0x4510. For Modbus
         // RTU responses, the control code is 0x1510.
-        byte[] controlCode = new byte[]{(byte) 0x10, (byte) 0x45};
+        frame[3] = (byte) 0x10;
+        frame[4] = (byte) 0x45;
 
         // (two bytes) – This field acts as a two-way sequence number. On outgoing requests, the first byte of this
         // field is echoed back in the same position on incoming responses.
         // This is done by initialising this byte to a random value, and incrementing for each subsequent request.
         // The second byte is incremented by the data logging stick for every response sent (either to Solarman Cloud or
         // local requests).
-        // @TODO the increment part
-        byte[] serial = new byte[]{(byte) 0x00, (byte) 0x00};
+        frame[5] = (byte) sequenceNumber;
+        frame[6] = (byte) 0x00;
 
         // (four bytes) – Serial number of Solarman data logging stick
-        byte[] loggerSerial = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
-                .putInt((int) Long.parseUnsignedLong(solarmanLoggerConfiguration.getSerialNumber())).array();
+        frame[7] = (byte) loggerSerial;
+        frame[8] = (byte) (loggerSerial >> 8);
+        frame[9] = (byte) (loggerSerial >> 16);
+        frame[10] = (byte) (loggerSerial >> 24);
 
-        // Append all fields into the header
-        return ByteBuffer
-                .allocate(start.length + length.length + controlCode.length + serial.length + loggerSerial.length)
-                .put(start).put(length).put(controlCode).put(serial).put(loggerSerial).array();
-    }
+        // Payload
 
-    protected byte[] buildSolarmanV5FrameRequestPayload(byte mbFunctionCode, int firstReg, int lastReg) {
         // (one byte) – Denotes the frame type.
-        byte[] frameType = new byte[]{0x02};
+        frame[11] = 0x02;
         // (two bytes) – Denotes the sensor type.
-        byte[] sensorType = new byte[]{0x00, 0x00};
         // (four bytes) – Denotes the frame total working time. See corresponding response field of same name for
         // further details.
-        byte[] totalWorkingTime = new byte[]{0x00, 0x00, 0x00, 0x00};
         // (four bytes) – Denotes the frame power on time.
-        byte[] powerOnTime = new byte[]{0x00, 0x00, 0x00, 0x00};
         // Denotes the frame offset time.
-        byte[] offsetTime = new byte[]{0x00, 0x00, 0x00, 0x00};
+        Arrays.fill(frame, 12, MODBUS_REQUEST_OFFSET, (byte) 0x00);
         // (variable length) – Modbus RTU request frame.
-        byte[] requestFrame = buildModbusReadHoldingRegistersRequestFrame((byte) 0x01, mbFunctionCode, firstReg,
-                lastReg);
+        encodeModbusReadHoldingRegistersRequestFrame(frame, MODBUS_REQUEST_OFFSET, (byte) 0x01, mbFunctionCode,
+                firstReg, lastReg);
+
+        // Trailer
+
+        // (one byte) – Denotes the V5 frame checksum. The checksum is computed on the entire V5 frame except for Start,
+        // Checksum (obviously!) and End.
+        // Note, that this field is completely separate to the Modbus RTU checksum, which coincidentally, is the two
+        // bytes immediately preceding this field.
+        frame[REQUEST_FRAME_LENGTH - 2] = computeChecksum(frame, 1, REQUEST_FRAME_LENGTH - 3);
 
-        return ByteBuffer
-                .allocate(frameType.length + sensorType.length + totalWorkingTime.length + powerOnTime.length
-                        + offsetTime.length + requestFrame.length)
-                .put(frameType).put(sensorType).put(totalWorkingTime).put(powerOnTime).put(offsetTime).put(requestFrame)
-                .array();
+        // (one byte) – Denotes the end of the V5 frame. Always 0x15.
+        frame[REQUEST_FRAME_LENGTH - 1] = (byte) 0x15;
+    }
+
+    /**
+     * Builds a SolarMAN V5 frame writing the values to the registers starting at firstReg. Unlike the read frames,
+     * the frame is allocated on every call, as its length depends on the number of registers and writes are not sent
+     * by the thread polling the logger.
+     *
+     * @param sequenceNumber - the sequence number the logger echoes in its response
+     * @param firstReg       - the start register
+     * @param values         - the values of the registers
+     * @return byte array containing the Solarman V5 frame
+     */
+    protected byte[] buildSolarmanV5WriteFrame(int sequenceNumber, int firstReg, short[] values) {
+        int modbusLength = MODBUS_WRITE_HEADER_LENGTH + 1 + values.length * 2 + 2;
+        int frameLength = MODBUS_REQUEST_OFFSET + modbusLength + 2;
+        byte[] frame = new byte[frameLength];
+
+        // Same header and payload fields as the read frames, only the Modbus frame differs
+        frame[0] = (byte) 0xA5;
+        putShortLittleEndian(frame, 1, frameLength - 13);
+        frame[3] = (byte) 0x10;
+        frame[4] = (byte) 0x45;
+        frame[5] = (byte) sequenceNumber;
+        frame[7] = (byte) loggerSerial;
+        frame[8] = (byte) (loggerSerial >> 8);
+        frame[9] = (byte) (loggerSerial >> 16);
+        frame[10] = (byte) (loggerSerial >> 24);
+        frame[11] = 0x02;
+
+        // Based on https://www.modbustools.com/modbus.html#function16
+        int offset = MODBUS_REQUEST_OFFSET;
+        frame[offset] = (byte) 0x01;
+        frame[offset + 1] = WRITE_MULTIPLE_REGISTERS;
+        frame[offset + 2] = (byte) (firstReg >> 8);
+        frame[offset + 3] = (byte) firstReg;
+        frame[offset + 4] = (byte) (values.length >> 8);
+        frame[offset + 5] = (byte) values.length;
+        frame[offset + 6] = (byte) (values.length * 2);
+        for (int i = 0; i < values.length; i++) {
+            frame[offset + 7 + i * 2] = (byte) (values[i] >> 8);
+            frame[offset + 8 + i * 2] = (byte) values[i];
+        }
+        putShortLittleEndian(frame, offset + modbusLength - 2, CRC16Modbus.calculate(frame, offset, modbusLength - 2));
+
+        frame[frameLength - 2] = computeChecksum(frame, 1, frameLength - 3);
+        frame[frameLength - 1] = (byte) 0x15;
+        return frame;
+    }
+
+    private byte computeChecksum(byte[] frame, int offset, int length) {
+        // [-91, 23, 0, 16, 69, 0, 0, 46, -13, 90, 102, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 3, 0, 0, 0, 39,
+        // 5, -48, 122, 21]
+        int checksumValue = 0;
+        for (int i = offset; i < offset + length; i++) {
+            checksumValue += Byte.toUnsignedInt(frame[i]);
+        }
+        return (byte) (checksumValue & 0xFF);
     }
 
     /**
@@ -144,72 +362,98 @@ public class SolarmanV5Protocol {
      */
     protected byte[] buildModbusReadHoldingRegistersRequestFrame(byte slaveId, byte mbFunctionCode, int firstReg,
                                                                  int lastReg) {
+        byte[] frame = new byte[MODBUS_REQUEST_LENGTH];
+        encodeModbusReadHoldingRegistersRequestFrame(frame, 0, slaveId, mbFunctionCode, firstReg, lastReg);
+        return frame;
+    }
+
+    private void encodeModbusReadHoldingRegistersRequestFrame(byte[] frame, int offset, byte slaveId,
+                                                              byte mbFunctionCode, int firstReg, int lastReg) {
         int regCount = lastReg - firstReg + 1;
-        byte[] req = ByteBuffer.allocate(6).put(slaveId).put(mbFunctionCode).putShort((short) firstReg)
-                .putShort((short) regCount).array();
-        byte[] crc = ByteBuffer.allocate(Short.BYTES).order(ByteOrder.LITTLE_ENDIAN)
-                .putShort((short) CRC16Modbus.calculate(req)).array();
+        frame[offset] = slaveId;
+        frame[offset + 1] = mbFunctionCode;
+        frame[offset + 2] = (byte) (firstReg >> 8);
+        frame[offset + 3] = (byte) firstReg;
+        frame[offset + 4] = (byte) (regCount >> 8);
+        frame[offset + 5] = (byte) regCount;
+        putShortLittleEndian(frame, offset + 6, CRC16Modbus.calculate(frame, offset, 6));
+    }
+
+    private static void putShortLittleEndian(byte[] frame, int offset, int value) {
+        frame[offset] = (byte) value;
+        frame[offset + 1] = (byte) (value >> 8);
+    }
 
-        return ByteBuffer.allocate(req.length + crc.length).put(req).put(crc).array();
+    /**
+     * Decodes the registers straight from the Modbus response frame, found at the given offset of the buffer.
+     *
+     * @return true if the frame is valid and the registers were stored in the register bank
+     */
+    protected boolean parseModbusReadHoldingRegistersResponse(byte[] frame, int offset, int length, int firstReg,
+                                                              int lastReg, Boolean allowLogging,
+                                                              RegisterBank registerBank) {
+        return parseModbusReadHoldingRegistersResponse(frame, offset, length, firstReg, lastReg, allowLogging,
+                registerBank, null);
     }
 
-    protected Map<Integer, byte[]> parseModbusReadHoldingRegistersResponse(byte[] frame, int firstReg, int lastReg, Boolean allowLogging) {
+    private boolean parseModbusReadHoldingRegistersResponse(byte[] frame, int offset, int length, int firstReg,
+                                                            int lastReg, Boolean allowLogging,
+                                                            RegisterBank registerBank,
+                                                            @Nullable LoggerMetrics loggerMetrics) {
         int regCount = lastReg - firstReg + 1;
-        Map<Integer, byte[]> registers = new HashMap<>();
         int expectedFrameDataLen = 2 + 1 + regCount * 2;
-        if (frame == null || frame.length < expectedFrameDataLen + 2) {
+        if (frame == null || length < expectedFrameDataLen + 2) {
             if (allowLogging)
                 LOGGER.error("Modbus frame is too short or empty");
-            return registers;
+            return false;
         }
 
-        int actualCrc = ByteBuffer.wrap(frame, expectedFrameDataLen, 2).order(ByteOrder.LITTLE_ENDIAN).getShort()
-                & 0xFFFF;
-        int expectedCrc = CRC16Modbus.calculate(Arrays.copyOfRange(frame, 0, expectedFrameDataLen));
+        int actualCrc = (frame[offset + expectedFrameDataLen] & 0xFF)
+                | ((frame[offset + expectedFrameDataLen + 1] & 0xFF) << 8);
+        int expectedCrc = CRC16Modbus.calculate(frame, offset, expectedFrameDataLen);
 
         if (actualCrc != expectedCrc) {
+            if (loggerMetrics != null)
+                loggerMetrics.recordCrcError();
             if (allowLogging)
                 LOGGER.error(String.format("Modbus frame crc is not valid. Expected %04x, got %04x", expectedCrc, actualCrc));
-            return registers;
+            return false;
         }
 
-        for (int i = 0; i < regCount; i++) {
-            int p1 = 3 + (i * 2);
-            ByteBuffer order = ByteBuffer.wrap(frame, p1, 2).order(ByteOrder.BIG_ENDIAN);
-            byte[] array = new byte[]{order.get(), order.get()};
-            registers.put(i + firstReg, array);
-        }
-
-        return registers;
+        registerBank.put(firstReg, frame, offset + 3, regCount);
+        return true;
     }
 
-    protected byte[] extractModbusResponseFrame(byte[] responseFrame, byte[] requestFrame, Boolean allowLogging) {
+    protected boolean isValidResponseFrame(byte[] responseFrame, byte[] requestFrame, Boolean allowLogging) {
         if (responseFrame == null || responseFrame.length == 0) {
             if (allowLogging)
                 LOGGER.error("No response frame");
-            return null;
-        } else if (responseFrame.length == 29) {
+            return false;
+        } else if (responseFrame.length == ERROR_RESPONSE_FRAME_LENGTH) {
 
             parseResponseErrorCode(responseFrame, requestFrame);
-            return null;
+            return false;
         } else if (responseFrame.length < (29 + 4)) {
             if (allowLogging)
                 LOGGER.error("Response frame is too short");
-            return null;
+            return false;
         } else if (responseFrame[0] != (byte) 0xA5) {
             if (allowLogging)
                 LOGGER.error("Response frame has invalid starting byte");
-            return null;
+            return false;
         } else if (responseFrame[responseFrame.length - 1] != (byte) 0x15) {
             if (allowLogging)
                 LOGGER.error("Response frame has invalid ending byte");
-            return null;
+            return false;
         }
 
-        return Arrays.copyOfRange(responseFrame, 25, responseFrame.length - 2);
+        return true;
     }
 
-    protected void parseResponseErrorCode(byte[] responseFrame, byte[] requestFrame) {
+    /**
+     * @return true if the frame reports a Modbus exception, false if it is not a valid error response
+     */
+    protected boolean parseResponseErrorCode(byte[] responseFrame, byte[] requestFrame) {
         if (responseFrame[0] == (byte) 0xA5 && responseFrame[1] == (byte) 0x10 &&
                 !Arrays.equals(Arrays.copyOfRange(responseFrame, 7, 11),
                         Arrays.copyOfRange(requestFrame, 7, 11))) {
@@ -221,15 +465,19 @@ public class SolarmanV5Protocol {
                             "Make sure you are using the logger ID and not the inverter ID. If in doubt, try the one in the response",
                     requestInverterId,
                     responseInverterId));
-            return;
+            return false;
         }
 
         if (responseFrame[1] != (byte) 0x10 || responseFrame[2] != (byte) 0x45) {
             LOGGER.error("Unexpected control code in error response frame");
-            return;
+            return false;
         }
 
-        int errorCode = responseFrame[25];
+        logModbusException(responseFrame[25]);
+        return true;
+    }
+
+    private static void logModbusException(int errorCode) {
         switch (errorCode) {
             case 0x01 -> LOGGER.error("Error response frame: Illegal Function");
             case 0x02 -> LOGGER.error("Error response frame: Illegal Data Address");
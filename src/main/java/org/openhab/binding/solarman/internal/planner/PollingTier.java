@@ -0,0 +1,45 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link PollingTier} tells how often a channel needs to be refreshed. The tier is set with {@code polling_tier}
+ * on a parameter group or item in the inverter definition, or with the {@code pollingTier} channel parameter.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public enum PollingTier {
+    /**
+     * Refreshed every fastRefreshInterval, for fast changing values like power
+     */
+    FAST,
+    /**
+     * Refreshed every refreshInterval
+     */
+    NORMAL,
+    /**
+     * Refreshed every slowRefreshInterval, for slowly changing values like daily totals
+     */
+    SLOW,
+    /**
+     * Read once, after the thing is initialized, for static values like serial numbers and versions
+     */
+    ONCE;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(PollingTier.class);
+
+    public static PollingTier fromString(String pollingTier, PollingTier defaultPollingTier) {
+        if (StringUtils.isBlank(pollingTier)) {
+            return defaultPollingTier;
+        }
+
+        try {
+            return PollingTier.valueOf(pollingTier.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown polling tier {}, using {}", pollingTier, defaultPollingTier);
+            return defaultPollingTier;
+        }
+    }
+}
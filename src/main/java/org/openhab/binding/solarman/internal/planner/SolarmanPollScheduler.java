@@ -0,0 +1,182 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.ThreadPoolManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanPollScheduler} polls all the things of the binding, so that they do not all hit the network at
+ * the same time after openHAB starts.
+ * <p>
+ * Each thing is polled at a phase of its interval derived from its UID, so the things are spread over the interval and
+ * keep the same slot across restarts. At most {@link #maxConcurrentPolls} polls run at once, the others wait for one
+ * of them to complete. A thing whose previous poll is still running or waiting skips its turn, so slow polls never
+ * pile up.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+@Component(service = SolarmanPollScheduler.class, configurationPid = "binding.solarman")
+public class SolarmanPollScheduler {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanPollScheduler.class);
+    static final int DEFAULT_MAX_CONCURRENT_POLLS = 4;
+    private static final String CONFIG_MAX_CONCURRENT_POLLS = "maxConcurrentPolls";
+    // The pool the thing handlers are scheduled on
+    private static final String THREAD_POOL_NAME = "thingHandler";
+
+    private final ScheduledExecutorService scheduler;
+    private final Queue<ScheduledPoll> waitingPolls = new ArrayDeque<>();
+    private int maxConcurrentPolls;
+    private int runningPolls = 0;
+
+    @Activate
+    public SolarmanPollScheduler(Map<String, Object> config) {
+        this(ThreadPoolManager.getScheduledPool(THREAD_POOL_NAME), DEFAULT_MAX_CONCURRENT_POLLS);
+        modified(config);
+    }
+
+    SolarmanPollScheduler(ScheduledExecutorService scheduler, int maxConcurrentPolls) {
+        this.scheduler = scheduler;
+        this.maxConcurrentPolls = maxConcurrentPolls;
+    }
+
+    @Modified
+    public synchronized void modified(Map<String, Object> config) {
+        Object maxConcurrentPolls = config.get(CONFIG_MAX_CONCURRENT_POLLS);
+        try {
+            this.maxConcurrentPolls = maxConcurrentPolls == null ? DEFAULT_MAX_CONCURRENT_POLLS
+                    : Math.max(1, Integer.parseInt(maxConcurrentPolls.toString().trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid maximum number of concurrent polls {}, using {}", maxConcurrentPolls,
+                    DEFAULT_MAX_CONCURRENT_POLLS);
+            this.maxConcurrentPolls = DEFAULT_MAX_CONCURRENT_POLLS;
+        }
+    }
+
+    /**
+     * Polls a thing at a fixed interval, until the returned poll is cancelled.
+     *
+     * @param key            - identifies the thing, usually its UID, and gives the phase at which it is polled
+     * @param intervalMillis - the interval between two polls
+     * @param poll           - starts a poll and returns a future completed once it is over
+     */
+    public ScheduledPoll schedule(String key, long intervalMillis, Supplier<CompletableFuture<?>> poll) {
+        ScheduledPoll scheduledPoll = new ScheduledPoll(key, poll);
+        long initialDelay = Math.floorMod(phaseOf(key, intervalMillis) - System.currentTimeMillis(), intervalMillis);
+        LOGGER.debug("Polling {} every {} ms, starting in {} ms", key, intervalMillis, initialDelay);
+
+        scheduledPoll.scheduledFuture = scheduler.scheduleAtFixedRate(() -> trigger(scheduledPoll), initialDelay,
+                intervalMillis, TimeUnit.MILLISECONDS);
+        return scheduledPoll;
+    }
+
+    /**
+     * @return the offset, within the interval, at which the thing is polled
+     */
+    static long phaseOf(String key, long intervalMillis) {
+        // Spread similar keys, like the UIDs of things that only differ by their last character, over the interval
+        long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return Math.floorMod(hash, intervalMillis);
+    }
+
+    void trigger(ScheduledPoll scheduledPoll) {
+        synchronized (this) {
+            if (scheduledPoll.cancelled) {
+                return;
+            }
+            if (scheduledPoll.pending) {
+                LOGGER.debug("Previous poll of {} still in progress, skipping this one", scheduledPoll.key);
+                return;
+            }
+
+            scheduledPoll.pending = true;
+            if (runningPolls >= maxConcurrentPolls) {
+                LOGGER.debug("{} polls already running, {} waits for one of them to complete", runningPolls,
+                        scheduledPoll.key);
+                waitingPolls.add(scheduledPoll);
+                return;
+            }
+            runningPolls++;
+        }
+
+        run(scheduledPoll);
+    }
+
+    private void run(ScheduledPoll scheduledPoll) {
+        CompletableFuture<?> poll;
+        try {
+            poll = scheduledPoll.cancelled ? CompletableFuture.completedFuture(null) : scheduledPoll.poll.get();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error polling {}", scheduledPoll.key, e);
+            poll = CompletableFuture.completedFuture(null);
+        }
+        poll.whenComplete((result, error) -> completed(scheduledPoll));
+    }
+
+    private void completed(ScheduledPoll scheduledPoll) {
+        ScheduledPoll nextPoll;
+        synchronized (this) {
+            scheduledPoll.pending = false;
+            nextPoll = waitingPolls.poll();
+            if (nextPoll == null) {
+                runningPolls--;
+                return;
+            }
+        }
+
+        // The waiting poll takes over the slot, but not the thread of the poll that completed
+        scheduler.execute(() -> run(nextPoll));
+    }
+
+    synchronized int getRunningPolls() {
+        return runningPolls;
+    }
+
+    private synchronized void cancel(ScheduledPoll scheduledPoll) {
+        scheduledPoll.cancelled = true;
+        if (waitingPolls.remove(scheduledPoll)) {
+            scheduledPoll.pending = false;
+        }
+    }
+
+    /**
+     * The polls of one thing, scheduled until {@link #cancel()} is called
+     */
+    public class ScheduledPoll {
+        private final String key;
+        private final Supplier<CompletableFuture<?>> poll;
+        private @Nullable ScheduledFuture<?> scheduledFuture;
+        // Guarded by the scheduler
+        private boolean pending = false;
+        private boolean cancelled = false;
+
+        ScheduledPoll(String key, Supplier<CompletableFuture<?>> poll) {
+            this.key = key;
+            this.poll = poll;
+        }
+
+        /**
+         * Stops polling, a poll already running is not interrupted
+         */
+        public void cancel() {
+            ScheduledFuture<?> scheduledFuture = this.scheduledFuture;
+            if (scheduledFuture != null)
+                scheduledFuture.cancel(false);
+
+            SolarmanPollScheduler.this.cancel(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.core.thing.ChannelUID;
+
+/**
+ * The {@link SolarmanPollingPlan} holds the requests to issue on a refresh and the channels to update from the
+ * registers they read.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public record SolarmanPollingPlan(List<Request> requests, Map<ParameterItem, ChannelUID> paramToChannelMapping) {
+}
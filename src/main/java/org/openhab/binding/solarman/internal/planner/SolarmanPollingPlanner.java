@@ -0,0 +1,191 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.core.thing.ChannelUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanPollingPlanner} keeps track of the channels linked to items and plans the requests needed to
+ * update only those, recomputing the plan whenever a channel is linked or unlinked.
+ * <p>
+ * Channels are grouped in {@link PollingTier}s, each refreshed at its own interval. The planner is polled at the
+ * greatest common divisor of the intervals, so every interval is a whole number of ticks, and only plans the requests
+ * for the tiers that are due.
+ * <p>
+ * Each tier is due at a phase of its own interval derived from the key of the thing, the same way the
+ * {@link SolarmanPollScheduler} derives the phase of the ticks, so the reads of many things are spread over each
+ * interval rather than only their ticks. As the tick divides the intervals, the phase of a tier always falls on a
+ * tick, and a thing keeps the same slots across restarts. Only the {@link PollingTier#ONCE} tier is read right away.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanPollingPlanner {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanPollingPlanner.class);
+
+    private final SolarmanRequestPlanner requestPlanner;
+    private final List<Request> availableRequests;
+    private final Map<ParameterItem, ChannelUID> paramToChannelMapping;
+    private final Map<ChannelUID, PollingTier> channelPollingTiers;
+    private final boolean linkedChannelsOnly;
+    private final Map<PollingTier, Long> pollingIntervals = new EnumMap<>(PollingTier.class);
+    private final Set<ChannelUID> linkedChannels = ConcurrentHashMap.newKeySet();
+    private final Map<Set<PollingTier>, SolarmanPollingPlan> pollingPlans = new ConcurrentHashMap<>();
+    private final Map<PollingTier, Long> pollingPhases = new EnumMap<>(PollingTier.class);
+    // When each tier is due next, the ONCE tier is only present once it was read
+    private final Map<PollingTier, Long> dueAt = new EnumMap<>(PollingTier.class);
+    private final long tickInterval;
+
+    /**
+     * @param pollingKey            - identifies the thing, usually its UID, and gives the phase at which each tier is due
+     * @param config                - the thing configuration, holding the polling intervals
+     * @param availableRequests     - the register ranges that can be read from the inverter
+     * @param paramToChannelMapping - all the channels of the thing
+     * @param channelPollingTiers   - the polling tier of each channel, {@link PollingTier#NORMAL} if missing
+     * @param isLinked              - tells which channels are linked initially
+     */
+    public SolarmanPollingPlanner(String pollingKey, SolarmanLoggerConfiguration config,
+                                  List<Request> availableRequests,
+                                  Map<ParameterItem, ChannelUID> paramToChannelMapping,
+                                  Map<ChannelUID, PollingTier> channelPollingTiers,
+                                  Predicate<ChannelUID> isLinked) {
+        this.requestPlanner = new SolarmanRequestPlanner(config.getMaxRequestGap());
+        this.availableRequests = requestPlanner.planRequests(availableRequests);
+        this.paramToChannelMapping = paramToChannelMapping;
+        this.channelPollingTiers = channelPollingTiers;
+        this.linkedChannelsOnly = config.isPollLinkedChannelsOnly();
+
+        pollingIntervals.put(PollingTier.FAST, Math.max(1, config.getFastRefreshInterval()) * 1000L);
+        pollingIntervals.put(PollingTier.NORMAL, Math.max(1, config.getRefreshInterval()) * 1000L);
+        pollingIntervals.put(PollingTier.SLOW, Math.max(1, config.getSlowRefreshInterval()) * 1000L);
+        // Ticking at the fastest interval would round the others to it, e.g. a 7 s interval polled every 5 s
+        this.tickInterval = pollingIntervals.values().stream().reduce(SolarmanPollingPlanner::gcd).orElseThrow()
+                / 1000;
+        pollingIntervals.forEach((pollingTier, pollingInterval) -> pollingPhases.put(pollingTier,
+                SolarmanPollScheduler.phaseOf(pollingKey, pollingInterval)));
+
+        paramToChannelMapping.values().stream().filter(isLinked).forEach(linkedChannels::add);
+    }
+
+    /**
+     * @return the interval, in seconds, at which {@link #getDuePollingTiers(long)} needs to be checked
+     */
+    public long getTickInterval() {
+        return tickInterval;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * @param now - the current time in milliseconds
+     * @return the tiers that need to be refreshed now
+     */
+    public synchronized Set<PollingTier> getDuePollingTiers(long now) {
+        // Allow for the jitter of the scheduler, otherwise a tier might only be due one tick later
+        long tolerance = tickInterval * 500;
+
+        Set<PollingTier> dueTiers = EnumSet.noneOf(PollingTier.class);
+        for (PollingTier pollingTier : PollingTier.values()) {
+            if (pollingTier == PollingTier.ONCE) {
+                if (!dueAt.containsKey(PollingTier.ONCE))
+                    dueTiers.add(pollingTier);
+                continue;
+            }
+
+            // Not polled yet, due at its first slot, which is this tick if it falls on it
+            long tierDueAt = dueAt.computeIfAbsent(pollingTier, tier -> nextSlot(tier, now - tolerance));
+            if (now >= tierDueAt - tolerance)
+                dueTiers.add(pollingTier);
+        }
+        return dueTiers;
+    }
+
+    /**
+     * Marks the tiers as refreshed, they are due again at their next slot. The tier read once is only marked if all
+     * the registers of its channels were read, otherwise it is read again on the next tick.
+     *
+     * @param isRead - tells whether all the registers of a parameter were read by the poll
+     */
+    public synchronized void markPolled(Set<PollingTier> pollingTiers, long now, Predicate<ParameterItem> isRead) {
+        long tolerance = tickInterval * 500;
+        for (PollingTier pollingTier : pollingTiers) {
+            if (pollingTier != PollingTier.ONCE) {
+                dueAt.put(pollingTier, nextSlot(pollingTier, now + tolerance));
+            } else if (getPollingPlan(pollingTiers).paramToChannelMapping().entrySet().stream()
+                    .filter(entry -> getPollingTier(entry.getValue()) == PollingTier.ONCE)
+                    .allMatch(entry -> isRead.test(entry.getKey()))) {
+                dueAt.put(pollingTier, now);
+            }
+        }
+    }
+
+    /**
+     * @return the first time from the given one at which the tier is polled
+     */
+    private long nextSlot(PollingTier pollingTier, long from) {
+        return from + Math.floorMod(pollingPhases.get(pollingTier) - from, pollingIntervals.get(pollingTier));
+    }
+
+    public SolarmanPollingPlan getPollingPlan(Set<PollingTier> pollingTiers) {
+        return pollingPlans.computeIfAbsent(Set.copyOf(pollingTiers), this::computePollingPlan);
+    }
+
+    public void channelLinked(ChannelUID channelUID) {
+        if (linkedChannels.add(channelUID)) {
+            pollingPlans.clear();
+            // Make sure newly linked channels that are read only once get a value
+            if (getPollingTier(channelUID) == PollingTier.ONCE) {
+                synchronized (this) {
+                    dueAt.remove(PollingTier.ONCE);
+                }
+            }
+        }
+    }
+
+    public void channelUnlinked(ChannelUID channelUID) {
+        if (linkedChannels.remove(channelUID)) {
+            pollingPlans.clear();
+        }
+    }
+
+    private PollingTier getPollingTier(ChannelUID channelUID) {
+        return channelPollingTiers.getOrDefault(channelUID, PollingTier.NORMAL);
+    }
+
+    private SolarmanPollingPlan computePollingPlan(Set<PollingTier> pollingTiers) {
+        Map<ParameterItem, ChannelUID> dueParamToChannelMapping = paramToChannelMapping.entrySet().stream()
+                .filter(entry -> !linkedChannelsOnly || linkedChannels.contains(entry.getValue()))
+                .filter(entry -> pollingTiers.contains(getPollingTier(entry.getValue())))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        List<Request> requests = requestPlanner.planRequestsForRegisters(availableRequests,
+                dueParamToChannelMapping.keySet().stream()
+                        .flatMap(parameterItem -> parameterItem.getRegisters().stream())
+                        .collect(Collectors.toSet()));
+
+        if (requests.isEmpty() && pollingTiers.contains(PollingTier.NORMAL) && !availableRequests.isEmpty()) {
+            // Nothing to update, but keep reading a single register so the thing status still reflects the logger
+            Request firstRequest = availableRequests.get(0);
+            requests = List.of(new Request(firstRequest.getMbFunctioncode(), firstRequest.getStart(),
+                    firstRequest.getStart()));
+        }
+
+        LOGGER.debug("Reading {} of {} register ranges for {} channels in tiers {}", requests.size(),
+                availableRequests.size(), dueParamToChannelMapping.size(), pollingTiers);
+
+        return new SolarmanPollingPlan(requests, dueParamToChannelMapping);
+    }
+}
@@ -0,0 +1,138 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanRequestPlanner} turns the register ranges that need to be read into the smallest list of Modbus
+ * requests. Overlapping and adjacent ranges with the same function code are merged, ranges separated by at most
+ * {@code maxGap} unused registers are read together and no request reads more than
+ * {@link #MAX_REGISTERS_PER_REQUEST} registers.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanRequestPlanner {
+    /**
+     * Maximum number of registers that can be read with one Read Holding/Input Registers request
+     */
+    public static final int MAX_REGISTERS_PER_REQUEST = 125;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanRequestPlanner.class);
+    private final int maxGap;
+
+    public SolarmanRequestPlanner(int maxGap) {
+        this.maxGap = Math.max(0, maxGap);
+    }
+
+    public List<Request> planRequests(List<Request> requests) {
+        Map<Integer, List<Request>> requestsByFunctionCode = requests.stream()
+                .filter(this::isValid)
+                .collect(Collectors.groupingBy(Request::getMbFunctioncode, TreeMap::new, Collectors.toList()));
+
+        List<Request> plannedRequests = new ArrayList<>();
+        requestsByFunctionCode.forEach((functionCode, functionCodeRequests) ->
+                plannedRequests.addAll(planRequests(functionCode, functionCodeRequests)));
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Planned {} requests for {} register ranges: {}", plannedRequests.size(), requests.size(),
+                    plannedRequests.stream()
+                            .map(request -> String.format("0x%02X:0x%04X-0x%04X", request.getMbFunctioncode(),
+                                    request.getStart(), request.getEnd()))
+                            .collect(Collectors.joining(",")));
+        }
+
+        return plannedRequests;
+    }
+
+    /**
+     * Plans the requests needed to read only the given registers. The requests planned for the available ranges are
+     * trimmed to the first and last needed register they contain and dropped if they contain none. They are not split
+     * any further, as an extra round-trip to the logger costs a lot more than reading a few unneeded registers.
+     * Registers outside the available ranges are not read.
+     */
+    public List<Request> planRequestsForRegisters(List<Request> availableRequests, Collection<Integer> registers) {
+        return planRequests(availableRequests).stream()
+                .map(request -> {
+                    IntSummaryStatistics neededRegisters = registers.stream()
+                            .mapToInt(Integer::intValue)
+                            .filter(register -> register >= request.getStart() && register <= request.getEnd())
+                            .summaryStatistics();
+
+                    return neededRegisters.getCount() == 0 ? null
+                            : new Request(request.getMbFunctioncode(), neededRegisters.getMin(),
+                                    neededRegisters.getMax());
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private List<Request> planRequests(int functionCode, List<Request> requests) {
+        List<Request> plannedRequests = new ArrayList<>();
+        Request current = null;
+
+        for (int[] range : mergeOverlappingRanges(requests)) {
+            int start = range[0];
+            while (start <= range[1]) {
+                if (current != null && start - current.getEnd() - 1 <= maxGap
+                        && start < current.getStart() + MAX_REGISTERS_PER_REQUEST) {
+                    // Extend the current request as far as the range goes, or as far as the limit allows
+                    current.setEnd(Math.min(range[1], current.getStart() + MAX_REGISTERS_PER_REQUEST - 1));
+                } else {
+                    if (current != null) {
+                        plannedRequests.add(current);
+                    }
+                    current = new Request(functionCode, start,
+                            Math.min(range[1], start + MAX_REGISTERS_PER_REQUEST - 1));
+                }
+                start = current.getEnd() + 1;
+            }
+        }
+
+        if (current != null) {
+            plannedRequests.add(current);
+        }
+
+        return plannedRequests;
+    }
+
+    /**
+     * @return the sorted [start, end] ranges covered by the requests, with overlapping and adjacent ranges merged
+     */
+    private List<int[]> mergeOverlappingRanges(List<Request> requests) {
+        List<int[]> ranges = new ArrayList<>();
+
+        requests.stream()
+                .sorted(Comparator.comparing(Request::getStart))
+                .forEach(request -> {
+                    int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                    if (last != null && request.getStart() <= last[1] + 1) {
+                        last[1] = Math.max(last[1], request.getEnd());
+                    } else {
+                        ranges.add(new int[]{request.getStart(), request.getEnd()});
+                    }
+                });
+
+        return ranges;
+    }
+
+    private boolean isValid(Request request) {
+        if (request.getMbFunctioncode() == null || request.getStart() == null || request.getEnd() == null
+                || request.getStart() > request.getEnd()) {
+            LOGGER.warn("Ignoring invalid request range {}-{} for function code {}", request.getStart(),
+                    request.getEnd(), request.getMbFunctioncode());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,238 @@
+package org.openhab.binding.solarman.internal.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link FrameLogReader} reads back the frames the binding logs at debug level, grouped by polling cycle.
+ * <p>
+ * The frames are grouped by the serial number of the logger they are exchanged with, found in their V5 header, so
+ * the interleaved polls of several things are told apart. A cycle starts with the line logged by the channel updater
+ * when it fetches data from the logger. That line does not tell which logger it is for, it starts the cycle of the
+ * logger of the next request frame logged, the lines of several things fetching at once being taken in turn. When
+ * that line was filtered out of the log, a cycle starts whenever a register range is requested a second time from
+ * the same logger. Responses are matched to the request of the same logger carrying the same sequence number, so the
+ * frames of pipelined requests are paired correctly. The time of a cycle is read from the first line of the cycle
+ * when it starts with a date and time, like in the openHAB log. The frames writing registers are not part of the
+ * polls and are skipped.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class FrameLogReader {
+    private static final String POLL_START = "Fetching data from logger";
+    private static final String REQUEST_FRAME = "Request frame: ";
+    private static final String RESPONSE_FRAME = "Response frame: ";
+    private static final Pattern TIMESTAMP = Pattern
+            .compile("^(\\d{4}-\\d{2}-\\d{2})[ T](\\d{2}:\\d{2}:\\d{2}(?:\\.\\d{1,9})?)");
+    private static final byte[] NO_RESPONSE = new byte[0];
+    private static final int WRITE_MULTIPLE_REGISTERS = 0x10;
+
+    private final BufferedReader reader;
+    private final ZoneId zoneId;
+    private final @Nullable Long serialNumber;
+    // The poll in progress of each logger, by serial number
+    private final Map<Long, PollInProgress> pollsInProgress = new LinkedHashMap<>();
+    // The time of the lines starting a cycle whose logger is not known yet
+    private final Deque<Long> pendingPollStarts = new ArrayDeque<>();
+    private final Deque<RecordedPoll> recordedPolls = new ArrayDeque<>();
+    private boolean endReached = false;
+
+    /**
+     * @param zoneId - the time zone of the times found in the log
+     */
+    public FrameLogReader(Reader reader, ZoneId zoneId) {
+        this(reader, zoneId, null);
+    }
+
+    /**
+     * @param serialNumber - the serial number of the logger whose polls are read, null to read the ones of all loggers
+     */
+    public FrameLogReader(Reader reader, ZoneId zoneId, @Nullable Long serialNumber) {
+        this.reader = reader instanceof BufferedReader bufferedReader ? bufferedReader : new BufferedReader(reader);
+        this.zoneId = zoneId;
+        this.serialNumber = serialNumber;
+    }
+
+    /**
+     * @return the next polling cycle found in the log, null once the end of the log is reached
+     */
+    public @Nullable RecordedPoll nextPoll() throws IOException {
+        String line;
+        while (recordedPolls.isEmpty() && !endReached && (line = reader.readLine()) != null) {
+            if (line.contains(POLL_START)) {
+                pendingPollStarts.add(parseTimestamp(line));
+                continue;
+            }
+
+            byte[] requestFrame = parseFrame(line, REQUEST_FRAME);
+            if (requestFrame != null && !isWriteFrame(requestFrame, 27))
+                addRequest(requestFrame, line);
+
+            byte[] responseFrame = parseFrame(line, RESPONSE_FRAME);
+            if (responseFrame != null && !isWriteFrame(responseFrame, 26)) {
+                PollInProgress pollInProgress = pollsInProgress.get(serialNumberOf(responseFrame));
+                if (pollInProgress != null)
+                    pollInProgress.matchResponse(responseFrame);
+            }
+        }
+
+        if (recordedPolls.isEmpty() && !endReached) {
+            endReached = true;
+            pollsInProgress.values().forEach(this::endPoll);
+            pollsInProgress.clear();
+        }
+        return recordedPolls.poll();
+    }
+
+    private void addRequest(byte[] requestFrame, String line) {
+        long requestSerialNumber = serialNumberOf(requestFrame);
+        Long pollStart = pendingPollStarts.poll();
+        if (serialNumber != null && requestSerialNumber != serialNumber)
+            return;
+
+        PollInProgress pollInProgress = pollsInProgress.get(requestSerialNumber);
+        if (pollInProgress != null && (pollStart != null || pollInProgress.isRequestedAgain(requestFrame))) {
+            endPoll(pollInProgress);
+            pollInProgress = null;
+        }
+        if (pollInProgress == null) {
+            long pollTimestamp = pollStart != null && pollStart != 0 ? pollStart : parseTimestamp(line);
+            pollInProgress = new PollInProgress(requestSerialNumber, pollTimestamp);
+            pollsInProgress.put(requestSerialNumber, pollInProgress);
+        }
+
+        pollInProgress.requestFrames.add(requestFrame);
+        pollInProgress.responseFrames.add(NO_RESPONSE);
+    }
+
+    private void endPoll(PollInProgress pollInProgress) {
+        List<RecordedPoll.Exchange> exchanges = new ArrayList<>(pollInProgress.requestFrames.size());
+        for (int i = 0; i < pollInProgress.requestFrames.size(); i++) {
+            exchanges.add(new RecordedPoll.Exchange(pollInProgress.requestFrames.get(i),
+                    pollInProgress.responseFrames.get(i)));
+        }
+        recordedPolls.add(new RecordedPoll(pollInProgress.serialNumber, pollInProgress.timestamp, exchanges));
+    }
+
+    /**
+     * @return the serial number of the logger found in the V5 header of the frame, -1 if the frame is too short
+     */
+    static long serialNumberOf(byte[] frame) {
+        if (frame.length < 11)
+            return -1;
+
+        return (frame[7] & 0xFFL) | ((frame[8] & 0xFFL) << 8) | ((frame[9] & 0xFFL) << 16)
+                | ((frame[10] & 0xFFL) << 24);
+    }
+
+    /**
+     * @param functionCodeOffset - where the Modbus function code is found, in a request or in a response frame
+     */
+    private static boolean isWriteFrame(byte[] frame, int functionCodeOffset) {
+        return frame.length > functionCodeOffset && (frame[functionCodeOffset] & 0x7F) == WRITE_MULTIPLE_REGISTERS;
+    }
+
+    /**
+     * @return the function code, first register and number of registers of a read request, packed together
+     */
+    static long modbusRequestKey(byte[] requestFrame) {
+        if (requestFrame.length < 32)
+            return -1;
+
+        return ((requestFrame[27] & 0xFFL) << 32) | ((requestFrame[28] & 0xFFL) << 24)
+                | ((requestFrame[29] & 0xFF) << 16) | ((requestFrame[30] & 0xFF) << 8) | (requestFrame[31] & 0xFF);
+    }
+
+    private long parseTimestamp(String line) {
+        Matcher matcher = TIMESTAMP.matcher(line);
+        if (!matcher.find())
+            return 0;
+
+        try {
+            return LocalDateTime.parse(matcher.group(1) + "T" + matcher.group(2)).atZone(zoneId).toInstant()
+                    .toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the frame following the marker, null if the line does not hold one
+     */
+    private static byte @Nullable [] parseFrame(String line, String marker) {
+        int start = line.indexOf(marker);
+        if (start < 0)
+            return null;
+
+        start += marker.length();
+        int end = start;
+        while (end < line.length() && Character.digit(line.charAt(end), 16) >= 0) {
+            end++;
+        }
+        if (end == start || (end - start) % 2 != 0)
+            return null;
+
+        byte[] frame = new byte[(end - start) / 2];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) ((Character.digit(line.charAt(start + i * 2), 16) << 4)
+                    | Character.digit(line.charAt(start + i * 2 + 1), 16));
+        }
+        return frame;
+    }
+
+    /**
+     * The frames of a poll of a logger whose end was not found yet
+     */
+    private static class PollInProgress {
+        private final long serialNumber;
+        private final long timestamp;
+        private final List<byte[]> requestFrames = new ArrayList<>();
+        private final List<byte[]> responseFrames = new ArrayList<>();
+
+        private PollInProgress(long serialNumber, long timestamp) {
+            this.serialNumber = serialNumber;
+            this.timestamp = timestamp;
+        }
+
+        private boolean isRequestedAgain(byte[] requestFrame) {
+            for (byte[] previousRequestFrame : requestFrames) {
+                if (modbusRequestKey(previousRequestFrame) == modbusRequestKey(requestFrame))
+                    return true;
+            }
+            return false;
+        }
+
+        private void matchResponse(byte[] responseFrame) {
+            int match = -1;
+            for (int i = 0; i < requestFrames.size(); i++) {
+                if (responseFrames.get(i) != NO_RESPONSE)
+                    continue;
+
+                if (match < 0)
+                    match = i;
+                byte[] requestFrame = requestFrames.get(i);
+                if (requestFrame.length > 5 && responseFrame.length > 5 && requestFrame[5] == responseFrame[5]) {
+                    match = i;
+                    break;
+                }
+            }
+
+            if (match >= 0)
+                responseFrames.set(match, responseFrame);
+        }
+    }
+}
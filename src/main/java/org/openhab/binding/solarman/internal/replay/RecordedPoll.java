@@ -0,0 +1,20 @@
+package org.openhab.binding.solarman.internal.replay;
+
+import java.util.List;
+
+/**
+ * The {@link RecordedPoll} holds the frames exchanged with a logger during a polling cycle, as found in a frame log.
+ *
+ * @param serialNumber - the serial number of the logger polled
+ * @param timestamp    - the time of the poll in epoch millis, 0 if the log does not tell
+ * @param exchanges    - the requests sent, in order, with the response received to each of them
+ * @author Catalin Sanda - Initial contribution
+ */
+public record RecordedPoll(long serialNumber, long timestamp, List<Exchange> exchanges) {
+
+    /**
+     * @param responseFrame - empty when the request was not answered
+     */
+    public record Exchange(byte[] requestFrame, byte[] responseFrame) {
+    }
+}
@@ -0,0 +1,203 @@
+package org.openhab.binding.solarman.internal.replay;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.binding.solarman.internal.history.RegisterSnapshotStore;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
+import org.openhab.binding.solarman.internal.metrics.PollMetrics;
+import org.openhab.binding.solarman.internal.modbus.CircuitBreaker;
+import org.openhab.binding.solarman.internal.modbus.RoundTripEstimator;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnection;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
+import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.openhab.binding.solarman.internal.state.LoggerState;
+import org.openhab.binding.solarman.internal.updater.SolarmanChannelUpdater;
+import org.openhab.binding.solarman.internal.updater.SolarmanChannelUpdater.StateUpdater;
+import org.openhab.core.thing.ChannelUID;
+
+import static org.openhab.binding.solarman.internal.typeprovider.ChannelUtils.escapeName;
+
+/**
+ * The {@link SolarmanReplayEngine} feeds recorded data to the channel updater as fast as it can, to check how a
+ * definition decodes weeks of production data, or to measure how fast it is decoded.
+ * <p>
+ * Frame logs go through {@link SolarmanV5Protocol} and {@link SolarmanChannelUpdater} like live polls, with a
+ * connection answering each request with the response recorded for it. Register snapshots kept by a
+ * {@link RegisterSnapshotStore} are handed to the channel updater directly. The channels are named like the dynamic
+ * channels of a thing using the definition, and their states go to the given {@link StateUpdater}.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanReplayEngine {
+    private static final String THING_UID = "solarman:logger:replay";
+
+    private final Map<ParameterItem, ChannelUID> paramToChannelMapping = new LinkedHashMap<>();
+    private final SolarmanChannelUpdater solarmanChannelUpdater;
+    private final SolarmanV5Protocol solarmanV5Protocol;
+    private final SolarmanLoggerConnector solarmanLoggerConnector;
+    private final ReplayingConnection replayingConnection;
+    private final LoggerState loggerState = new LoggerState();
+
+    /**
+     * @param stateUpdater       - called with the state of the channels
+     * @param maxSilenceInterval - see {@link SolarmanChannelUpdater}, 0 publishes all the states of every poll
+     */
+    public SolarmanReplayEngine(InverterDefinition inverterDefinition, StateUpdater stateUpdater,
+                                int maxSilenceInterval) {
+        inverterDefinition.getParameters().forEach(parameter -> parameter.getItems().forEach(parameterItem ->
+                paramToChannelMapping.put(parameterItem, new ChannelUID(THING_UID + ":"
+                        + escapeName(parameter.getGroup()) + "_" + escapeName(parameterItem.getName())))));
+
+        // The serial number and the address are not used, the frames never leave the connection
+        SolarmanLoggerConfiguration config = new SolarmanLoggerConfiguration("127.0.0.1", 8899, "0",
+                inverterDefinition.getInverterDefinitionId(), 0, null);
+        replayingConnection = new ReplayingConnection();
+        solarmanLoggerConnector = new SolarmanLoggerConnector(config) {
+            @Override
+            public SolarmanLoggerConnection createConnection() {
+                return replayingConnection;
+            }
+        };
+        solarmanV5Protocol = new SolarmanV5Protocol(config);
+        solarmanChannelUpdater = new SolarmanChannelUpdater(stateUpdater, paramToChannelMapping.keySet(), Map.of(),
+                maxSilenceInterval);
+    }
+
+    /**
+     * Replays the polls found in a frame log, see {@link FrameLogReader}. Polls logged without their time are
+     * replayed as if they took place now.
+     *
+     * @param zoneId - the time zone of the times found in the log
+     */
+    public ReplayResult replayFrameLog(Reader reader, ZoneId zoneId) throws IOException {
+        return replayFrameLog(reader, zoneId, null);
+    }
+
+    /**
+     * @param serialNumber - the serial number of the logger whose polls are replayed, null to replay the ones of all
+     *                     the loggers found in the log
+     */
+    public ReplayResult replayFrameLog(Reader reader, ZoneId zoneId, @Nullable Long serialNumber) throws IOException {
+        FrameLogReader frameLogReader = new FrameLogReader(reader, zoneId, serialNumber);
+        PollMetrics pollMetrics = solarmanChannelUpdater.getPollMetrics();
+        long channelUpdates = pollMetrics.getChannelUpdates();
+        long frames = 0;
+        long polls = 0;
+        long start = System.nanoTime();
+
+        RecordedPoll recordedPoll;
+        while ((recordedPoll = frameLogReader.nextPoll()) != null) {
+            List<Request> requests = new ArrayList<>(recordedPoll.exchanges().size());
+            for (RecordedPoll.Exchange exchange : recordedPoll.exchanges()) {
+                Request request = toRequest(exchange.requestFrame());
+                if (request != null)
+                    requests.add(request);
+            }
+            replayingConnection.setExchanges(recordedPoll.exchanges());
+
+            long timestamp = recordedPoll.timestamp() == 0 ? System.currentTimeMillis() : recordedPoll.timestamp();
+            solarmanChannelUpdater.fetchDataFromLogger(requests, solarmanLoggerConnector, solarmanV5Protocol,
+                    paramToChannelMapping, loggerState, timestamp).join();
+            frames += recordedPoll.exchanges().size();
+            polls++;
+        }
+
+        return new ReplayResult(polls, frames, pollMetrics.getChannelUpdates() - channelUpdates,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Replays the register snapshots kept in a directory, without modifying it
+     *
+     * @param from - the time of the first snapshot to replay, in epoch millis
+     * @param to   - the time of the last snapshot to replay, in epoch millis
+     */
+    public ReplayResult replaySnapshots(Path directory, long from, long to) throws IOException {
+        long[] counts = new long[2];
+        long start = System.nanoTime();
+
+        RegisterSnapshotStore.replay(directory, from, to, (timestamp, registerBank) -> {
+            counts[0]++;
+            counts[1] += solarmanChannelUpdater.updateChannels(paramToChannelMapping, registerBank, timestamp);
+        });
+
+        return new ReplayResult(counts[0], 0, counts[1], System.nanoTime() - start);
+    }
+
+    public Map<ParameterItem, ChannelUID> getParamToChannelMapping() {
+        return paramToChannelMapping;
+    }
+
+    private static @Nullable Request toRequest(byte[] requestFrame) {
+        long key = FrameLogReader.modbusRequestKey(requestFrame);
+        if (key < 0)
+            return null;
+
+        int functionCode = (int) (key >> 32);
+        int firstRegister = (int) (key >> 16) & 0xFFFF;
+        int registerCount = (int) key & 0xFFFF;
+        return new Request(functionCode, firstRegister, firstRegister + registerCount - 1);
+    }
+
+    /**
+     * Answers every request with the response recorded for the same registers
+     */
+    private static class ReplayingConnection extends SolarmanLoggerConnection {
+        private static final byte[] NO_RESPONSE = new byte[0];
+        private final Map<Long, byte[]> responseFrames = new HashMap<>();
+
+        private ReplayingConnection() {
+            super("127.0.0.1", 8899, new RoundTripEstimator(), new CircuitBreaker(), new LoggerMetrics());
+        }
+
+        private void setExchanges(List<RecordedPoll.Exchange> exchanges) {
+            responseFrames.clear();
+            for (RecordedPoll.Exchange exchange : exchanges) {
+                responseFrames.put(FrameLogReader.modbusRequestKey(exchange.requestFrame()), exchange.responseFrame());
+            }
+        }
+
+        @Override
+        public byte[] sendRequest(byte[] reqFrame, Boolean allowLogging) {
+            return responseFrames.getOrDefault(FrameLogReader.modbusRequestKey(reqFrame), NO_RESPONSE);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> sendRequestAsync(byte[] reqFrame, Boolean allowLogging) {
+            return CompletableFuture.completedFuture(sendRequest(reqFrame, allowLogging));
+        }
+    }
+
+    /**
+     * @param polls          - the polls or snapshots replayed
+     * @param frames         - the requests replayed with their recorded response, 0 for snapshots
+     * @param channelUpdates - the channel states published
+     * @param elapsedNanos   - how long the replay took
+     */
+    public record ReplayResult(long polls, long frames, long channelUpdates, long elapsedNanos) {
+
+        public double pollsPerSecond() {
+            return elapsedNanos == 0 ? 0 : polls * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d polls, %d frames and %d channel updates replayed in %d ms (%.0f polls/s)", polls,
+                    frames, channelUpdates, elapsedNanos / 1_000_000, pollsPerSecond());
+        }
+    }
+}
@@ -18,8 +18,13 @@ import javax.measure.quantity.*;
 
 public class ChannelUtils {
     private final static Logger LOGGER = LoggerFactory.getLogger(ChannelUtils.class);
+    // The keys of a lookup are ints, their registers fit in a long
+    private static final int MAX_LOOKUP_REGISTERS = 4;
 
     public static String getItemType(ParameterItem item) {
+        if (hasLookup(item))
+            return CoreItemFactory.STRING;
+
         return switch (item.getRule()) {
             case 5, 6, 7, 9 -> CoreItemFactory.STRING;
             case 8 -> CoreItemFactory.DATETIME;
@@ -27,6 +32,15 @@ public class ChannelUtils {
         };
     }
 
+    /**
+     * @return true if the item is a number looked up in its lookup, so its channel is a string with the labels
+     */
+    public static boolean hasLookup(ParameterItem item) {
+        Integer rule = item.getRule();
+        return item.getLookupTable() != null && rule != null && rule >= 1 && rule <= 4
+                && item.getRegisters() != null && item.getRegisters().size() <= MAX_LOOKUP_REGISTERS;
+    }
+
     private static String computeNumberType(String uom) {
         // @TODO there is probably a better way to do this
         return switch (uom.toUpperCase()) {
@@ -15,16 +15,19 @@ import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
-import org.openhab.binding.solarman.internal.DefinitionParser;
-import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.IndexedInverterDefinition;
+import org.openhab.binding.solarman.internal.SolarmanDefinitionRegistry;
+import org.openhab.binding.solarman.internal.defmodel.LookupTable;
 import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
 import org.openhab.core.library.CoreItemFactory;
 import org.openhab.core.library.unit.Units;
 import org.openhab.core.thing.type.*;
 import org.openhab.core.types.StateDescriptionFragmentBuilder;
+import org.openhab.core.types.StateOption;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.units.indriya.format.SimpleUnitFormat;
@@ -40,34 +43,54 @@ import static org.openhab.binding.solarman.internal.typeprovider.ChannelUtils.ge
 @NonNullByDefault
 public class SolarmanChannelTypeProvider implements ChannelTypeProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(SolarmanChannelTypeProvider.class);
-    private static final DefinitionParser DEFINITION_PARSER = new DefinitionParser();
     private static final Pattern INVERTER_DEFINITION_PATTERN = Pattern.compile("/definitions/([^.]+)\\.yaml");
-    private final Map<ChannelTypeUID, ChannelType> channelTypeMap = new ConcurrentHashMap<>();
+    private final SolarmanDefinitionRegistry solarmanDefinitionRegistry;
+    private final List<String> inverterDefinitionIds;
+    private volatile @Nullable Map<ChannelTypeUID, ChannelType> channelTypeMap;
 
     @Activate
-    public SolarmanChannelTypeProvider(BundleContext bundleContext) {
-        Collections.list(bundleContext.getBundle().findEntries("/definitions", "*", false))
+    public SolarmanChannelTypeProvider(BundleContext bundleContext,
+                                       @Reference SolarmanDefinitionRegistry solarmanDefinitionRegistry) {
+        this.solarmanDefinitionRegistry = solarmanDefinitionRegistry;
+        this.inverterDefinitionIds = Collections.list(bundleContext.getBundle().findEntries("/definitions", "*", false))
                 .stream()
                 .map(URL::getFile)
                 .map(this::extractInverterDefinitionId)
                 .filter(Optional::isPresent)
                 .map(Optional::get)
-                .map(this::parseInverterDefinition)
-                .forEach(channelTypeMap::putAll);
+                .toList();
     }
 
+    /**
+     * The channel types are only built the first time they are needed, from the definitions shared with the things
+     */
+    private Map<ChannelTypeUID, ChannelType> getChannelTypeMap() {
+        Map<ChannelTypeUID, ChannelType> channelTypeMap = this.channelTypeMap;
+        if (channelTypeMap == null) {
+            synchronized (this) {
+                channelTypeMap = this.channelTypeMap;
+                if (channelTypeMap == null) {
+                    Map<ChannelTypeUID, ChannelType> newChannelTypeMap = new ConcurrentHashMap<>();
+                    inverterDefinitionIds.stream()
+                            .map(this::buildChannelTypes)
+                            .forEach(newChannelTypeMap::putAll);
+                    this.channelTypeMap = channelTypeMap = newChannelTypeMap;
+                }
+            }
+        }
+        return channelTypeMap;
+    }
 
-    private Map<ChannelTypeUID, ChannelType> parseInverterDefinition(String inverterDefinitionId) {
-        InverterDefinition inverterDefinition = DEFINITION_PARSER.parseDefinition(inverterDefinitionId);
+    private Map<ChannelTypeUID, ChannelType> buildChannelTypes(String inverterDefinitionId) {
+        IndexedInverterDefinition indexedInverterDefinition = solarmanDefinitionRegistry
+                .getIndexedDefinition(inverterDefinitionId);
+        if (indexedInverterDefinition == null) {
+            return Map.of();
+        }
 
-        return inverterDefinition.getParameters().stream()
-                .flatMap(parameter ->
-                        parameter.getItems().stream()
-                                .map(item -> {
-                                    ChannelTypeUID channelTypeUID = ChannelUtils.computeChannelTypeId(inverterDefinitionId, parameter.getGroup(), item.getName());
-                                    return new AbstractMap.SimpleEntry<>(channelTypeUID, buildChannelType(channelTypeUID, item));
-                                }))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return indexedInverterDefinition.getParameterItemsByChannelType().entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> buildChannelType(entry.getKey(), entry.getValue()), (t1, t2) -> t1));
     }
 
     private Optional<String> extractInverterDefinitionId(String file) {
@@ -79,12 +102,12 @@ public class SolarmanChannelTypeProvider implements ChannelTypeProvider {
     }
 
     public Collection<ChannelType> getChannelTypes(@Nullable Locale locale) {
-        return List.copyOf(this.channelTypeMap.values());
+        return List.copyOf(getChannelTypeMap().values());
     }
 
     @Override
     public @Nullable ChannelType getChannelType(ChannelTypeUID channelTypeUID, @Nullable Locale locale) {
-        return this.channelTypeMap.get(channelTypeUID);
+        return getChannelTypeMap().get(channelTypeUID);
     }
 
     public ChannelType buildChannelType(ChannelTypeUID channelTypeUID, ParameterItem item) {
@@ -94,7 +117,12 @@ public class SolarmanChannelTypeProvider implements ChannelTypeProvider {
         StateDescriptionFragmentBuilder stateDescriptionFragmentBuilder =
                 StateDescriptionFragmentBuilder.create()
                         .withPattern(computePatternForItem(item))
-                        .withReadOnly(true);
+                        .withReadOnly(!item.isWritable());
+
+        LookupTable lookupTable = item.getLookupTable();
+        if (lookupTable != null && ChannelUtils.hasLookup(item))
+            stateDescriptionFragmentBuilder.withOptions(lookupTable.getStates().stream()
+                    .map(state -> new StateOption(state.toString(), state.toString())).toList());
 
         StateChannelTypeBuilder stateChannelTypeBuilder = ChannelTypeBuilder
                 .state(channelTypeUID, item.getName(), itemType)
@@ -106,6 +134,9 @@ public class SolarmanChannelTypeProvider implements ChannelTypeProvider {
     }
 
     private String computePatternForItem(ParameterItem item) {
+        if (ChannelUtils.hasLookup(item))
+            return "%s";
+
         long decimalPoints = 0;
 
         if (item.getScale().compareTo(BigDecimal.ONE) < 0)
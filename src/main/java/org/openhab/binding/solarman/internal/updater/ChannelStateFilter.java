@@ -0,0 +1,78 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.core.types.State;
+
+/**
+ * The {@link ChannelStateFilter} decides whether the state of a channel needs to be published again. States are
+ * skipped when the registers of the channel did not change since the last published state, or when a numeric
+ * value changed less than the {@link Deadband} of the channel. A state is always published once it has not been for
+ * longer than the max silence interval, so items and persistence still get refreshed periodically.
+ * <p>
+ * A filter is not thread safe, it is meant to be used by the thread polling the logger.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class ChannelStateFilter {
+    private final int[] registers;
+    private final @Nullable Deadband deadband;
+    private final long maxSilenceMillis;
+
+    private final short[] lastRegisterValues;
+    private double lastValue;
+    private long lastPublished;
+    private boolean published = false;
+
+    /**
+     * @param registers        - the registers the state of the channel is decoded from
+     * @param deadband         - the deadband of numeric channels, null to publish every change
+     * @param maxSilenceMillis - the maximum time without publishing the state of the channel
+     */
+    public ChannelStateFilter(int[] registers, @Nullable Deadband deadband, long maxSilenceMillis) {
+        this.registers = registers;
+        this.deadband = deadband;
+        this.maxSilenceMillis = maxSilenceMillis;
+        this.lastRegisterValues = new short[registers.length];
+    }
+
+    /**
+     * @return true if the registers did not change since the last published state, without decoding them
+     */
+    public boolean isUnchanged(RegisterBank registerBank, long now) {
+        if (!published || now - lastPublished >= maxSilenceMillis) {
+            return false;
+        }
+
+        for (int i = 0; i < registers.length; i++) {
+            if (registerBank.get(registers[i]) != lastRegisterValues[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the decoded state needs to be published
+     */
+    public boolean shouldPublish(State state, long now) {
+        Deadband deadband = this.deadband;
+        if (!published || now - lastPublished >= maxSilenceMillis || deadband == null
+                || !(state instanceof Number number)) {
+            return true;
+        }
+
+        return !deadband.contains(lastValue, number.doubleValue());
+    }
+
+    public void published(State state, RegisterBank registerBank, long now) {
+        for (int i = 0; i < registers.length; i++) {
+            lastRegisterValues[i] = registerBank.get(registers[i]);
+        }
+        if (state instanceof Number number) {
+            lastValue = number.doubleValue();
+        }
+        lastPublished = now;
+        published = true;
+    }
+}
@@ -0,0 +1,48 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link Deadband} tells how much a numeric channel has to change before its new state is published. It is
+ * either an absolute value, like {@code 0.5}, or a percentage of the last published value, like {@code 2%}.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public record Deadband(double value, boolean percent) {
+    private final static Logger LOGGER = LoggerFactory.getLogger(Deadband.class);
+
+    /**
+     * @return the deadband or null if none is set or it is invalid
+     */
+    public static @Nullable Deadband fromString(@Nullable String deadband) {
+        if (StringUtils.isBlank(deadband)) {
+            return null;
+        }
+
+        String trimmedDeadband = deadband.trim();
+        boolean percent = trimmedDeadband.endsWith("%");
+        try {
+            double value = Double.parseDouble(
+                    percent ? trimmedDeadband.substring(0, trimmedDeadband.length() - 1).trim() : trimmedDeadband);
+            if (value > 0) {
+                return new Deadband(value, percent);
+            }
+        } catch (NumberFormatException e) {
+            // Logged below
+        }
+
+        LOGGER.warn("Ignoring invalid deadband {}", deadband);
+        return null;
+    }
+
+    /**
+     * @return true if the change from the last value to the new one is within the deadband
+     */
+    public boolean contains(double lastValue, double newValue) {
+        double threshold = percent ? Math.abs(lastValue) * value / 100 : value;
+        return Math.abs(newValue - lastValue) < threshold;
+    }
+}
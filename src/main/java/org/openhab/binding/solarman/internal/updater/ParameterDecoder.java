@@ -0,0 +1,299 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.defmodel.LookupTable;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.typeprovider.ChannelUtils;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.measure.Unit;
+import javax.measure.format.MeasurementParseException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * The {@link ParameterDecoder} turns the registers of a {@link ParameterItem} into a channel state. Decoders are
+ * compiled once per parameter, with the rule, registers, unit, scale and offset resolved up front, so decoding a
+ * polling cycle does not need to look at the definition anymore.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public abstract class ParameterDecoder {
+    private final static Logger LOGGER = LoggerFactory.getLogger(ParameterDecoder.class);
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yy/M/d H:m:s");
+
+    // Registers are stored least significant first, as in the definition
+    protected final int[] registers;
+
+    protected ParameterDecoder(List<Integer> registers) {
+        this.registers = registers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the decoder for the parameter or null if its rule is not supported
+     */
+    public static @Nullable ParameterDecoder compile(ParameterItem parameterItem) {
+        List<Integer> registers = parameterItem.getRegisters();
+        Integer rule = parameterItem.getRule();
+        if (rule == null || registers == null || registers.isEmpty()) {
+            LOGGER.debug("Unable to decode parameter {} without rule or registers", parameterItem.getName());
+            return null;
+        }
+
+        LookupTable lookupTable = parameterItem.getLookupTable();
+        if (lookupTable != null && ChannelUtils.hasLookup(parameterItem)) {
+            return new LookupDecoder(registers, rule == 2 || rule == 4, lookupTable);
+        }
+
+        return switch (rule) {
+            case 1, 3 -> new NumericDecoder(parameterItem, false);
+            case 2, 4 -> new NumericDecoder(parameterItem, true);
+            case 5 -> new StringDecoder(registers);
+            case 6 -> new RawDecoder(registers);
+            case 7 -> new VersionDecoder(registers);
+            case 8 -> new DateTimeDecoder(registers);
+            case 9 -> new TimeDecoder(registers);
+            default -> {
+                LOGGER.debug("Unsupported rule {} for parameter {}", rule, parameterItem.getName());
+                yield null;
+            }
+        };
+    }
+
+    public boolean canDecode(RegisterBank registerBank) {
+        for (int register : registers) {
+            if (!registerBank.contains(register)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the state of the channel or null if the registers do not hold a valid value
+     */
+    public abstract @Nullable State decode(RegisterBank registerBank);
+
+    private static class NumericDecoder extends ParameterDecoder {
+        // Up to 4 registers fit in a long, whatever the signedness
+        private static final int MAX_LONG_REGISTERS = 4;
+
+        private final boolean signed;
+        private final @Nullable BigDecimal offset;
+        private final @Nullable BigDecimal scale;
+        private final @Nullable Unit<?> unit;
+
+        private NumericDecoder(ParameterItem parameterItem, boolean signed) {
+            super(parameterItem.getRegisters());
+            this.signed = signed;
+            // Subtracting zero or multiplying by one does not change the value, not even its scale
+            this.offset = BigDecimal.ZERO.equals(parameterItem.getOffset()) ? null : parameterItem.getOffset();
+            this.scale = BigDecimal.ONE.equals(parameterItem.getScale()) ? null : parameterItem.getScale();
+            this.unit = resolveUnit(parameterItem.getUom());
+        }
+
+        private static @Nullable Unit<?> resolveUnit(String uom) {
+            if (StringUtils.isEmpty(uom)) {
+                return null;
+            }
+            try {
+                Unit<?> unitFromDefinition = ChannelUtils.getUnitFromDefinition(uom);
+                if (unitFromDefinition == null) {
+                    LOGGER.debug("Unable to parse unit: {}", uom);
+                }
+                return unitFromDefinition;
+            } catch (MeasurementParseException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public State decode(RegisterBank registerBank) {
+            BigDecimal value = registers.length <= MAX_LONG_REGISTERS ? decodeLong(registerBank)
+                    : new BigDecimal(decodeBigInteger(registerBank));
+
+            if (offset != null) {
+                value = value.subtract(offset);
+            }
+            if (scale != null) {
+                value = value.multiply(scale);
+            }
+
+            return unit != null ? new QuantityType<>(value, unit) : new DecimalType(value);
+        }
+
+        private BigDecimal decodeLong(RegisterBank registerBank) {
+            long value = 0;
+            for (int i = registers.length - 1; i >= 0; i--) {
+                short registerValue = registerBank.get(registers[i]);
+                value = (value << Short.SIZE) + (signed ? registerValue : registerValue & 0xFFFF);
+            }
+
+            if (!signed && value < 0) {
+                // 4 unsigned registers can overflow a long
+                return new BigDecimal(Long.toUnsignedString(value));
+            }
+            return BigDecimal.valueOf(value);
+        }
+
+        private BigInteger decodeBigInteger(RegisterBank registerBank) {
+            BigInteger value = BigInteger.ZERO;
+            for (int i = registers.length - 1; i >= 0; i--) {
+                short registerValue = registerBank.get(registers[i]);
+                value = value.shiftLeft(Short.SIZE)
+                        .add(BigInteger.valueOf(signed ? registerValue : registerValue & 0xFFFF));
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Looks up the raw value of the registers, the scale and offset of the parameter do not apply to the keys of its
+     * lookup. Values missing from the lookup are published as they are.
+     */
+    private static class LookupDecoder extends ParameterDecoder {
+        private final boolean signed;
+        private final LookupTable lookupTable;
+
+        private LookupDecoder(List<Integer> registers, boolean signed, LookupTable lookupTable) {
+            super(registers);
+            this.signed = signed;
+            this.lookupTable = lookupTable;
+        }
+
+        @Override
+        public State decode(RegisterBank registerBank) {
+            long value = 0;
+            for (int i = registers.length - 1; i >= 0; i--) {
+                short registerValue = registerBank.get(registers[i]);
+                value = (value << Short.SIZE) + (signed ? registerValue : registerValue & 0xFFFF);
+            }
+
+            StringType state = lookupTable.lookup(value);
+            return state != null ? state : new StringType(Long.toString(value));
+        }
+    }
+
+    private static class StringDecoder extends ParameterDecoder {
+        private StringDecoder(List<Integer> registers) {
+            super(registers);
+        }
+
+        @Override
+        public State decode(RegisterBank registerBank) {
+            StringBuilder stringValue = new StringBuilder(registers.length * 2);
+            for (int register : registers) {
+                short shortValue = registerBank.get(register);
+                stringValue.append((char) (shortValue >> 8)).append((char) (shortValue & 0xFF));
+            }
+            return new StringType(stringValue.toString());
+        }
+    }
+
+    private static class RawDecoder extends ParameterDecoder {
+        private RawDecoder(List<Integer> registers) {
+            super(registers);
+        }
+
+        @Override
+        public State decode(RegisterBank registerBank) {
+            StringBuilder hexString = new StringBuilder("[");
+            for (int i = registers.length - 1; i >= 0; i--) {
+                hexString.append(String.format("0x%02X", registerBank.get(registers[i])));
+                if (i > 0) {
+                    hexString.append(',');
+                }
+            }
+            return new StringType(hexString.append(']').toString());
+        }
+    }
+
+    private static class VersionDecoder extends ParameterDecoder {
+        private VersionDecoder(List<Integer> registers) {
+            super(registers);
+        }
+
+        @Override
+        public State decode(RegisterBank registerBank) {
+            StringBuilder stringValue = new StringBuilder();
+            for (int register : registers) {
+                short rawVal = registerBank.get(register);
+                stringValue.append(rawVal >> 12).append('.')
+                        .append((rawVal >> 8) & 0x0F).append('.')
+                        .append((rawVal >> 4) & 0x0F).append('.')
+                        .append(rawVal & 0x0F);
+            }
+            return new StringType(stringValue.toString());
+        }
+    }
+
+    private static class DateTimeDecoder extends ParameterDecoder {
+        private DateTimeDecoder(List<Integer> registers) {
+            super(registers);
+        }
+
+        @Override
+        public @Nullable State decode(RegisterBank registerBank) {
+            StringBuilder stringValue = new StringBuilder();
+            for (int index = 0; index < registers.length; index++) {
+                short rawVal = registerBank.get(registers[index]);
+                stringValue.append(rawVal >> 8).append(switch (index) {
+                    case 0 -> "/";
+                    case 1 -> " ";
+                    case 2 -> ":";
+                    default -> "";
+                }).append(rawVal & 0xFF).append(switch (index) {
+                    case 0 -> "/";
+                    case 1 -> ":";
+                    default -> "";
+                });
+            }
+
+            try {
+                LocalDateTime dateTime = LocalDateTime.parse(stringValue, DATE_TIME_FORMATTER);
+                return new DateTimeType(dateTime.atZone(ZoneId.systemDefault()));
+            } catch (DateTimeParseException e) {
+                LOGGER.error("Unable to parse string date {} to a DateTime object", stringValue);
+                return null;
+            }
+        }
+    }
+
+    private static class TimeDecoder extends ParameterDecoder {
+        private TimeDecoder(List<Integer> registers) {
+            super(registers);
+        }
+
+        @Override
+        public State decode(RegisterBank registerBank) {
+            StringBuilder stringValue = new StringBuilder();
+            for (int register : registers) {
+                short rawVal = registerBank.get(register);
+                appendTwoDigits(stringValue, rawVal / 100).append(':');
+                appendTwoDigits(stringValue, rawVal % 100);
+            }
+            return new StringType(stringValue.toString());
+        }
+
+        private static StringBuilder appendTwoDigits(StringBuilder stringBuilder, int value) {
+            // Same as String.format("%02d", value)
+            if (value >= 0 && value < 10) {
+                stringBuilder.append('0');
+            }
+            return stringBuilder.append(value);
+        }
+    }
+}
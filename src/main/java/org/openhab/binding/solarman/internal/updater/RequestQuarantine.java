@@ -0,0 +1,114 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RequestQuarantine} keeps track of the register ranges the inverter refuses to read. A range answered with
+ * a Modbus exception {@link #MAX_EXCEPTIONS} times without being read successfully in between, like an Illegal Data
+ * Address for registers the model does not have, is not requested anymore for {@link #QUARANTINE_MILLIS}, then tried
+ * again once.
+ * <p>
+ * The exceptions are counted against the register ranges of the definition, not against the requests planned for a
+ * poll, which are trimmed to the linked channels and merged differently from one poll to the next. When a request
+ * covering several ranges is refused, which of them the inverter can't read is not known, so from then on the request
+ * is split into its part in each range and only the parts refused on their own are counted.
+ * <p>
+ * Ranges that are not answered at all are not quarantined, the logger is to blame for those, not the range. Such reads
+ * neither count as an exception nor reset the exceptions counted, only a successful read does.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class RequestQuarantine {
+    private final static Logger LOGGER = LoggerFactory.getLogger(RequestQuarantine.class);
+    static final int MAX_EXCEPTIONS = 3;
+    static final long QUARANTINE_MILLIS = 60 * 60 * 1000;
+
+    private final List<Range> definitionRanges;
+    private final Map<Range, RangeState> rangeStates = new ConcurrentHashMap<>();
+
+    public RequestQuarantine() {
+        this(List.of());
+    }
+
+    /**
+     * @param requests - the register ranges of the definition. Requests outside of them are counted on their own.
+     */
+    public RequestQuarantine(List<Request> requests) {
+        this.definitionRanges = requests.stream().map(Range::of).distinct().toList();
+    }
+
+    /**
+     * @return the requests to send for the planned one: the request itself as long as none of the ranges it covers
+     *         was refused, otherwise its part in each of these ranges, without the quarantined ones
+     */
+    public List<Request> split(Request request, long now) {
+        List<Range> ranges = rangesOf(request);
+        if (ranges.stream().noneMatch(rangeStates::containsKey))
+            return List.of(request);
+
+        List<Request> parts = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            RangeState rangeState = rangeStates.get(range);
+            if (rangeState != null && now < rangeState.quarantinedUntil())
+                continue;
+
+            parts.add(new Request(range.functionCode(), Math.max(range.start(), request.getStart()),
+                    Math.min(range.end(), request.getEnd())));
+        }
+        return parts;
+    }
+
+    public void record(Request request, ReadResult readResult, long now) {
+        List<Range> ranges = rangesOf(request);
+        if (readResult == ReadResult.SUCCESS) {
+            ranges.forEach(rangeStates::remove);
+        } else if (readResult == ReadResult.MODBUS_EXCEPTION && ranges.size() > 1) {
+            // Not counted against any of them, they are read apart from now on to find out which one is refused
+            ranges.forEach(range -> rangeStates.putIfAbsent(range, new RangeState(0, 0)));
+        } else if (readResult == ReadResult.MODBUS_EXCEPTION) {
+            rangeStates.compute(ranges.get(0), (range, rangeState) -> {
+                int exceptions = rangeState == null ? 1 : rangeState.exceptions() + 1;
+                if (exceptions < MAX_EXCEPTIONS) {
+                    return new RangeState(exceptions, 0);
+                }
+
+                LOGGER.warn("Registers 0x{}-0x{} can't be read, not requesting them for the next {} minutes",
+                        String.format("%04X", range.start()), String.format("%04X", range.end()),
+                        QUARANTINE_MILLIS / 60_000);
+                return new RangeState(exceptions, now + QUARANTINE_MILLIS);
+            });
+        }
+    }
+
+    /**
+     * @return the ranges of the definition the request reads registers of, the request itself if there is none
+     */
+    private List<Range> rangesOf(Request request) {
+        List<Range> ranges = new ArrayList<>(1);
+        for (Range range : definitionRanges) {
+            if (range.functionCode() == request.getMbFunctioncode() && range.start() <= request.getEnd()
+                    && range.end() >= request.getStart())
+                ranges.add(range);
+        }
+        if (ranges.isEmpty())
+            ranges.add(Range.of(request));
+        return ranges;
+    }
+
+    private record Range(int functionCode, int start, int end) {
+        private static Range of(Request request) {
+            return new Range(request.getMbFunctioncode(), request.getStart(), request.getEnd());
+        }
+    }
+
+    private record RangeState(int exceptions, long quarantinedUntil) {
+    }
+}
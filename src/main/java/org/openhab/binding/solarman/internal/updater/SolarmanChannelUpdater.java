@@ -1,224 +1,283 @@
 package org.openhab.binding.solarman.internal.updater;
 
-import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
 import org.openhab.binding.solarman.internal.defmodel.Request;
-import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.binding.solarman.internal.history.RegisterSnapshotStore;
+import org.openhab.binding.solarman.internal.metrics.PollMetrics;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
 import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnection;
 import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
 import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
 import org.openhab.binding.solarman.internal.state.LoggerState;
-import org.openhab.binding.solarman.internal.typeprovider.ChannelUtils;
-import org.openhab.binding.solarman.internal.util.StreamUtils;
-import org.openhab.core.library.types.DateTimeType;
-import org.openhab.core.library.types.DecimalType;
-import org.openhab.core.library.types.QuantityType;
-import org.openhab.core.library.types.StringType;
 import org.openhab.core.thing.ChannelUID;
 import org.openhab.core.types.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.measure.Unit;
-import javax.measure.format.MeasurementParseException;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
-
-import static org.openhab.binding.solarman.internal.util.StreamUtils.reverse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SolarmanChannelUpdater {
     private final Logger LOGGER = LoggerFactory.getLogger(SolarmanChannelUpdater.class);
     private final StateUpdater stateUpdater;
+    private final RegisterBank registerBank = new RegisterBank();
+    private final Map<ParameterItem, @Nullable ParameterDecoder> parameterDecoders = new IdentityHashMap<>();
+    private final Map<ChannelUID, Deadband> channelDeadbands;
+    private final long maxSilenceMillis;
+    private final Map<ChannelUID, ChannelStateFilter> channelStateFilters = new ConcurrentHashMap<>();
+    private final RequestQuarantine requestQuarantine;
+    private final PollMetrics pollMetrics = new PollMetrics();
+    private final @Nullable RegisterSnapshotStore registerSnapshotStore;
+
+    /**
+     * @param stateUpdater       - called with the new state of the channels
+     * @param parameterItems     - the parameters that can be updated, their decoders are compiled upfront
+     * @param channelDeadbands   - the deadband of the numeric channels having one
+     * @param maxSilenceInterval - the maximum time, in seconds, without publishing the state of a channel that did not
+     *                           change. 0 publishes all the states on every poll
+     */
+    public SolarmanChannelUpdater(StateUpdater stateUpdater, Collection<ParameterItem> parameterItems,
+                                  Map<ChannelUID, Deadband> channelDeadbands, int maxSilenceInterval) {
+        this(stateUpdater, parameterItems, channelDeadbands, maxSilenceInterval, List.of(), null);
+    }
 
-    public SolarmanChannelUpdater(StateUpdater stateUpdater) {
+    /**
+     * @param requests              - the register ranges of the definition, the Modbus exceptions are counted against
+     * @param registerSnapshotStore - where the registers read on every poll are kept, null to not keep them
+     */
+    public SolarmanChannelUpdater(StateUpdater stateUpdater, Collection<ParameterItem> parameterItems,
+                                  Map<ChannelUID, Deadband> channelDeadbands, int maxSilenceInterval,
+                                  List<Request> requests, @Nullable RegisterSnapshotStore registerSnapshotStore) {
         this.stateUpdater = stateUpdater;
+        this.requestQuarantine = new RequestQuarantine(requests);
+        this.registerSnapshotStore = registerSnapshotStore;
+        this.channelDeadbands = channelDeadbands;
+        this.maxSilenceMillis = maxSilenceInterval * 1000L;
+        parameterItems.forEach(parameterItem ->
+                parameterDecoders.put(parameterItem, ParameterDecoder.compile(parameterItem)));
     }
 
-    public boolean fetchDataFromLogger(List<Request> requests,
-                                       SolarmanLoggerConnector solarmanLoggerConnector,
-                                       SolarmanV5Protocol solarmanV5Protocol,
-                                       Map<ParameterItem, ChannelUID> paramToChannelMapping,
-                                       LoggerState loggerState) {
-
-        try (SolarmanLoggerConnection solarmanLoggerConnection = solarmanLoggerConnector.createConnection()) {
-            LOGGER.debug("Fetching data from logger");
-
-            Map<Integer, byte[]> readRegistersMap = requests.stream()
-                    .map(request -> solarmanV5Protocol.readRegisters(solarmanLoggerConnection,
-                            (byte) request.getMbFunctioncode().intValue(),
-                            request.getStart(),
-                            request.getEnd(),
-                            !loggerState.isOffline())
-                    )
-                    .reduce(new HashMap<>(), this::mergeMaps);
-
-            if (!readRegistersMap.isEmpty())
-                updateChannelsForReadRegisters(paramToChannelMapping, readRegistersMap);
-
-            return !readRegistersMap.isEmpty();
-        } catch (Exception e) {
-            LOGGER.error("Error invoking handler", e);
-            return false;
-        }
+    /**
+     * @return the metrics of the polls of this updater
+     */
+    public PollMetrics getPollMetrics() {
+        return pollMetrics;
     }
 
-    private void updateChannelsForReadRegisters(Map<ParameterItem, ChannelUID> paramToChannelMapping,
-                                                Map<Integer, byte[]> readRegistersMap) {
-        paramToChannelMapping.forEach((parameterItem, channelUID) -> {
-            List<Integer> registers = parameterItem.getRegisters();
-            if (readRegistersMap.keySet().containsAll(registers)) {
-                switch (parameterItem.getRule()) {
-                    case 1, 3 -> updateChannelWithNumericValue(parameterItem, channelUID, registers,
-                            readRegistersMap, ValueType.UNSIGNED);
-                    case 2, 4 -> updateChannelWithNumericValue(parameterItem, channelUID, registers,
-                            readRegistersMap, ValueType.SIGNED);
-                    case 5 -> updateChannelWithStringValue(channelUID, registers, readRegistersMap);
-                    case 6 -> updateChannelWithRawValue(parameterItem, channelUID, registers, readRegistersMap);
-                    case 7 -> updateChannelWithVersion(channelUID, registers, readRegistersMap);
-                    case 8 -> updateChannelWithDateTime(channelUID, registers, readRegistersMap);
-                    case 9 -> updateChannelWithTime(channelUID, registers, readRegistersMap);
-                }
-            } else {
-                LOGGER.error("Unable to update channel {} because its registers were not read", channelUID.getId());
-            }
-        });
+    /**
+     * Forgets the last published state of the channel, so that its next state gets published
+     */
+    public void channelLinked(ChannelUID channelUID) {
+        forgetPublishedState(channelUID);
     }
 
-    private void updateChannelWithTime(ChannelUID channelUID, List<Integer> registers, Map<Integer, byte[]> readRegistersMap) {
-        String stringValue = registers.stream()
-                .map(readRegistersMap::get)
-                .map(v -> ByteBuffer.wrap(v).getShort())
-                .map(rawVal -> String.format("%02d", rawVal / 100) + ":" +
-                        String.format("%02d", rawVal % 100))
-                .collect(Collectors.joining());
-
-        stateUpdater.updateState(channelUID, new StringType(stringValue));
+    /**
+     * Forgets the last published state of the channel, to be called once a state that was not polled, like the one of
+     * a command, was published. The next poll then publishes the polled state even if its registers did not change.
+     */
+    public void forgetPublishedState(ChannelUID channelUID) {
+        channelStateFilters.remove(channelUID);
     }
 
-    private void updateChannelWithDateTime(ChannelUID channelUID, List<Integer> registers, Map<Integer, byte[]> readRegistersMap) {
-        String stringValue = StreamUtils.zip(
-                        IntStream.range(0, registers.size()).boxed(),
-                        registers.stream().map(readRegistersMap::get).map(v -> ByteBuffer.wrap(v).getShort()),
-                        StreamUtils.Tuple::new)
-                .map(t -> {
-                    int index = t.a();
-                    short rawVal = t.b();
-
-                    return switch (index) {
-                        case 0 -> (rawVal >> 8) + "/" + (rawVal & 0xFF) + "/";
-                        case 1 -> (rawVal >> 8) + " " + (rawVal & 0xFF) + ":";
-                        case 2 -> (rawVal >> 8) + ":" + (rawVal & 0xFF);
-                        default -> (rawVal >> 8) + "" + (rawVal & 0xFF);
-                    };
-                })
-                .collect(Collectors.joining());
+    /**
+     * Reads the registers and updates the channels. When the connection does not block, this returns as soon as the
+     * requests are queued and the channels are updated once all the responses arrived. Otherwise the returned future
+     * is already completed. A new fetch must not be started before the previous one is completed.
+     * <p>
+     * Ranges the inverter keeps refusing to read are skipped for a while, and once a range is not answered at all the
+     * remaining ones are not sent, as they would only wait for the same timeout.
+     *
+     * @return a future completed with true if any register was read
+     */
+    public CompletableFuture<Boolean> fetchDataFromLogger(List<Request> requests,
+                                                          SolarmanLoggerConnector solarmanLoggerConnector,
+                                                          SolarmanV5Protocol solarmanV5Protocol,
+                                                          Map<ParameterItem, ChannelUID> paramToChannelMapping,
+                                                          LoggerState loggerState) {
+        return fetchDataFromLogger(requests, solarmanLoggerConnector, solarmanV5Protocol, paramToChannelMapping,
+                loggerState, System.currentTimeMillis());
+    }
 
+    /**
+     * Same as {@link #fetchDataFromLogger(List, SolarmanLoggerConnector, SolarmanV5Protocol, Map, LoggerState)}, for
+     * a poll taking place at the given time, like when replaying recorded polls.
+     *
+     * @param now - the time of the poll, in epoch millis, used to filter the channel states and quarantine requests
+     */
+    public CompletableFuture<Boolean> fetchDataFromLogger(List<Request> requests,
+                                                          SolarmanLoggerConnector solarmanLoggerConnector,
+                                                          SolarmanV5Protocol solarmanV5Protocol,
+                                                          Map<ParameterItem, ChannelUID> paramToChannelMapping,
+                                                          LoggerState loggerState, long now) {
+
+        SolarmanLoggerConnection solarmanLoggerConnection = solarmanLoggerConnector.acquireConnection();
+        LOGGER.debug("Fetching data from logger");
+
+        long start = System.currentTimeMillis();
+        registerBank.clear();
+
+        // All the requests are queued at once, the connection decides how many of them are sent without waiting for
+        // the previous responses
+        List<Request> requestsToSend = new ArrayList<>(requests.size());
+        requests.forEach(request -> requestsToSend.addAll(requestQuarantine.split(request, now)));
+
+        List<CompletableFuture<ReadResult>> readRegisters = new ArrayList<>(requestsToSend.size());
         try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yy/M/d H:m:s");
-            LocalDateTime dateTime = LocalDateTime.parse(stringValue, formatter);
-
-            stateUpdater.updateState(channelUID, new DateTimeType(dateTime.atZone(ZoneId.systemDefault())));
-        } catch (DateTimeParseException e) {
-            LOGGER.error("Unable to parse string date {} to a DateTime object", stringValue);
+            for (Request request : requestsToSend) {
+                CompletableFuture<ReadResult> readResult = solarmanV5Protocol.readRegistersAsync(
+                        solarmanLoggerConnection,
+                        (byte) request.getMbFunctioncode().intValue(),
+                        request.getStart(),
+                        request.getEnd(),
+                        !loggerState.isOffline(),
+                        registerBank).thenApply(result -> {
+                    requestQuarantine.record(request, result, now);
+                    return result;
+                });
+                readRegisters.add(readResult);
+
+                // Only known right away with a blocking connection, the non-blocking one drops the queued requests
+                // itself when the logger stops answering
+                if (readResult.getNow(null) == ReadResult.NO_RESPONSE) {
+                    LOGGER.debug("Logger did not answer, not reading the remaining register ranges");
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            readRegisters.add(CompletableFuture.failedFuture(e));
         }
-    }
-
-    private void updateChannelWithVersion(ChannelUID channelUID, List<Integer> registers, Map<Integer, byte[]> readRegistersMap) {
-        String stringValue = registers.stream()
-                .map(readRegistersMap::get)
-                .map(v -> ByteBuffer.wrap(v).getShort())
-                .map(rawVal -> (rawVal >> 12) + "." +
-                        ((rawVal >> 8) & 0x0F) + "." +
-                        ((rawVal >> 4) & 0x0F) + "." +
-                        (rawVal & 0x0F))
-                .collect(Collectors.joining());
-
-        stateUpdater.updateState(channelUID, new StringType(stringValue));
-    }
 
-    private void updateChannelWithStringValue(ChannelUID channelUID, List<Integer> registers, Map<Integer, byte[]> readRegistersMap) {
-        String stringValue = registers.stream().map(readRegistersMap::get).reduce(new StringBuilder(), (acc, val) -> {
-            short shortValue = ByteBuffer.wrap(val).order(ByteOrder.BIG_ENDIAN).getShort();
-            return acc.append((char) (shortValue >> 8)).append((char) (shortValue & 0xFF));
-        }, StringBuilder::append).toString();
+        return CompletableFuture.allOf(readRegisters.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            boolean fetchSuccessful = false;
+            try {
+                if (error != null) {
+                    LOGGER.error("Error invoking handler", error);
+                    return false;
+                }
 
-        stateUpdater.updateState(channelUID, new StringType(stringValue));
-    }
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Outcome of the {} register ranges to read: {}", requestsToSend.size(),
+                            countReadResults(readRegisters));
 
-    private void updateChannelWithNumericValue(ParameterItem parameterItem, ChannelUID channelUID,
-                                               List<Integer> registers, Map<Integer, byte[]> readRegistersMap, ValueType valueType) {
-        BigInteger value = extractNumericValue(registers, readRegistersMap, valueType);
-        BigDecimal convertedValue = convertNumericValue(value, parameterItem.getOffset(), parameterItem.getScale());
-        if (validateNumericValue(convertedValue, parameterItem.getValidation())) {
-            State state;
-            if (StringUtils.isNotEmpty(parameterItem.getUom())) {
-                try {
-                    Unit<?> unitFromDefinition = ChannelUtils.getUnitFromDefinition(parameterItem.getUom());
-                    if (unitFromDefinition != null)
-                        state = new QuantityType<>(convertedValue, unitFromDefinition);
-                    else {
-                        LOGGER.debug("Unable to parse unit: {}", parameterItem.getUom());
-                        state = new DecimalType(convertedValue);
+                synchronized (registerBank) {
+                    if (!registerBank.isEmpty()) {
+                        pollMetrics.recordChannelUpdates(
+                                updateChannelsForReadRegisters(paramToChannelMapping, registerBank, now));
+                        storeRegisterSnapshot(now);
                     }
-                } catch (MeasurementParseException e) {
-                    state = new DecimalType(convertedValue);
-                }
 
-            } else {
-                state = new DecimalType(convertedValue);
+                    fetchSuccessful = !registerBank.isEmpty();
+                    return fetchSuccessful;
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error invoking handler", e);
+                return false;
+            } finally {
+                pollMetrics.recordPoll(System.currentTimeMillis() - start, fetchSuccessful);
+                solarmanLoggerConnector.releaseConnection(solarmanLoggerConnection);
             }
-            stateUpdater.updateState(channelUID, state);
-        }
+        });
     }
 
-    private void updateChannelWithRawValue(ParameterItem parameterItem, ChannelUID channelUID, List<Integer> registers,
-                                           Map<Integer, byte[]> readRegistersMap) {
-        String hexString = String.format("[%s]",
-                reverse(registers).stream()
-                        .map(readRegistersMap::get)
-                        .map(val -> String.format("0x%02X", ByteBuffer.wrap(val).order(ByteOrder.BIG_ENDIAN).getShort()))
-                        .collect(Collectors.joining(",")));
-
-        stateUpdater.updateState(channelUID, new StringType(hexString));
+    /**
+     * @return true if all the registers of the parameter were read by the last fetch
+     */
+    public boolean hasRead(ParameterItem parameterItem) {
+        synchronized (registerBank) {
+            return registerBank.containsAll(parameterItem.getRegisters());
+        }
     }
 
+    private void storeRegisterSnapshot(long now) {
+        RegisterSnapshotStore registerSnapshotStore = this.registerSnapshotStore;
+        if (registerSnapshotStore == null)
+            return;
 
-    private boolean validateNumericValue(BigDecimal convertedValue, Validation validation) {
-        return true;
+        try {
+            registerSnapshotStore.append(now, registerBank);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the registers read from the logger: {}", e.getMessage());
+        }
     }
 
-    private BigDecimal convertNumericValue(BigInteger value, @Nullable BigDecimal offset, @Nullable BigDecimal scale) {
-        return new BigDecimal(value).subtract(offset != null ? offset : BigDecimal.ZERO)
-                .multiply(scale != null ? scale : BigDecimal.ONE);
+    private Map<ReadResult, Integer> countReadResults(List<CompletableFuture<ReadResult>> readRegisters) {
+        Map<ReadResult, Integer> readResults = new EnumMap<>(ReadResult.class);
+        readRegisters.forEach(readResult -> readResults.merge(readResult.join(), 1, Integer::sum));
+        return readResults;
     }
 
-    private BigInteger extractNumericValue(List<Integer> registers, Map<Integer, byte[]> readRegistersMap, ValueType valueType) {
-        return reverse(registers).stream().map(readRegistersMap::get).reduce(BigInteger.ZERO,
-                (acc, val) -> acc.shiftLeft(Short.SIZE).add(BigInteger.valueOf(ByteBuffer.wrap(val).getShort() & (valueType == ValueType.UNSIGNED ? 0xFFFF : 0xFFFFFFFF))),
-                BigInteger::add);
+    /**
+     * Updates the channels from registers that were not read by this updater, like the ones kept in the register
+     * history. The register bank must hold all the registers of the parameters to update.
+     *
+     * @return the number of channel states published
+     */
+    public int updateChannels(Map<ParameterItem, ChannelUID> paramToChannelMapping, RegisterBank registerBank,
+                              long now) {
+        synchronized (registerBank) {
+            return updateChannelsForReadRegisters(paramToChannelMapping, registerBank, now);
+        }
     }
 
-    private <K, V> Map<K, V> mergeMaps(Map<K, V> map1,
-                                       Map<K, V> map2) {
-        return Stream.concat(map1.entrySet().stream(), map2.entrySet().stream())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (v1, v2) -> v1));
+    /**
+     * @return the number of channel states published
+     */
+    private int updateChannelsForReadRegisters(Map<ParameterItem, ChannelUID> paramToChannelMapping,
+                                               RegisterBank registerBank, long now) {
+        int channelUpdates = 0;
+        for (Map.Entry<ParameterItem, ChannelUID> entry : paramToChannelMapping.entrySet()) {
+            if (updateChannel(entry.getKey(), entry.getValue(), registerBank, now))
+                channelUpdates++;
+        }
+        return channelUpdates;
     }
 
-    private enum ValueType {
-        UNSIGNED, SIGNED
+    /**
+     * @return true if the state of the channel was published
+     */
+    private boolean updateChannel(ParameterItem parameterItem, ChannelUID channelUID, RegisterBank registerBank,
+                                  long now) {
+        ParameterDecoder parameterDecoder = parameterDecoders.get(parameterItem);
+        if (parameterDecoder == null) {
+            return false;
+        }
+
+        if (!parameterDecoder.canDecode(registerBank)) {
+            LOGGER.error("Unable to update channel {} because its registers were not read", channelUID.getId());
+            return false;
+        }
+
+        if (maxSilenceMillis <= 0) {
+            State state = parameterDecoder.decode(registerBank);
+            if (state == null)
+                return false;
+
+            stateUpdater.updateState(channelUID, state);
+            return true;
+        }
+
+        ChannelStateFilter channelStateFilter = channelStateFilters.computeIfAbsent(channelUID,
+                uid -> new ChannelStateFilter(parameterDecoder.registers, channelDeadbands.get(uid),
+                        maxSilenceMillis));
+        if (channelStateFilter.isUnchanged(registerBank, now))
+            return false;
+
+        State state = parameterDecoder.decode(registerBank);
+        if (state == null || !channelStateFilter.shouldPublish(state, now))
+            return false;
+
+        stateUpdater.updateState(channelUID, state);
+        channelStateFilter.published(state, registerBank, now);
+        return true;
     }
 
     @FunctionalInterface
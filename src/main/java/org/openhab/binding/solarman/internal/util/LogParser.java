@@ -1,59 +1,73 @@
 package org.openhab.binding.solarman.internal.util;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Arrays;
-import java.util.Scanner;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
 
+import org.openhab.binding.solarman.internal.DefinitionParser;
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.replay.SolarmanReplayEngine;
+import org.openhab.binding.solarman.internal.replay.SolarmanReplayEngine.ReplayResult;
+
+/**
+ * Replays recorded data through a definition and prints the states of the channels, see
+ * {@link SolarmanReplayEngine}. The data is either an openHAB log holding the frames logged at debug level by the
+ * binding, "-" to read the log from the standard input, or the register history folder of a thing. When the log holds
+ * the frames of several loggers, the serial number of the one to replay can be given. Redirect the states to
+ * /dev/null to only measure how fast the data is decoded.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
 public class LogParser {
-    public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-
-        System.out.print("Enter request frame: ");
-        String requestFrameString = scanner.nextLine();
-        System.out.print("Enter response frame: ");
-        String responseFrameString = scanner.nextLine();
-
-        byte[] requestFrame = convertHexToByteArray(requestFrameString);
-        byte[] responseFrame = convertHexToByteArray(responseFrameString);
-
-        Integer[] startEnd = parseStartEnd(requestFrame);
-        String requestInverterId = parseInverterId(requestFrame);
-        System.out.printf("Request was from: 0x%04X to 0x%04X for logger with ID: %s%n", startEnd[0], startEnd[1], requestInverterId);
-        String responseInverterId = parseInverterId(responseFrame);
-        System.out.printf("Response was from logger with ID: %s%n", responseInverterId);
-
-        byte[] responseFrameRegister = Arrays.copyOfRange(responseFrame, 25, responseFrame.length - 2);
-
-        for (int i = 0; i < startEnd[1] - startEnd[0] + 1; i++) {
-            int p1 = 3 + (i * 2);
-            ByteBuffer order = ByteBuffer.wrap(responseFrameRegister, p1, 2).order(ByteOrder.BIG_ENDIAN);
-            byte[] array = new byte[]{order.get(), order.get()};
-            Integer value = (array[0] << 8) + array[1];
-            System.err.printf("[0x%04X]: 0x%04X (%d)\n", i + startEnd[0], value, value);
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: LogParser <inverter type> <frame log file | - | register history folder> "
+                    + "[logger serial number]");
+            System.exit(1);
         }
-    }
 
-    private static String parseInverterId(byte[] requestFrame) {
-        byte[] inverterIdBytes = Arrays.copyOfRange(requestFrame, 7, 11);
-        int inverterIdInt = ByteBuffer.wrap(inverterIdBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
-        return String.valueOf(inverterIdInt & 0x00000000ffffffffL);
-    }
+        InverterDefinition inverterDefinition = new DefinitionParser().parseDefinition(args[0]);
+        if (inverterDefinition == null) {
+            System.err.println("Unknown inverter type " + args[0]);
+            System.exit(1);
+        }
 
-    private static Integer[] parseStartEnd(byte[] requestFrame) {
-        int start = (requestFrame[28] << 8) + requestFrame[29];
-        int length = (requestFrame[30] << 8) + requestFrame[31];
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out,
+                StandardCharsets.UTF_8), 1 << 16));
+        SolarmanReplayEngine solarmanReplayEngine = new SolarmanReplayEngine(inverterDefinition,
+                (channelUID, state) -> out.println(channelUID.getId() + " = " + state), 0);
 
-        return new Integer[]{start, start + length - 1};
-    }
+        Long serialNumber = null;
+        if (args.length == 3) {
+            try {
+                serialNumber = Long.parseUnsignedLong(args[2].trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid logger serial number " + args[2]);
+                System.exit(1);
+            }
+        }
 
-    private static byte[] convertHexToByteArray(String frameString) {
-        int len = frameString.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(frameString.charAt(i), 16) << 4)
-                    + Character.digit(frameString.charAt(i + 1), 16));
+        ReplayResult replayResult;
+        Path path = Path.of(args[1]);
+        if ("-".equals(args[1])) {
+            replayResult = solarmanReplayEngine.replayFrameLog(new InputStreamReader(System.in,
+                    StandardCharsets.UTF_8), ZoneId.systemDefault(), serialNumber);
+        } else if (Files.isDirectory(path)) {
+            replayResult = solarmanReplayEngine.replaySnapshots(path, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                replayResult = solarmanReplayEngine.replayFrameLog(reader, ZoneId.systemDefault(), serialNumber);
+            }
         }
-        return data;
+
+        out.flush();
+        System.err.println(replayResult);
     }
 }
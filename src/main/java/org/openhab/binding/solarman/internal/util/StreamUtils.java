@@ -41,7 +41,7 @@ public class StreamUtils {
                 : StreamSupport.stream(split, false);
     }
 
-    public static Collection<Object> reverse(List<Integer> list) {
+    public static List<Integer> reverse(List<Integer> list) {
         return list.stream().reduce(new ArrayList<>(), (l, i) -> {
             l.add(0, i);
             return l;
@@ -0,0 +1,34 @@
+package org.openhab.binding.solarman.internal.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gives access to the virtual threads of Java 21 while the binding is still built for Java 17, so they can be used
+ * whenever openHAB runs on a recent enough JVM.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class VirtualThreads {
+    private final static Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    /**
+     * @return an executor starting a virtual thread per task, null if the JVM does not support virtual threads
+     */
+    public static @Nullable ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            LOGGER.debug("Virtual threads require Java 21, running on {}", System.getProperty("java.version"));
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            LOGGER.debug("Unable to create a virtual thread executor", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+
+import javax.measure.Unit;
+import javax.measure.format.MeasurementParseException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.defmodel.LookupTable;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.binding.solarman.internal.typeprovider.ChannelUtils;
+import org.openhab.binding.solarman.internal.updater.ParameterDecoder;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ParameterEncoder} turns a command sent to a writable channel into the values of the registers of its
+ * {@link ParameterItem}, the other way round of the {@link ParameterDecoder}. Only the numeric rules can be written.
+ * Parameters with a lookup are written with the key of the label commanded.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class ParameterEncoder {
+    private final static Logger LOGGER = LoggerFactory.getLogger(ParameterEncoder.class);
+
+    // Registers are stored least significant first, as in the definition
+    private final int[] registers;
+    private final boolean signed;
+    private final BigDecimal offset;
+    private final BigDecimal scale;
+    private final @Nullable Unit<?> unit;
+    private final @Nullable BigDecimal min;
+    private final @Nullable BigDecimal max;
+    private final @Nullable LookupTable lookupTable;
+
+    private ParameterEncoder(ParameterItem parameterItem, boolean signed) {
+        this.registers = parameterItem.getRegisters().stream().mapToInt(Integer::intValue).toArray();
+        this.signed = signed;
+        this.offset = parameterItem.getOffset() == null ? BigDecimal.ZERO : parameterItem.getOffset();
+        this.scale = parameterItem.getScale() == null ? BigDecimal.ONE : parameterItem.getScale();
+        this.unit = resolveUnit(parameterItem.getUom());
+        this.lookupTable = ChannelUtils.hasLookup(parameterItem) ? parameterItem.getLookupTable() : null;
+
+        Validation validation = parameterItem.getValidation();
+        this.min = validation == null || validation.getMin() == null ? null : BigDecimal.valueOf(validation.getMin());
+        this.max = validation == null || validation.getMax() == null ? null : BigDecimal.valueOf(validation.getMax());
+    }
+
+    /**
+     * @return the encoder for the parameter or null if its rule can not be written
+     */
+    public static @Nullable ParameterEncoder compile(ParameterItem parameterItem) {
+        List<Integer> registers = parameterItem.getRegisters();
+        Integer rule = parameterItem.getRule();
+        if (rule == null || registers == null || registers.isEmpty()) {
+            LOGGER.debug("Unable to encode parameter {} without rule or registers", parameterItem.getName());
+            return null;
+        }
+
+        return switch (rule) {
+            case 1, 3 -> new ParameterEncoder(parameterItem, false);
+            case 2, 4 -> new ParameterEncoder(parameterItem, true);
+            default -> {
+                LOGGER.warn("Parameter {} can not be written, rule {} is not numeric", parameterItem.getName(), rule);
+                yield null;
+            }
+        };
+    }
+
+    private static @Nullable Unit<?> resolveUnit(String uom) {
+        if (StringUtils.isEmpty(uom)) {
+            return null;
+        }
+        try {
+            return ChannelUtils.getUnitFromDefinition(uom);
+        } catch (MeasurementParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the registers to write, least significant first
+     */
+    public int[] getRegisters() {
+        return registers;
+    }
+
+    /**
+     * @return the values of the registers, in the same order as {@link #getRegisters()}, or null if the command is
+     *         not a number nor a label of the lookup, is outside the validation range of the parameter or does not fit
+     *         in its registers
+     */
+    public short @Nullable [] encode(Command command) {
+        BigDecimal value = lookupTable != null ? toLookupKey(command) : toBigDecimal(command);
+        if (value == null) {
+            LOGGER.debug("Unable to write command {}, it is not a number nor a label of the lookup", command);
+            return null;
+        }
+
+        if ((min != null && value.compareTo(min) < 0) || (max != null && value.compareTo(max) > 0)) {
+            LOGGER.warn("Unable to write {}, it is outside of the range {} to {}", value, min, max);
+            return null;
+        }
+
+        // The keys of a lookup are the raw values, the scale and offset do not apply to them
+        BigInteger rawValue = lookupTable != null ? value.toBigIntegerExact()
+                : value.divide(scale, MathContext.DECIMAL64).add(offset).setScale(0, RoundingMode.HALF_UP)
+                        .toBigIntegerExact();
+        int bits = registers.length * Short.SIZE;
+        if (rawValue.bitLength() > (signed ? bits - 1 : bits) || (!signed && rawValue.signum() < 0)) {
+            LOGGER.warn("Unable to write {}, it does not fit in {} registers", value, registers.length);
+            return null;
+        }
+
+        short[] values = new short[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            values[i] = rawValue.shiftRight(i * Short.SIZE).shortValue();
+        }
+        return values;
+    }
+
+    private @Nullable BigDecimal toLookupKey(Command command) {
+        LookupTable lookupTable = this.lookupTable;
+        if (lookupTable != null && command instanceof StringType stringType) {
+            Integer key = lookupTable.keyOf(stringType.toString());
+            return key == null ? null : BigDecimal.valueOf(key);
+        } else if (command instanceof DecimalType decimalType) {
+            // A key can be commanded as well, as long as it is a whole number
+            BigDecimal key = decimalType.toBigDecimal();
+            return key.stripTrailingZeros().scale() <= 0 ? key : null;
+        }
+        return null;
+    }
+
+    private @Nullable BigDecimal toBigDecimal(Command command) {
+        if (command instanceof QuantityType<?> quantityType) {
+            Unit<?> unit = this.unit;
+            if (unit == null)
+                return quantityType.toBigDecimal();
+
+            QuantityType<?> converted = quantityType.toUnit(unit);
+            return converted == null ? null : converted.toBigDecimal();
+        } else if (command instanceof DecimalType decimalType) {
+            return decimalType.toBigDecimal();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.updater.ParameterDecoder;
+import org.openhab.binding.solarman.internal.updater.SolarmanChannelUpdater;
+import org.openhab.binding.solarman.internal.updater.SolarmanChannelUpdater.StateUpdater;
+import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanChannelWriter} handles the commands sent to writable channels.
+ * <p>
+ * The state the command stands for is published right away, so rules and UIs see it without waiting for the write
+ * or the next poll. Once the {@link SolarmanRegisterWriter} wrote the registers and read them back, the state is
+ * reconciled with what the inverter actually holds: a value the inverter adjusted or ignored is published instead,
+ * and when the registers could neither be written nor read back the state published by the last poll is restored.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanChannelWriter {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanChannelWriter.class);
+
+    private final SolarmanRegisterWriter solarmanRegisterWriter;
+    private final StateUpdater stateUpdater;
+    private final Map<ChannelUID, WritableParameter> writableParameters = new HashMap<>();
+    // The last state of the writable channels published by the polls, restored when a write fails
+    private final Map<ChannelUID, State> polledStates = new ConcurrentHashMap<>();
+
+    /**
+     * @param paramToChannelMapping - the channels of the thing, only the ones of writable parameters accept commands
+     * @param stateUpdater          - called with the state of the channels commanded
+     */
+    public SolarmanChannelWriter(SolarmanRegisterWriter solarmanRegisterWriter,
+                                 Map<ParameterItem, ChannelUID> paramToChannelMapping, StateUpdater stateUpdater) {
+        this.solarmanRegisterWriter = solarmanRegisterWriter;
+        this.stateUpdater = stateUpdater;
+        paramToChannelMapping.forEach((parameterItem, channelUID) -> {
+            if (!parameterItem.isWritable())
+                return;
+
+            ParameterEncoder parameterEncoder = ParameterEncoder.compile(parameterItem);
+            ParameterDecoder parameterDecoder = ParameterDecoder.compile(parameterItem);
+            if (parameterEncoder != null && parameterDecoder != null)
+                writableParameters.put(channelUID, new WritableParameter(parameterEncoder, parameterDecoder));
+        });
+    }
+
+    /**
+     * Wraps the state updater of the {@link SolarmanChannelUpdater}, to know the state of the writable channels
+     * before they are commanded
+     */
+    public StateUpdater trackPolledStates(StateUpdater stateUpdater) {
+        return (channelUID, state) -> {
+            if (writableParameters.containsKey(channelUID))
+                polledStates.put(channelUID, state);
+            stateUpdater.updateState(channelUID, state);
+        };
+    }
+
+    public boolean isWritable(ChannelUID channelUID) {
+        return writableParameters.containsKey(channelUID);
+    }
+
+    /**
+     * Publishes the state of the command, then writes it and reconciles the state with the registers read back
+     *
+     * @return a future completed once the state is reconciled, null if the channel is not writable or the command
+     *         can not be written to it
+     */
+    public @Nullable CompletableFuture<WriteResult> handleCommand(ChannelUID channelUID, Command command) {
+        WritableParameter writableParameter = writableParameters.get(channelUID);
+        if (writableParameter == null)
+            return null;
+
+        ParameterEncoder parameterEncoder = writableParameter.parameterEncoder();
+        short[] values = parameterEncoder.encode(command);
+        if (values == null)
+            return null;
+
+        // Decoded from the registers to write, so the state is rounded like the value the inverter will hold
+        State optimisticState = writableParameter.decode(parameterEncoder.getRegisters(), values);
+        if (optimisticState != null)
+            stateUpdater.updateState(channelUID, optimisticState);
+
+        return solarmanRegisterWriter.write(parameterEncoder.getRegisters(), values)
+                .whenComplete((writeResult, error) -> {
+                    if (error != null) {
+                        LOGGER.warn("Unable to write {} to channel {}: {}", command, channelUID.getId(),
+                                error.getMessage());
+                        restorePolledState(channelUID);
+                    } else {
+                        reconcile(channelUID, command, writableParameter, optimisticState, writeResult);
+                    }
+                });
+    }
+
+    private void reconcile(ChannelUID channelUID, Command command, WritableParameter writableParameter,
+                           @Nullable State optimisticState, WriteResult writeResult) {
+        ParameterDecoder parameterDecoder = writableParameter.parameterDecoder();
+        if (writeResult.writeResult() != ReadResult.SUCCESS)
+            LOGGER.warn("Unable to write {} to channel {}: {}", command, channelUID.getId(),
+                    writeResult.writeResult());
+
+        RegisterBank readBack = writeResult.readBack();
+        State actualState;
+        synchronized (readBack) {
+            actualState = parameterDecoder.canDecode(readBack) ? parameterDecoder.decode(readBack) : null;
+        }
+
+        if (actualState == null) {
+            // Nothing to compare with, the next poll tells whether the optimistic state was right
+            if (writeResult.writeResult() != ReadResult.SUCCESS)
+                restorePolledState(channelUID);
+            return;
+        }
+
+        if (actualState.equals(optimisticState)) {
+            LOGGER.debug("Channel {} was written and read back as {}", channelUID.getId(), actualState);
+        } else if (writeResult.writeResult() == ReadResult.SUCCESS) {
+            LOGGER.info("Channel {} was written with {} but reads back as {}", channelUID.getId(), command,
+                    actualState);
+        }
+        // Even when verified, as a poll that read the registers before they were written may have published the
+        // previous state in the meantime
+        stateUpdater.updateState(channelUID, actualState);
+    }
+
+    private void restorePolledState(ChannelUID channelUID) {
+        State polledState = polledStates.get(channelUID);
+        if (polledState != null)
+            stateUpdater.updateState(channelUID, polledState);
+    }
+
+    public void dispose() {
+        solarmanRegisterWriter.dispose();
+    }
+
+    private record WritableParameter(ParameterEncoder parameterEncoder, ParameterDecoder parameterDecoder) {
+
+        private @Nullable State decode(int[] registers, short[] values) {
+            RegisterBank registerBank = new RegisterBank();
+            for (int i = 0; i < registers.length; i++) {
+                registerBank.put(registers[i], values[i]);
+            }
+            return parameterDecoder.decode(registerBank);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnection;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
+import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SolarmanRegisterWriter} writes the registers of the commands sent to writable channels.
+ * <p>
+ * Commands are not written right away: the ones arriving within the coalescing window of the first one are merged,
+ * the last value sent to a register winning, and the registers are written with as few Write Multiple Registers
+ * requests as there are runs of contiguous registers. The requests go through the connection of the connector, so with
+ * a persistent connection they are sent in between the requests of the polls instead of over a new socket.
+ * <p>
+ * Once written, the runs are read back on the same connection, so the state of the channels can be checked without
+ * waiting for the next poll. Runs the logger did not answer to are not read back, as that would only wait for another
+ * timeout.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanRegisterWriter {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanRegisterWriter.class);
+    private static final byte READ_HOLDING_REGISTERS = 0x03;
+
+    private final SolarmanLoggerConnector solarmanLoggerConnector;
+    private final SolarmanV5Protocol solarmanV5Protocol;
+    private final ScheduledExecutorService scheduler;
+    private final long coalescingWindowMillis;
+
+    // Guarded by this, the values to write by register, in register order
+    private final TreeMap<Integer, Short> pendingValues = new TreeMap<>();
+    private final List<PendingWrite> pendingWrites = new ArrayList<>();
+    private @Nullable ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param scheduler              - runs the writes once the coalescing window is over, and reads them back
+     * @param coalescingWindowMillis - how long to wait for other commands before writing the registers
+     */
+    public SolarmanRegisterWriter(SolarmanLoggerConnector solarmanLoggerConnector,
+                                  SolarmanV5Protocol solarmanV5Protocol, ScheduledExecutorService scheduler,
+                                  long coalescingWindowMillis) {
+        this.solarmanLoggerConnector = solarmanLoggerConnector;
+        this.solarmanV5Protocol = solarmanV5Protocol;
+        this.scheduler = scheduler;
+        this.coalescingWindowMillis = coalescingWindowMillis;
+    }
+
+    /**
+     * Queues the values to write to the registers, they are written once the coalescing window is over
+     *
+     * @param registers - the registers to write
+     * @param values    - the values of the registers, in the same order
+     * @return a future completed with the outcome of the write and the registers read back
+     */
+    public synchronized CompletableFuture<WriteResult> write(int[] registers, short[] values) {
+        for (int i = 0; i < registers.length; i++) {
+            pendingValues.put(registers[i], values[i]);
+        }
+        PendingWrite pendingWrite = new PendingWrite(registers, new CompletableFuture<>());
+        pendingWrites.add(pendingWrite);
+
+        if (scheduledFlush == null) {
+            try {
+                scheduledFlush = scheduler.schedule(this::flush, coalescingWindowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                pendingValues.clear();
+                pendingWrites.clear();
+                pendingWrite.result().completeExceptionally(e);
+            }
+        }
+        return pendingWrite.result();
+    }
+
+    /**
+     * Drops the writes that were not sent yet
+     */
+    public synchronized void dispose() {
+        ScheduledFuture<?> scheduledFlush = this.scheduledFlush;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        pendingValues.clear();
+        pendingWrites.forEach(pendingWrite -> pendingWrite.result().cancel(false));
+        pendingWrites.clear();
+    }
+
+    private void flush() {
+        SortedMap<Integer, Short> values;
+        List<PendingWrite> writes;
+        synchronized (this) {
+            values = new TreeMap<>(pendingValues);
+            writes = new ArrayList<>(pendingWrites);
+            pendingValues.clear();
+            pendingWrites.clear();
+            scheduledFlush = null;
+        }
+        if (writes.isEmpty())
+            return;
+
+        List<RegisterRun> registerRuns = coalesce(values);
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Writing {} registers of {} commands with {} requests", values.size(), writes.size(),
+                    registerRuns.size());
+
+        SolarmanLoggerConnection solarmanLoggerConnection = solarmanLoggerConnector.acquireConnection();
+        List<CompletableFuture<ReadResult>> writeResults = new ArrayList<>(registerRuns.size());
+        try {
+            for (RegisterRun registerRun : registerRuns) {
+                writeResults.add(solarmanV5Protocol.writeRegistersAsync(solarmanLoggerConnection,
+                        registerRun.firstRegister(), registerRun.values(), true));
+            }
+        } catch (RuntimeException e) {
+            writeResults.add(CompletableFuture.failedFuture(e));
+        }
+
+        // Read back on the scheduler, the responses of a non-blocking connection arrive on the thread of the transport
+        CompletableFuture.allOf(writeResults.toArray(CompletableFuture[]::new)).whenCompleteAsync((ignored, error) -> {
+            try {
+                if (error != null) {
+                    LOGGER.error("Error writing registers", error);
+                    writes.forEach(pendingWrite -> pendingWrite.result().completeExceptionally(error));
+                    return;
+                }
+
+                completeWrites(writes, registerRuns, writeResults, solarmanLoggerConnection);
+            } finally {
+                solarmanLoggerConnector.releaseConnection(solarmanLoggerConnection);
+            }
+        }, scheduler);
+    }
+
+    private void completeWrites(List<PendingWrite> writes, List<RegisterRun> registerRuns,
+                                List<CompletableFuture<ReadResult>> writeResults,
+                                SolarmanLoggerConnection solarmanLoggerConnection) {
+        Map<Integer, ReadResult> registerResults = new HashMap<>();
+        RegisterBank readBack = new RegisterBank();
+        for (int i = 0; i < registerRuns.size(); i++) {
+            RegisterRun registerRun = registerRuns.get(i);
+            ReadResult writeResult = writeResults.get(i).join();
+            for (int register = registerRun.firstRegister(); register <= registerRun.lastRegister(); register++) {
+                registerResults.put(register, writeResult);
+            }
+
+            if (writeResult != ReadResult.NO_RESPONSE)
+                solarmanV5Protocol.readRegisters(solarmanLoggerConnection, READ_HOLDING_REGISTERS,
+                        registerRun.firstRegister(), registerRun.lastRegister(), true, readBack);
+        }
+
+        for (PendingWrite pendingWrite : writes) {
+            ReadResult writeResult = ReadResult.SUCCESS;
+            for (int register : pendingWrite.registers()) {
+                ReadResult registerResult = registerResults.getOrDefault(register, ReadResult.NO_RESPONSE);
+                if (registerResult != ReadResult.SUCCESS) {
+                    writeResult = registerResult;
+                    break;
+                }
+            }
+            pendingWrite.result().complete(new WriteResult(writeResult, readBack));
+        }
+    }
+
+    /**
+     * Splits the registers to write into runs of contiguous registers, each small enough for one request
+     */
+    static List<RegisterRun> coalesce(SortedMap<Integer, Short> values) {
+        List<RegisterRun> registerRuns = new ArrayList<>();
+        int firstRegister = -1;
+        short[] runValues = new short[SolarmanV5Protocol.MAX_WRITE_REGISTERS];
+        int runLength = 0;
+
+        for (Map.Entry<Integer, Short> entry : values.entrySet()) {
+            int register = entry.getKey();
+            if (runLength > 0 && (register != firstRegister + runLength
+                    || runLength == SolarmanV5Protocol.MAX_WRITE_REGISTERS)) {
+                registerRuns.add(new RegisterRun(firstRegister, Arrays.copyOf(runValues, runLength)));
+                runLength = 0;
+            }
+            if (runLength == 0)
+                firstRegister = register;
+            runValues[runLength++] = entry.getValue();
+        }
+
+        if (runLength > 0)
+            registerRuns.add(new RegisterRun(firstRegister, Arrays.copyOf(runValues, runLength)));
+        return registerRuns;
+    }
+
+    /**
+     * @param firstRegister - the first register of the run
+     * @param values        - the values of the contiguous registers starting at the first one
+     */
+    record RegisterRun(int firstRegister, short[] values) {
+
+        int lastRegister() {
+            return firstRegister + values.length - 1;
+        }
+    }
+
+    private record PendingWrite(int[] registers, CompletableFuture<WriteResult> result) {
+    }
+}
@@ -0,0 +1,14 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+
+/**
+ * The {@link WriteResult} tells how writing the registers of a command went, and what the registers hold afterwards.
+ *
+ * @param writeResult - the outcome of the requests writing the registers, the worst one if there were several
+ * @param readBack    - the registers read back once written, missing the ones that could not be read
+ * @author Catalin Sanda - Initial contribution
+ */
+public record WriteResult(ReadResult writeResult, RegisterBank readBack) {
+}
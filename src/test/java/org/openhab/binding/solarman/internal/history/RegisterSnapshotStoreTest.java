@@ -0,0 +1,191 @@
+package org.openhab.binding.solarman.internal.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+
+class RegisterSnapshotStoreTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final long RETENTION_MILLIS = 3_600_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplaysStoredSnapshots() throws Exception {
+        List<Map<Integer, Short>> snapshots = randomSnapshots(50);
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 4096, RETENTION_MILLIS)) {
+            for (int i = 0; i < snapshots.size(); i++) {
+                store.append(START + i * 30_000L, registerBank(snapshots.get(i)));
+            }
+
+            assertEquals(snapshots, replay(store, Long.MIN_VALUE, Long.MAX_VALUE));
+            assertEquals(snapshots.subList(10, 21), replay(store, START + 10 * 30_000L, START + 20 * 30_000L));
+        }
+    }
+
+    @Test
+    void testOnlyStoresChangedRegisters() throws Exception {
+        Map<Integer, Short> registers = new TreeMap<>();
+        for (int register = 0x3c; register < 0x3c + 100; register++) {
+            registers.put(register, (short) register);
+        }
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 4096, RETENTION_MILLIS)) {
+            store.append(START, registerBank(registers));
+        }
+        long fullSnapshotSize = Files.size(singleSegment());
+        Files.delete(singleSegment());
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 4096, RETENTION_MILLIS)) {
+            store.append(START, registerBank(registers));
+            store.append(START + 30_000L, registerBank(registers));
+            registers.put(0x50, (short) (registers.get(0x50) + 1));
+            store.append(START + 60_000L, registerBank(registers));
+        }
+
+        // Length, time and number of registers for the unchanged snapshot, plus a register for the last one
+        assertEquals(fullSnapshotSize + 5 + 7, Files.size(singleSegment()));
+    }
+
+    @Test
+    void testRollsSegmentsOverAndDeletesExpiredOnes() throws Exception {
+        List<Map<Integer, Short>> snapshots = randomSnapshots(200);
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 1024, RETENTION_MILLIS)) {
+            for (int i = 0; i < snapshots.size(); i++) {
+                store.append(START + i * 60_000L, registerBank(snapshots.get(i)));
+            }
+
+            assertFalse(store.getSegments().isEmpty());
+            List<Map<Integer, Short>> replayed = replay(store, Long.MIN_VALUE, Long.MAX_VALUE);
+            // Everything within the retention is kept, older snapshots only while their segment is
+            assertTrue(replayed.size() >= RETENTION_MILLIS / 60_000L);
+            assertTrue(replayed.size() < snapshots.size());
+            assertEquals(snapshots.subList(snapshots.size() - replayed.size(), snapshots.size()), replayed);
+        }
+    }
+
+    @Test
+    void testDeletesExpiredSnapshotsOfSegmentsThatDoNotFillUp() throws Exception {
+        List<Map<Integer, Short>> snapshots = randomSnapshots(600);
+        // Opening the store deletes the snapshots expired by now
+        long start = System.currentTimeMillis() - snapshots.size() * 60_000L;
+        long last = start + (snapshots.size() - 1) * 60_000L;
+        int segmentSize = RegisterSnapshotStore.DEFAULT_SEGMENT_SIZE;
+
+        // The half written before the restart is merged when reopening, without outliving the retention either
+        for (int restart = 0; restart < 2; restart++) {
+            try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, segmentSize, RETENTION_MILLIS)) {
+                for (int i = restart * 300; i < restart * 300 + 300; i++) {
+                    store.append(start + i * 60_000L, registerBank(snapshots.get(i)));
+                }
+            }
+        }
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, segmentSize, RETENTION_MILLIS)) {
+            List<Long> timestamps = new ArrayList<>();
+            store.replay(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, registerBank) -> timestamps.add(timestamp));
+
+            assertEquals(last, timestamps.get(timestamps.size() - 1));
+            assertTrue(timestamps.size() >= RETENTION_MILLIS / 60_000L);
+            assertTrue(timestamps.get(0) >= last - RETENTION_MILLIS - RETENTION_MILLIS / 4,
+                    "Snapshots kept long after the retention");
+        }
+    }
+
+    @Test
+    void testMergesSegmentsWrittenBeforeRestarts() throws Exception {
+        List<Map<Integer, Short>> snapshots = randomSnapshots(30);
+
+        for (int restart = 0; restart < 3; restart++) {
+            try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 1 << 16, Long.MAX_VALUE)) {
+                for (int i = restart * 10; i < restart * 10 + 10; i++) {
+                    store.append(System.currentTimeMillis() - 30 + i, registerBank(snapshots.get(i)));
+                }
+            }
+        }
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 1 << 16, Long.MAX_VALUE)) {
+            assertEquals(1, store.getSegments().size());
+            assertEquals(snapshots, replay(store, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void testIgnoresSnapshotCutShort() throws Exception {
+        List<Map<Integer, Short>> snapshots = randomSnapshots(5);
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 4096, RETENTION_MILLIS)) {
+            for (int i = 0; i < snapshots.size(); i++) {
+                store.append(START + i * 30_000L, registerBank(snapshots.get(i)));
+            }
+        }
+        // A record announcing more bytes than written
+        Files.write(singleSegment(), new byte[] { 0x40, 0x01, 0x02 }, StandardOpenOption.APPEND);
+
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 4096, Long.MAX_VALUE)) {
+            assertEquals(snapshots, replay(store, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    }
+
+    private Path singleSegment() throws IOException {
+        try (var files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<Map<Integer, Short>> replay(RegisterSnapshotStore store, long from, long to)
+            throws IOException {
+        List<Map<Integer, Short>> snapshots = new ArrayList<>();
+        store.replay(from, to, (timestamp, registerBank) -> {
+            Map<Integer, Short> registers = new TreeMap<>();
+            registerBank.forEach(registers::put);
+            snapshots.add(registers);
+        });
+        return snapshots;
+    }
+
+    /**
+     * Snapshots of the same registers, a few of them changing from one snapshot to the next
+     */
+    private static List<Map<Integer, Short>> randomSnapshots(int count) {
+        Random random = new Random(42);
+        Map<Integer, Short> registers = new TreeMap<>();
+        for (int register = 0x3c; register < 0x3c + 80; register++) {
+            registers.put(register, (short) random.nextInt());
+        }
+        registers.put(0x2000, (short) -1);
+
+        List<Map<Integer, Short>> snapshots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 8; j++) {
+                int register = 0x3c + random.nextInt(80);
+                registers.put(register, (short) (registers.get(register) + random.nextInt(200) - 100));
+            }
+            snapshots.add(new TreeMap<>(registers));
+        }
+        return snapshots;
+    }
+
+    private static RegisterBank registerBank(Map<Integer, Short> registers) {
+        RegisterBank registerBank = new RegisterBank();
+        registers.forEach(registerBank::put);
+        return registerBank;
+    }
+}
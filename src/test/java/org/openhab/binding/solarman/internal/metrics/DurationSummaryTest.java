@@ -0,0 +1,31 @@
+package org.openhab.binding.solarman.internal.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+import org.junit.jupiter.api.Test;
+
+class DurationSummaryTest {
+    @Test
+    void testHandsEveryDurationToListeners() {
+        PollMetrics pollMetrics = new PollMetrics();
+        pollMetrics.recordPoll(100, true);
+
+        List<Long> durations = new CopyOnWriteArrayList<>();
+        LongConsumer listener = durations::add;
+        pollMetrics.getPollDuration().addListener(listener);
+        pollMetrics.recordPoll(250, true);
+        pollMetrics.recordPoll(40, false);
+        pollMetrics.getPollDuration().removeListener(listener);
+        pollMetrics.recordPoll(70, true);
+
+        assertEquals(List.of(250L, 40L), durations);
+        assertEquals(4, pollMetrics.getPollDuration().getCount());
+        assertEquals(460, pollMetrics.getPollDuration().getTotalMillis());
+        assertEquals(70, pollMetrics.getPollDuration().getLastMillis());
+        assertEquals(1, pollMetrics.getFailedPolls());
+    }
+}
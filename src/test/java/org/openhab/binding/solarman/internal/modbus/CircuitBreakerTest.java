@@ -0,0 +1,70 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(now::get);
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.recordFailure();
+        }
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.recordSuccess();
+
+        // The success starts the count over
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.recordFailure();
+        }
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void testLetsSingleProbeThroughOnceOpenIntervalIsOver() {
+        open();
+
+        now.addAndGet(CircuitBreaker.MIN_OPEN_MILLIS);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        circuitBreaker.recordSuccess();
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void testOpenIntervalGrowsWithFailedProbes() {
+        open();
+
+        // The first interval lasts between half and the whole minimum interval
+        now.addAndGet(CircuitBreaker.MIN_OPEN_MILLIS / 2 - 1);
+        assertFalse(circuitBreaker.tryAcquire());
+        now.addAndGet(CircuitBreaker.MIN_OPEN_MILLIS / 2 + 1);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.recordFailure();
+
+        // Twice as long after a failed probe
+        now.addAndGet(CircuitBreaker.MIN_OPEN_MILLIS - 1);
+        assertFalse(circuitBreaker.tryAcquire());
+        now.addAndGet(CircuitBreaker.MIN_OPEN_MILLIS + 1);
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.recordFailure();
+        }
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+}
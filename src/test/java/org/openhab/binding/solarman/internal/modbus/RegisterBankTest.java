@@ -0,0 +1,58 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RegisterBankTest {
+    @Test
+    void testPutFromBuffer() {
+        RegisterBank registerBank = new RegisterBank();
+        byte[] buffer = {(byte) 0xAA, (byte) 0x00, (byte) 0x0A, (byte) 0xFF, (byte) 0xFF};
+
+        registerBank.put(0xFF, buffer, 1, 2);
+
+        assertEquals(2, registerBank.size());
+        assertEquals((short) 0x000A, registerBank.get(0xFF));
+        assertEquals((short) 0xFFFF, registerBank.get(0x100));
+        assertTrue(registerBank.containsAll(List.of(0xFF, 0x100)));
+        assertFalse(registerBank.contains(0xFE));
+        assertFalse(registerBank.contains(0x101));
+    }
+
+    @Test
+    void testOverwriteDoesNotChangeSize() {
+        RegisterBank registerBank = new RegisterBank();
+
+        registerBank.put(0x10, (short) 1);
+        registerBank.put(0x10, (short) 2);
+
+        assertEquals(1, registerBank.size());
+        assertEquals((short) 2, registerBank.get(0x10));
+    }
+
+    @Test
+    void testClear() {
+        RegisterBank registerBank = new RegisterBank();
+        registerBank.put(0x10, (short) 1);
+        registerBank.put(0xFFFF, (short) 2);
+
+        registerBank.clear();
+
+        assertTrue(registerBank.isEmpty());
+        assertFalse(registerBank.contains(0x10));
+        assertFalse(registerBank.contains(0xFFFF));
+        assertFalse(registerBank.containsAll(List.of(0x10)));
+    }
+
+    @Test
+    void testOutOfRangeRegisters() {
+        RegisterBank registerBank = new RegisterBank();
+
+        assertFalse(registerBank.contains(-1));
+        assertFalse(registerBank.contains(0x10000));
+        assertThrows(IndexOutOfBoundsException.class, () -> registerBank.put(0x10000, (short) 1));
+    }
+}
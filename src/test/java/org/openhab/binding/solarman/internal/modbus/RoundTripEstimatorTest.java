@@ -0,0 +1,46 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RoundTripEstimatorTest {
+    @Test
+    void testMaxTimeoutUntilFirstSample() {
+        RoundTripEstimator roundTripEstimator = new RoundTripEstimator();
+
+        assertEquals(RoundTripEstimator.MAX_TIMEOUT_MILLIS, roundTripEstimator.getTimeoutMillis());
+    }
+
+    @Test
+    void testTimeoutFollowsResponseTimes() {
+        RoundTripEstimator roundTripEstimator = new RoundTripEstimator();
+
+        // 1000 ms plus four times the 500 ms initial variation
+        roundTripEstimator.addSample(1000);
+        assertEquals(3000, roundTripEstimator.getTimeoutMillis());
+
+        for (int i = 0; i < 50; i++) {
+            roundTripEstimator.addSample(1000);
+        }
+        assertEquals(RoundTripEstimator.MIN_TIMEOUT_MILLIS, roundTripEstimator.getTimeoutMillis());
+
+        roundTripEstimator.addSample(60_000);
+        assertEquals(RoundTripEstimator.MAX_TIMEOUT_MILLIS, roundTripEstimator.getTimeoutMillis());
+    }
+
+    @Test
+    void testTimeoutDoublesAfterTimeout() {
+        RoundTripEstimator roundTripEstimator = new RoundTripEstimator();
+        for (int i = 0; i < 50; i++) {
+            roundTripEstimator.addSample(200);
+        }
+
+        roundTripEstimator.timedOut();
+        assertEquals(2 * RoundTripEstimator.MIN_TIMEOUT_MILLIS, roundTripEstimator.getTimeoutMillis());
+
+        roundTripEstimator.timedOut();
+        roundTripEstimator.timedOut();
+        assertEquals(RoundTripEstimator.MAX_TIMEOUT_MILLIS, roundTripEstimator.getTimeoutMillis());
+    }
+}
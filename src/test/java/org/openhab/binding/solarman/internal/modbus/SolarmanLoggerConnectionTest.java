@@ -0,0 +1,236 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
+
+class SolarmanLoggerConnectionTest {
+    private static final long SERIAL_NUMBER = 1234567890L;
+
+    private final SolarmanV5Protocol solarmanV5Protocol = new SolarmanV5Protocol(
+            new SolarmanLoggerConfiguration("127.0.0.1", 8899, String.valueOf(SERIAL_NUMBER), "deye_sg04lp3", 60,
+                    null));
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private SolarmanLoggerSimulator simulator;
+    private SolarmanNioTransport solarmanNioTransport;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        simulator = register(SolarmanLoggerSimulator.forDefinition("deye_sg04lp3", SERIAL_NUMBER));
+        solarmanNioTransport = register(new SolarmanNioTransport(Runnable::run));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+    }
+
+    @Test
+    void testReadsRegistersOverBlockingConnection() throws Exception {
+        SolarmanLoggerConnection connection = blockingConnection(simulator);
+        RegisterBank registerBank = new RegisterBank();
+
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, registerBank));
+        for (int register = 0x3c; register <= 0x4f; register++) {
+            assertEquals(simulator.getRegister(0x03, register), registerBank.get(register));
+        }
+
+        LoggerMetrics loggerMetrics = connection.getLoggerMetrics();
+        assertEquals(1, loggerMetrics.getRequests());
+        assertEquals(36, loggerMetrics.getBytesSent());
+        // V5 header and trailer, Modbus header and CRC, 20 registers
+        assertEquals(25 + 2 + 3 + 2 + 20 * 2, loggerMetrics.getBytesReceived());
+        assertEquals(1, loggerMetrics.getRoundTripTime().getCount());
+    }
+
+    @Test
+    void testReadsRegistersOverNioConnection() throws Exception {
+        SolarmanLoggerConnection connection = nioConnection(simulator, 4);
+        RegisterBank registerBank = new RegisterBank();
+
+        List<CompletableFuture<ReadResult>> readResults = List.of(
+                readAsync(connection, 0x3c, 0x4f, registerBank), readAsync(connection, 0x50, 0x5f, registerBank),
+                readAsync(connection, 0x60, 0x6f, registerBank));
+        for (CompletableFuture<ReadResult> readResult : readResults) {
+            assertEquals(ReadResult.SUCCESS, readResult.get(10, TimeUnit.SECONDS));
+        }
+        for (int register = 0x3c; register <= 0x6f; register++) {
+            assertEquals(simulator.getRegister(0x03, register), registerBank.get(register));
+        }
+    }
+
+    @Test
+    void testPipelinesMoreRequestsThanTheWriteBufferHolds() throws Exception {
+        SolarmanLoggerConnection connection = nioConnection(simulator, 64);
+        RegisterBank registerBank = new RegisterBank();
+
+        List<CompletableFuture<ReadResult>> readResults = new ArrayList<>();
+        for (int register = 0x3c; register < 0x3c + 48; register++) {
+            readResults.add(readAsync(connection, register, register, registerBank));
+        }
+        for (CompletableFuture<ReadResult> readResult : readResults) {
+            assertEquals(ReadResult.SUCCESS, readResult.get(10, TimeUnit.SECONDS));
+        }
+        for (int register = 0x3c; register < 0x3c + 48; register++) {
+            assertEquals(simulator.getRegister(0x03, register), registerBank.get(register));
+        }
+    }
+
+    @Test
+    void testReassemblesSplitResponses() throws Exception {
+        simulator.setSplitResponses(true);
+
+        assertEquals(ReadResult.SUCCESS, read(blockingConnection(simulator), 0x3c, 0x4f, new RegisterBank()));
+        assertEquals(ReadResult.SUCCESS, read(nioConnection(simulator, 1), 0x3c, 0x4f, new RegisterBank()));
+    }
+
+    @Test
+    void testReportsModbusExceptions() throws Exception {
+        simulator.addModbusException(0x3c, 0x02);
+
+        assertEquals(ReadResult.MODBUS_EXCEPTION, read(blockingConnection(simulator), 0x3c, 0x4f,
+                new RegisterBank()));
+        assertEquals(ReadResult.MODBUS_EXCEPTION, read(nioConnection(simulator, 1), 0x3c, 0x4f,
+                new RegisterBank()));
+    }
+
+    @Test
+    void testRejectsResponsesForAnotherSerialNumber() throws Exception {
+        simulator.setSerialNumber(SERIAL_NUMBER + 1);
+
+        assertEquals(ReadResult.INVALID_RESPONSE, read(blockingConnection(simulator), 0x3c, 0x4f,
+                new RegisterBank()));
+    }
+
+    @Test
+    void testReconnectsWhenConnectionIsDropped() throws Exception {
+        SolarmanLoggerConnection connection = blockingConnection(simulator);
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, new RegisterBank()));
+
+        simulator.dropNextConnections(1);
+
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, new RegisterBank()));
+        assertEquals(2, simulator.getConnectionCount());
+        assertEquals(3, simulator.getRequestCount());
+        assertEquals(1, connection.getLoggerMetrics().getReconnects());
+    }
+
+    @Test
+    void testTimesOutWhenLoggerIsTooSlow() throws Exception {
+        // The timeout closes in on the response time once the logger answered
+        SolarmanLoggerConnection connection = blockingConnection(simulator);
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, new RegisterBank()));
+
+        simulator.setResponseDelayMillis(RoundTripEstimator.MIN_TIMEOUT_MILLIS + 500);
+
+        long start = System.nanoTime();
+        assertEquals(ReadResult.NO_RESPONSE, read(connection, 0x3c, 0x4f, new RegisterBank()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis >= RoundTripEstimator.MIN_TIMEOUT_MILLIS);
+        assertTrue(elapsedMillis < RoundTripEstimator.MIN_TIMEOUT_MILLIS + 500);
+        assertEquals(1, connection.getLoggerMetrics().getTimeouts());
+    }
+
+    @Test
+    void testPipelinedPollTimingOutCountsAsOneFailure() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        SolarmanLoggerConnection connection = nioConnection(simulator, 4, circuitBreaker);
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, new RegisterBank()));
+
+        simulator.setResponseDelayMillis(RoundTripEstimator.MIN_TIMEOUT_MILLIS + 500);
+        List<CompletableFuture<ReadResult>> readResults = new ArrayList<>();
+        for (int firstReg = 0x10; firstReg < 0x70; firstReg += 0x10) {
+            readResults.add(readAsync(connection, firstReg, firstReg + 0x0f, new RegisterBank()));
+        }
+        for (CompletableFuture<ReadResult> readResult : readResults) {
+            assertEquals(ReadResult.NO_RESPONSE, readResult.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, connection.getLoggerMetrics().getTimeouts());
+
+        // The requests queued behind the one that timed out are not held against the logger
+        assertFalse(circuitBreaker.isOpen());
+        simulator.setResponseDelayMillis(0);
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, new RegisterBank()));
+    }
+
+    @Test
+    void testPollsManyLoggersOverNioTransport() throws Exception {
+        List<CompletableFuture<ReadResult>> readResults = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SolarmanLoggerSimulator loggerSimulator = register(new SolarmanLoggerSimulator(SERIAL_NUMBER));
+            loggerSimulator.setResponseDelayMillis(50);
+            readResults.add(readAsync(nioConnection(loggerSimulator, 1), 0x3c, 0x4f, new RegisterBank()));
+        }
+
+        for (CompletableFuture<ReadResult> readResult : readResults) {
+            assertEquals(ReadResult.SUCCESS, readResult.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testSharesConnectionBetweenThingsWithoutPersistentConnection() throws Exception {
+        SolarmanLoggerConfiguration configuration = new SolarmanLoggerConfiguration(simulator.getHostname(),
+                simulator.getPort(), String.valueOf(SERIAL_NUMBER), "deye_sg04lp3", 60, null);
+        configuration.persistentConnection = false;
+        SolarmanLoggerConnector connector = new SolarmanLoggerConnector(configuration);
+
+        // Two things polling at once go through the same socket, one request after the other
+        SolarmanLoggerConnection connection = connector.acquireConnection();
+        assertSame(connection, connector.acquireConnection());
+        RegisterBank registerBank = new RegisterBank();
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x3c, 0x4f, registerBank));
+        assertEquals(ReadResult.SUCCESS, read(connection, 0x50, 0x5f, registerBank));
+        connector.releaseConnection(connection);
+        connector.releaseConnection(connection);
+        assertEquals(1, simulator.getConnectionCount());
+
+        // Closed once no thing uses it anymore, the next poll opens a new socket
+        SolarmanLoggerConnection nextConnection = connector.acquireConnection();
+        assertNotSame(connection, nextConnection);
+        assertEquals(ReadResult.SUCCESS, read(nextConnection, 0x3c, 0x4f, registerBank));
+        connector.releaseConnection(nextConnection);
+        assertEquals(2, simulator.getConnectionCount());
+        connector.dispose();
+    }
+
+    private SolarmanLoggerConnection blockingConnection(SolarmanLoggerSimulator simulator) {
+        return register(new SolarmanLoggerConnection(simulator.getHostname(), simulator.getPort()));
+    }
+
+    private SolarmanLoggerConnection nioConnection(SolarmanLoggerSimulator simulator, int maxInFlightRequests) {
+        return nioConnection(simulator, maxInFlightRequests, new CircuitBreaker());
+    }
+
+    private SolarmanLoggerConnection nioConnection(SolarmanLoggerSimulator simulator, int maxInFlightRequests,
+                                                   CircuitBreaker circuitBreaker) {
+        return register(new SolarmanLoggerConnection(simulator.getHostname(), simulator.getPort(),
+                solarmanNioTransport, maxInFlightRequests, new RoundTripEstimator(), circuitBreaker,
+                new LoggerMetrics()));
+    }
+
+    private ReadResult read(SolarmanLoggerConnection connection, int firstReg, int lastReg,
+                            RegisterBank registerBank) throws Exception {
+        return readAsync(connection, firstReg, lastReg, registerBank).get(10, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<ReadResult> readAsync(SolarmanLoggerConnection connection, int firstReg, int lastReg,
+                                                    RegisterBank registerBank) {
+        return solarmanV5Protocol.readRegistersAsync(connection, (byte) 0x03, firstReg, lastReg, false, registerBank);
+    }
+
+    private <T extends AutoCloseable> T register(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+}
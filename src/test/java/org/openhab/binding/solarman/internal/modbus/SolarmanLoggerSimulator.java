@@ -0,0 +1,347 @@
+package org.openhab.binding.solarman.internal.modbus;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openhab.binding.solarman.internal.DefinitionParser;
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Solarman V5 logger listening on a local port, to exercise the binding without a data logging stick.
+ * <p>
+ * The registers are served from an in-memory bank, which can be filled with the ranges requested by one of the bundled
+ * inverter definitions, and Write Multiple Registers requests update the holding registers. Faults seen on real loggers
+ * can be injected while the simulator is running: slow responses, responses split over several TCP segments, Modbus
+ * exceptions, requests for another serial number and dropped connections. Every fault is deterministic, so timeouts can
+ * be reproduced in tests.
+ * <p>
+ * Each connection is served by a thread of its own, which answers its requests one after the other like a real logger
+ * does, so a few hundred simulators can run side by side to load test the transports.
+ *
+ * @author Catalin Sanda - Initial contribution
+ */
+public class SolarmanLoggerSimulator implements AutoCloseable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(SolarmanLoggerSimulator.class);
+    private static final int MODBUS_REQUEST_OFFSET = 26;
+    private static final int MODBUS_RESPONSE_OFFSET = 25;
+    // Length of the error frame sent by the logger for requests to another serial number
+    private static final int ERROR_RESPONSE_FRAME_LENGTH = 29;
+    private static final long SPLIT_DELAY_MILLIS = 20;
+    private static final int WRITE_MULTIPLE_REGISTERS = 0x10;
+
+    // Function code in the upper half, register in the lower half
+    private final Map<Integer, Short> registers = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> modbusExceptions = new ConcurrentHashMap<>();
+    // Function code in the upper half, first register in the lower half
+    private final Map<Integer, Integer> functionModbusExceptions = new ConcurrentHashMap<>();
+    private final Set<Integer> ignoredWrites = ConcurrentHashMap.newKeySet();
+    private final Set<Socket> clientSockets = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger connectionsToDrop = new AtomicInteger();
+    private final ServerSocket serverSocket;
+
+    private volatile long serialNumber;
+    private volatile long responseDelayMillis = 0;
+    private volatile boolean splitResponses = false;
+    // Second byte of the sequence number, incremented by the logger for every response
+    private int responseCounter = 0;
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface.
+     *
+     * @param serialNumber - the serial number of the simulated logger, requests for another one are rejected
+     */
+    public SolarmanLoggerSimulator(long serialNumber) throws IOException {
+        this.serialNumber = serialNumber;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 512);
+        Thread acceptThread = new Thread(this::acceptConnections, "solarman-simulator-" + getPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Starts a simulator serving every register requested by the given inverter definition, with values that are
+     * random but always the same for a given serial number.
+     */
+    public static SolarmanLoggerSimulator forDefinition(String inverterType, long serialNumber) throws IOException {
+        InverterDefinition inverterDefinition = Objects.requireNonNull(
+                new DefinitionParser().parseDefinition(inverterType));
+        SolarmanLoggerSimulator simulator = new SolarmanLoggerSimulator(serialNumber);
+        Random random = new Random(serialNumber);
+        inverterDefinition.getRequests().forEach(request -> {
+            for (int register = request.getStart(); register <= request.getEnd(); register++) {
+                simulator.setRegister(request.getMbFunctioncode(), register, random.nextInt(0x10000));
+            }
+        });
+        return simulator;
+    }
+
+    public String getHostname() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void setRegister(int functionCode, int register, int value) {
+        registers.put(registerKey(functionCode, register), (short) value);
+    }
+
+    /**
+     * @return the value of the register, 0 for registers that were never set
+     */
+    public short getRegister(int functionCode, int register) {
+        return registers.getOrDefault(registerKey(functionCode, register), (short) 0);
+    }
+
+    /**
+     * Delays every response, to simulate a slow or congested logger. A delay longer than the timeout of the binding
+     * makes the requests time out.
+     */
+    public void setResponseDelayMillis(long responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    /**
+     * Sends every response in two TCP segments, the second one shortly after the first one
+     */
+    public void setSplitResponses(boolean splitResponses) {
+        this.splitResponses = splitResponses;
+    }
+
+    /**
+     * Answers the requests starting at the given register with a Modbus exception, like 0x02 Illegal Data Address
+     */
+    public void addModbusException(int firstRegister, int exceptionCode) {
+        modbusExceptions.put(firstRegister, exceptionCode);
+    }
+
+    /**
+     * Answers the requests with the function code starting at the given register with a Modbus exception, like reads
+     * refused while writes to the same register are accepted
+     */
+    public void addModbusException(int functionCode, int firstRegister, int exceptionCode) {
+        functionModbusExceptions.put(registerKey(functionCode, firstRegister), exceptionCode);
+    }
+
+    public void clearModbusExceptions() {
+        modbusExceptions.clear();
+        functionModbusExceptions.clear();
+    }
+
+    /**
+     * Acknowledges the writes to the register without changing its value, like inverters ignoring settings they do
+     * not accept
+     */
+    public void ignoreWrites(int register) {
+        ignoredWrites.add(register);
+    }
+
+    /**
+     * Changes the serial number of the simulated logger, the requests sent for the previous one are then answered with
+     * the error frame of a serial number mismatch.
+     */
+    public void setSerialNumber(long serialNumber) {
+        this.serialNumber = serialNumber;
+    }
+
+    /**
+     * Closes the connections the next requests arrive on instead of answering them, like loggers dropping idle sockets
+     */
+    public void dropNextConnections(int count) {
+        connectionsToDrop.set(count);
+    }
+
+    /**
+     * @return the number of requests received, including the ones that were not answered
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of connections accepted since the simulator started
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                clientSocket.setTcpNoDelay(true);
+                clientSockets.add(clientSocket);
+                connectionCount.incrementAndGet();
+
+                Thread connectionThread = new Thread(() -> serveConnection(clientSocket),
+                        "solarman-simulator-" + getPort() + "-" + clientSocket.getPort());
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed())
+                    LOGGER.debug("Error accepting connection", e);
+            }
+        }
+    }
+
+    private void serveConnection(Socket clientSocket) {
+        try (clientSocket) {
+            DataInputStream inputStream = new DataInputStream(clientSocket.getInputStream());
+            OutputStream outputStream = clientSocket.getOutputStream();
+            byte[] header = new byte[SolarmanV5Frames.HEADER_LENGTH];
+
+            while (true) {
+                inputStream.readFully(header);
+                byte[] reqFrame = new byte[SolarmanV5Frames.frameLength(header)];
+                System.arraycopy(header, 0, reqFrame, 0, header.length);
+                inputStream.readFully(reqFrame, header.length, reqFrame.length - header.length);
+                requestCount.incrementAndGet();
+
+                if (connectionsToDrop.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+                    LOGGER.debug("Dropping connection instead of answering request");
+                    return;
+                }
+
+                if (responseDelayMillis > 0)
+                    Thread.sleep(responseDelayMillis);
+
+                sendResponse(outputStream, buildResponseFrame(reqFrame));
+            }
+        } catch (SocketException | EOFException e) {
+            // Closed by the client or by the simulator
+        } catch (IOException e) {
+            LOGGER.debug("Error serving connection", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clientSockets.remove(clientSocket);
+        }
+    }
+
+    private void sendResponse(OutputStream outputStream, byte[] respFrame) throws IOException, InterruptedException {
+        if (splitResponses) {
+            int half = respFrame.length / 2;
+            outputStream.write(respFrame, 0, half);
+            outputStream.flush();
+            Thread.sleep(SPLIT_DELAY_MILLIS);
+            outputStream.write(respFrame, half, respFrame.length - half);
+        } else {
+            outputStream.write(respFrame);
+        }
+        outputStream.flush();
+    }
+
+    private byte[] buildResponseFrame(byte[] reqFrame) {
+        long requestSerial = (reqFrame[7] & 0xFFL) | ((reqFrame[8] & 0xFFL) << 8) | ((reqFrame[9] & 0xFFL) << 16)
+                | ((reqFrame[10] & 0xFFL) << 24);
+        if (requestSerial != serialNumber) {
+            return buildFrame(reqFrame, new byte[ERROR_RESPONSE_FRAME_LENGTH - MODBUS_RESPONSE_OFFSET - 2], true);
+        }
+
+        int functionCode = reqFrame[MODBUS_REQUEST_OFFSET + 1] & 0xFF;
+        int firstRegister = ((reqFrame[MODBUS_REQUEST_OFFSET + 2] & 0xFF) << 8)
+                | (reqFrame[MODBUS_REQUEST_OFFSET + 3] & 0xFF);
+        int registerCount = ((reqFrame[MODBUS_REQUEST_OFFSET + 4] & 0xFF) << 8)
+                | (reqFrame[MODBUS_REQUEST_OFFSET + 5] & 0xFF);
+
+        Integer exceptionCode = modbusExceptions.getOrDefault(firstRegister,
+                functionModbusExceptions.get(registerKey(functionCode, firstRegister)));
+        byte[] modbusFrame;
+        if (exceptionCode != null) {
+            modbusFrame = new byte[5];
+            modbusFrame[1] = (byte) (functionCode | 0x80);
+            modbusFrame[2] = exceptionCode.byteValue();
+        } else if (functionCode == WRITE_MULTIPLE_REGISTERS) {
+            // Written to the holding registers, the response echoes the starting address and quantity of registers
+            for (int i = 0; i < registerCount; i++) {
+                int valueOffset = MODBUS_REQUEST_OFFSET + 7 + i * 2;
+                if (!ignoredWrites.contains(firstRegister + i))
+                    setRegister(0x03, firstRegister + i, ((reqFrame[valueOffset] & 0xFF) << 8)
+                            | (reqFrame[valueOffset + 1] & 0xFF));
+            }
+            modbusFrame = new byte[6 + 2];
+            System.arraycopy(reqFrame, MODBUS_REQUEST_OFFSET + 1, modbusFrame, 1, 5);
+        } else {
+            modbusFrame = new byte[3 + registerCount * 2 + 2];
+            modbusFrame[1] = (byte) functionCode;
+            modbusFrame[2] = (byte) (registerCount * 2);
+            for (int i = 0; i < registerCount; i++) {
+                short value = getRegister(functionCode, firstRegister + i);
+                modbusFrame[3 + i * 2] = (byte) (value >> 8);
+                modbusFrame[4 + i * 2] = (byte) value;
+            }
+        }
+        modbusFrame[0] = reqFrame[MODBUS_REQUEST_OFFSET];
+        int crc = CRC16Modbus.calculate(modbusFrame, 0, modbusFrame.length - 2);
+        modbusFrame[modbusFrame.length - 2] = (byte) crc;
+        modbusFrame[modbusFrame.length - 1] = (byte) (crc >> 8);
+
+        return buildFrame(reqFrame, modbusFrame, false);
+    }
+
+    /**
+     * Wraps the Modbus frame in a V5 response frame, or in the error frame sent for a serial number mismatch
+     */
+    private byte[] buildFrame(byte[] reqFrame, byte[] modbusFrame, boolean error) {
+        int payloadLength = MODBUS_RESPONSE_OFFSET - SolarmanV5Frames.HEADER_LENGTH + modbusFrame.length;
+        byte[] frame = new byte[SolarmanV5Frames.HEADER_LENGTH + payloadLength + SolarmanV5Frames.TRAILER_LENGTH];
+        long serialNumber = this.serialNumber;
+
+        frame[0] = SolarmanV5Frames.FRAME_START;
+        frame[1] = (byte) payloadLength;
+        frame[2] = (byte) (payloadLength >> 8);
+        frame[3] = (byte) 0x10;
+        frame[4] = (byte) 0x15;
+        frame[5] = reqFrame[5];
+        synchronized (this) {
+            frame[6] = (byte) responseCounter++;
+        }
+        frame[7] = (byte) serialNumber;
+        frame[8] = (byte) (serialNumber >> 8);
+        frame[9] = (byte) (serialNumber >> 16);
+        frame[10] = (byte) (serialNumber >> 24);
+        frame[11] = (byte) 0x02;
+        // Status, 1 when the request was forwarded to the inverter
+        frame[12] = (byte) (error ? 0x00 : 0x01);
+        System.arraycopy(modbusFrame, 0, frame, MODBUS_RESPONSE_OFFSET, modbusFrame.length);
+
+        int checksum = 0;
+        for (int i = 1; i < frame.length - 2; i++) {
+            checksum += frame[i] & 0xFF;
+        }
+        frame[frame.length - 2] = (byte) checksum;
+        frame[frame.length - 1] = (byte) 0x15;
+        return frame;
+    }
+
+    private static int registerKey(int functionCode, int register) {
+        return (functionCode << 16) | (register & 0xFFFF);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket clientSocket : clientSockets) {
+            clientSocket.close();
+        }
+    }
+}
@@ -3,9 +3,12 @@ package org.openhab.binding.solarman.internal.modbus;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,6 +16,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.metrics.LoggerMetrics;
 
 @ExtendWith(MockitoExtension.class)
 class SolarmanV5ProtocolTest {
@@ -23,9 +27,12 @@ class SolarmanV5ProtocolTest {
     SolarmanLoggerConnection solarmanLoggerConnection;
 
     private SolarmanV5Protocol solarmanV5Protocol;
+    private final LoggerMetrics loggerMetrics = new LoggerMetrics();
 
     @BeforeEach
     void setUp() {
+        lenient().when(solarmanLoggerConnection.getLoggerMetrics()).thenReturn(loggerMetrics);
+
         SolarmanLoggerConfiguration loggerConfiguration = new SolarmanLoggerConfiguration("192.168.1.1", 8899,
                 "1234567890", "sg04lp3", 60, null);
 
@@ -34,7 +41,7 @@ class SolarmanV5ProtocolTest {
 
     @Test
     void testbuildSolarmanV5Frame() {
-        byte[] requestFrame = solarmanV5Protocol.buildSolarmanV5Frame((byte) 0x03, 0x0000, 0x0020);
+        byte[] requestFrame = solarmanV5Protocol.buildSolarmanV5Frame(0, (byte) 0x03, 0x0000, 0x0020);
 
         byte[] expectedFrame = {(byte) 0xA5, (byte) 0x17, (byte) 0x00, (byte) 0x10, (byte) 0x45, (byte) 0x00,
                 (byte) 0x00, (byte) 0xD2, (byte) 0x02, (byte) 0x96, (byte) 0x49, (byte) 0x02, (byte) 0x00, (byte) 0x00,
@@ -45,6 +52,19 @@ class SolarmanV5ProtocolTest {
         assertArrayEquals(requestFrame, expectedFrame);
     }
 
+    @Test
+    void testbuildSolarmanV5FrameWithSequenceNumber() {
+        byte[] requestFrame = solarmanV5Protocol.buildSolarmanV5Frame(0x12A, (byte) 0x03, 0x0000, 0x0020);
+
+        byte[] expectedFrame = {(byte) 0xA5, (byte) 0x17, (byte) 0x00, (byte) 0x10, (byte) 0x45, (byte) 0x2A,
+                (byte) 0x00, (byte) 0xD2, (byte) 0x02, (byte) 0x96, (byte) 0x49, (byte) 0x02, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0x03, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x21, (byte) 0x85, (byte) 0xD2, (byte) 0xC7, (byte) 0x15};
+
+        assertArrayEquals(requestFrame, expectedFrame);
+    }
+
     @Test
     void testReadRegister0x01() {
         // given
@@ -52,12 +72,13 @@ class SolarmanV5ProtocolTest {
                 hexStringToByteArray("a5000000000000000000000000000000000000000000000000010301000ac84300000015"));
 
         // when
-        Map<Integer, byte[]> regValues = solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 1, 1, true);
+        RegisterBank regValues = new RegisterBank();
+        assertTrue(solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 1, 1, true, regValues));
 
         // then
         assertEquals(1, regValues.size());
-        assertTrue(regValues.containsKey(1));
-        assertEquals("000A", bytesToHex(regValues.get(1)));
+        assertTrue(regValues.contains(1));
+        assertEquals("000A", String.format("%04X", regValues.get(1)));
     }
 
     @Test
@@ -67,14 +88,15 @@ class SolarmanV5ProtocolTest {
                 hexStringToByteArray("a5000000000000000000000000000000000000000000000000010302000a000b13f600000015"));
 
         // when
-        Map<Integer, byte[]> regValues = solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 2, 3, true);
+        RegisterBank regValues = new RegisterBank();
+        assertTrue(solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 2, 3, true, regValues));
 
         // then
         assertEquals(2, regValues.size());
-        assertTrue(regValues.containsKey(2));
-        assertTrue(regValues.containsKey(3));
-        assertEquals("000A", bytesToHex(regValues.get(2)));
-        assertEquals("000B", bytesToHex(regValues.get(3)));
+        assertTrue(regValues.contains(2));
+        assertTrue(regValues.contains(3));
+        assertEquals("000A", String.format("%04X", regValues.get(2)));
+        assertEquals("000B", String.format("%04X", regValues.get(3)));
     }
 
     @Test
@@ -84,14 +106,15 @@ class SolarmanV5ProtocolTest {
                 "a53b0010150007482ee38d020121d0060091010000403e486301032800ffffff160a12162420ffffffffffffffffffffffffffffffffffff0001ffff0001ffff000003e81fa45115"));
 
         // when
-        Map<Integer, byte[]> regValues = solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 0x3c, 0x4f, true);
+        RegisterBank regValues = new RegisterBank();
+        assertTrue(solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 0x3c, 0x4f, true, regValues));
 
         // then
         assertEquals(20, regValues.size());
-        assertTrue(regValues.containsKey(0x3c));
-        assertTrue(regValues.containsKey(0x4f));
-        assertEquals("00FF", bytesToHex(regValues.get(0x3c)));
-        assertEquals("03E8", bytesToHex(regValues.get(0x4f)));
+        assertTrue(regValues.contains(0x3c));
+        assertTrue(regValues.contains(0x4f));
+        assertEquals("00FF", String.format("%04X", regValues.get(0x3c)));
+        assertEquals("03E8", String.format("%04X", regValues.get(0x4f)));
     }
 
     @Test
@@ -101,14 +124,63 @@ class SolarmanV5ProtocolTest {
                 "a5330010150008482ee38d020122d0060091010000403e486301032000010000ffffffffffff0001ffffffffffffffffffff0000ffff0011ffffffff3a005715"));
 
         // when
-        Map<Integer, byte[]> regValues = solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 0x50, 0x5f, true);
+        RegisterBank regValues = new RegisterBank();
+        assertTrue(solarmanV5Protocol.readRegisters(solarmanLoggerConnection, (byte) 0x03, 0x50, 0x5f, true, regValues));
 
         // then
         assertEquals(16, regValues.size());
-        assertTrue(regValues.containsKey(0x50));
-        assertTrue(regValues.containsKey(0x5f));
-        assertEquals("0001", bytesToHex(regValues.get(0x50)));
-        assertEquals("FFFF", bytesToHex(regValues.get(0x5f)));
+        assertTrue(regValues.contains(0x50));
+        assertTrue(regValues.contains(0x5f));
+        assertEquals("0001", String.format("%04X", regValues.get(0x50)));
+        assertEquals("FFFF", String.format("%04X", regValues.get(0x5f)));
+    }
+
+    @Test
+    void testReadRegistersModbusException() {
+        // given an Illegal Data Address exception
+        when(solarmanLoggerConnection.sendRequestAsync(any(), eq(true))).thenReturn(CompletableFuture.completedFuture(
+                hexStringToByteArray("a5130010150000d20296490201000000000000000000000000018302c0f10015")));
+
+        // when
+        RegisterBank regValues = new RegisterBank();
+        ReadResult readResult = solarmanV5Protocol.readRegistersAsync(solarmanLoggerConnection, (byte) 0x03, 0x100,
+                0x110, true, regValues).join();
+
+        // then
+        assertEquals(ReadResult.MODBUS_EXCEPTION, readResult);
+        assertTrue(regValues.isEmpty());
+        assertEquals(1, loggerMetrics.getModbusExceptions());
+    }
+
+    @Test
+    void testReusesRequestFramesOnceAnswered() {
+        List<byte[]> sentFrames = new ArrayList<>();
+        List<CompletableFuture<byte[]>> responses = new ArrayList<>();
+        when(solarmanLoggerConnection.sendRequestAsync(any(), eq(true))).thenAnswer(invocation -> {
+            sentFrames.add(invocation.getArgument(0));
+            CompletableFuture<byte[]> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        });
+        RegisterBank regValues = new RegisterBank();
+
+        // Requests waiting for their response at the same time each own a frame
+        CompletableFuture<ReadResult> first = solarmanV5Protocol.readRegistersAsync(solarmanLoggerConnection,
+                (byte) 0x03, 0x10, 0x11, true, regValues);
+        CompletableFuture<ReadResult> second = solarmanV5Protocol.readRegistersAsync(solarmanLoggerConnection,
+                (byte) 0x03, 0x20, 0x21, true, regValues);
+        assertNotSame(sentFrames.get(0), sentFrames.get(1));
+        responses.forEach(response -> response.complete(new byte[0]));
+        assertEquals(ReadResult.NO_RESPONSE, first.join());
+        assertEquals(ReadResult.NO_RESPONSE, second.join());
+
+        // Once answered, their frames are encoded again for the next requests
+        solarmanV5Protocol.readRegistersAsync(solarmanLoggerConnection, (byte) 0x03, 0x30, 0x31, true, regValues);
+        solarmanV5Protocol.readRegistersAsync(solarmanLoggerConnection, (byte) 0x03, 0x40, 0x41, true, regValues);
+        assertSame(sentFrames.get(1), sentFrames.get(2));
+        assertSame(sentFrames.get(0), sentFrames.get(3));
+        assertEquals(0x30, sentFrames.get(2)[29]);
+        assertEquals(0x40, sentFrames.get(3)[29]);
     }
 
     private static byte[] hexStringToByteArray(String s) {
@@ -119,12 +191,4 @@ class SolarmanV5ProtocolTest {
         }
         return data;
     }
-
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b));
-        }
-        return sb.toString();
-    }
 }
@@ -0,0 +1,142 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.planner.SolarmanPollScheduler.ScheduledPoll;
+
+class SolarmanPollSchedulerTest {
+    private static final long INTERVAL_MILLIS = 5_000;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testPhaseIsStableAndWithinInterval() {
+        for (int i = 0; i < 100; i++) {
+            String key = "solarman:logger:inverter" + i;
+            long phase = SolarmanPollScheduler.phaseOf(key, INTERVAL_MILLIS);
+
+            assertTrue(phase >= 0 && phase < INTERVAL_MILLIS);
+            assertEquals(phase, SolarmanPollScheduler.phaseOf(key, INTERVAL_MILLIS));
+        }
+    }
+
+    @Test
+    void testSpreadsSimilarKeysOverInterval() {
+        int[] buckets = new int[10];
+        for (int i = 0; i < 100; i++) {
+            long phase = SolarmanPollScheduler.phaseOf("solarman:logger:inverter" + i, INTERVAL_MILLIS);
+            buckets[(int) (phase * buckets.length / INTERVAL_MILLIS)]++;
+        }
+
+        for (int bucket : buckets) {
+            assertTrue(bucket > 0 && bucket < 25, "Polls bunched in one part of the interval");
+        }
+    }
+
+    @Test
+    void testSkipsPollWhilePreviousOneIsInProgress() {
+        SolarmanPollScheduler solarmanPollScheduler = new SolarmanPollScheduler(executor, 4);
+        List<CompletableFuture<?>> polls = new ArrayList<>();
+        ScheduledPoll scheduledPoll = scheduledPoll(solarmanPollScheduler, "thing", polls);
+
+        solarmanPollScheduler.trigger(scheduledPoll);
+        solarmanPollScheduler.trigger(scheduledPoll);
+        assertEquals(1, polls.size());
+
+        polls.get(0).complete(null);
+        solarmanPollScheduler.trigger(scheduledPoll);
+        assertEquals(2, polls.size());
+    }
+
+    @Test
+    void testLimitsConcurrentPolls() throws Exception {
+        SolarmanPollScheduler solarmanPollScheduler = new SolarmanPollScheduler(executor, 2);
+        List<CompletableFuture<?>> polls = new ArrayList<>();
+        List<ScheduledPoll> scheduledPolls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            scheduledPolls.add(scheduledPoll(solarmanPollScheduler, "thing" + i, polls));
+            solarmanPollScheduler.trigger(scheduledPolls.get(i));
+        }
+
+        assertEquals(2, polls.size());
+        assertEquals(2, solarmanPollScheduler.getRunningPolls());
+
+        // A waiting poll is not started twice
+        solarmanPollScheduler.trigger(scheduledPolls.get(2));
+        assertEquals(2, polls.size());
+
+        complete(polls, 0);
+        assertEquals(3, polls.size());
+        assertEquals(2, solarmanPollScheduler.getRunningPolls());
+
+        complete(polls, 1);
+        complete(polls, 2);
+        complete(polls, 3);
+        assertEquals(4, polls.size());
+        assertEquals(0, solarmanPollScheduler.getRunningPolls());
+    }
+
+    @Test
+    void testCancelledPollIsNotStarted() throws Exception {
+        SolarmanPollScheduler solarmanPollScheduler = new SolarmanPollScheduler(executor, 1);
+        List<CompletableFuture<?>> polls = new ArrayList<>();
+        ScheduledPoll runningPoll = scheduledPoll(solarmanPollScheduler, "running", polls);
+        ScheduledPoll waitingPoll = scheduledPoll(solarmanPollScheduler, "waiting", polls);
+
+        solarmanPollScheduler.trigger(runningPoll);
+        solarmanPollScheduler.trigger(waitingPoll);
+        waitingPoll.cancel();
+        complete(polls, 0);
+
+        assertEquals(1, polls.size());
+        assertEquals(0, solarmanPollScheduler.getRunningPolls());
+    }
+
+    @Test
+    void testSchedulesPollsAtFixedRate() throws Exception {
+        SolarmanPollScheduler solarmanPollScheduler = new SolarmanPollScheduler(executor, 1);
+        AtomicInteger pollCount = new AtomicInteger();
+
+        ScheduledPoll scheduledPoll = solarmanPollScheduler.schedule("thing", 20, () -> {
+            pollCount.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        Thread.sleep(200);
+        scheduledPoll.cancel();
+
+        assertTrue(pollCount.get() >= 3);
+    }
+
+    private ScheduledPoll scheduledPoll(SolarmanPollScheduler solarmanPollScheduler, String key,
+                                        List<CompletableFuture<?>> polls) {
+        return solarmanPollScheduler.new ScheduledPoll(key, () -> {
+            CompletableFuture<?> poll = new CompletableFuture<>();
+            synchronized (polls) {
+                polls.add(poll);
+            }
+            return poll;
+        });
+    }
+
+    private void complete(List<CompletableFuture<?>> polls, int index) throws Exception {
+        polls.get(index).complete(null);
+        // Waiting polls are started on the executor, wait for it to catch up
+        executor.submit(() -> {
+        }).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,204 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.core.thing.ChannelUID;
+
+class SolarmanPollingPlannerTest {
+    private static final String POLLING_KEY = "solarman:logger:test";
+    // Some time openHAB restarted at
+    private static final long RESTART_TIME = 1_700_000_123_456L;
+    private static final ChannelUID FAST_CHANNEL = new ChannelUID("solarman:logger:test:battery_power");
+    private static final ChannelUID NORMAL_CHANNEL = new ChannelUID("solarman:logger:test:grid_voltage");
+    private static final ChannelUID ONCE_CHANNEL = new ChannelUID("solarman:logger:test:inverter_id");
+    private static final List<Request> AVAILABLE_REQUESTS = List.of(
+            new Request(0x03, 0x10, 0x20),
+            new Request(0x03, 0x40, 0x50));
+
+    private final Map<ParameterItem, ChannelUID> paramToChannelMapping = new HashMap<>();
+    private final Map<ChannelUID, PollingTier> channelPollingTiers = new HashMap<>();
+
+    SolarmanPollingPlannerTest() {
+        addChannel(FAST_CHANNEL, PollingTier.FAST, 0x10);
+        addChannel(NORMAL_CHANNEL, PollingTier.NORMAL, 0x45);
+        addChannel(ONCE_CHANNEL, PollingTier.ONCE, 0x12);
+    }
+
+    @Test
+    void testTicksAtCommonDivisorOfIntervals() {
+        assertEquals(1, planner(5, 7, 600, Set.of()).getTickInterval());
+        assertEquals(2, planner(4, 6, 600, Set.of()).getTickInterval());
+        assertEquals(5, planner(5, 30, 600, Set.of()).getTickInterval());
+    }
+
+    @Test
+    void testIntervalsAreNotRoundedToTheTick() {
+        assertEquals(List.of(7_000L), intervalsBetweenPolls(planner(5, 7, 600, Set.of()), PollingTier.NORMAL,
+                100_000));
+        assertEquals(List.of(6_000L), intervalsBetweenPolls(planner(4, 6, 600, Set.of()), PollingTier.NORMAL,
+                100_000));
+        assertEquals(List.of(4_000L), intervalsBetweenPolls(planner(4, 6, 600, Set.of()), PollingTier.FAST,
+                100_000));
+    }
+
+    @Test
+    void testSpreadsPollsOfEachTierOverItsInterval() {
+        int[] normalBuckets = new int[10];
+        int[] slowBuckets = new int[10];
+        for (int i = 0; i < 100; i++) {
+            String pollingKey = "solarman:logger:inverter" + i;
+            List<Long> normalPolls = pollTimes(planner(pollingKey, 5, 30, 600, Set.of()), pollingKey,
+                    PollingTier.NORMAL, RESTART_TIME, 600_000);
+            List<Long> slowPolls = pollTimes(planner(pollingKey, 5, 30, 600, Set.of()), pollingKey,
+                    PollingTier.SLOW, RESTART_TIME, 600_000);
+
+            // Every tier is first read within its interval, not all of them on the first tick
+            assertTrue(normalPolls.get(0) - RESTART_TIME < 30_000);
+            assertEquals(1, slowPolls.size());
+            normalBuckets[(int) (Math.floorMod(normalPolls.get(0), 30_000L) * normalBuckets.length / 30_000)]++;
+            slowBuckets[(int) (Math.floorMod(slowPolls.get(0), 600_000L) * slowBuckets.length / 600_000)]++;
+        }
+
+        for (int bucket : normalBuckets) {
+            assertTrue(bucket > 0 && bucket < 25, "Normal polls bunched in one part of the interval");
+        }
+        for (int bucket : slowBuckets) {
+            assertTrue(bucket > 0 && bucket < 25, "Slow polls bunched in one part of the interval");
+        }
+    }
+
+    @Test
+    void testKeepsSameSlotsAcrossRestarts() {
+        List<Long> normalPolls = pollTimes(planner(5, 30, 600, Set.of()), POLLING_KEY, PollingTier.NORMAL,
+                RESTART_TIME, 100_000);
+        List<Long> normalPollsAfterRestart = pollTimes(planner(5, 30, 600, Set.of()), POLLING_KEY,
+                PollingTier.NORMAL, RESTART_TIME + 3_601_234, 100_000);
+
+        assertEquals(Math.floorMod(normalPolls.get(0), 30_000L),
+                Math.floorMod(normalPollsAfterRestart.get(0), 30_000L));
+    }
+
+    @Test
+    void testOnceTierIsOnlyMarkedOnceAllItsRegistersWereRead() {
+        SolarmanPollingPlanner planner = planner(5, 30, 600, Set.of(ONCE_CHANNEL, NORMAL_CHANNEL));
+        assertTrue(planner.getDuePollingTiers(0).contains(PollingTier.ONCE));
+
+        planner.markPolled(Set.of(PollingTier.ONCE), 0, parameterItem -> false);
+        assertTrue(planner.getDuePollingTiers(5_000).contains(PollingTier.ONCE));
+
+        // The other ranges of the poll being read is not enough
+        planner.markPolled(Set.of(PollingTier.ONCE, PollingTier.NORMAL), 5_000,
+                parameterItem -> paramToChannelMapping.get(parameterItem) != ONCE_CHANNEL);
+        assertTrue(planner.getDuePollingTiers(10_000).contains(PollingTier.ONCE));
+
+        planner.markPolled(Set.of(PollingTier.ONCE), 10_000, parameterItem -> true);
+        assertFalse(planner.getDuePollingTiers(3_600_000).contains(PollingTier.ONCE));
+
+        // Channels linked later still get a value
+        planner.channelUnlinked(ONCE_CHANNEL);
+        planner.channelLinked(ONCE_CHANNEL);
+        assertTrue(planner.getDuePollingTiers(3_605_000).contains(PollingTier.ONCE));
+    }
+
+    @Test
+    void testPlansLinkedChannelsOfDueTiers() {
+        SolarmanPollingPlanner planner = planner(5, 30, 600, Set.of(FAST_CHANNEL, NORMAL_CHANNEL));
+
+        SolarmanPollingPlan fastPlan = planner.getPollingPlan(Set.of(PollingTier.FAST));
+        assertEquals("03:0010-0010", toString(fastPlan.requests()));
+        assertEquals(Set.of(FAST_CHANNEL), Set.copyOf(fastPlan.paramToChannelMapping().values()));
+
+        SolarmanPollingPlan plan = planner.getPollingPlan(Set.of(PollingTier.FAST, PollingTier.NORMAL,
+                PollingTier.ONCE));
+        assertEquals("03:0010-0010,03:0045-0045", toString(plan.requests()));
+        assertEquals(Set.of(FAST_CHANNEL, NORMAL_CHANNEL), Set.copyOf(plan.paramToChannelMapping().values()));
+
+        // The plan is recomputed once a channel is linked
+        planner.channelLinked(ONCE_CHANNEL);
+        plan = planner.getPollingPlan(Set.of(PollingTier.FAST, PollingTier.NORMAL, PollingTier.ONCE));
+        assertEquals("03:0010-0012,03:0045-0045", toString(plan.requests()));
+    }
+
+    @Test
+    void testKeepsReadingOneRegisterWithoutLinkedChannels() {
+        SolarmanPollingPlanner planner = planner(5, 30, 600, Set.of());
+
+        assertEquals("03:0010-0010", toString(planner.getPollingPlan(Set.of(PollingTier.NORMAL)).requests()));
+        assertTrue(planner.getPollingPlan(Set.of(PollingTier.FAST)).requests().isEmpty());
+    }
+
+    private SolarmanPollingPlanner planner(int fastRefreshInterval, int refreshInterval, int slowRefreshInterval,
+                                           Set<ChannelUID> linkedChannels) {
+        return planner(POLLING_KEY, fastRefreshInterval, refreshInterval, slowRefreshInterval, linkedChannels);
+    }
+
+    private SolarmanPollingPlanner planner(String pollingKey, int fastRefreshInterval, int refreshInterval,
+                                           int slowRefreshInterval, Set<ChannelUID> linkedChannels) {
+        SolarmanLoggerConfiguration config = new SolarmanLoggerConfiguration("localhost", 8899, "1234567890",
+                "deye_sg04lp3", refreshInterval, null);
+        config.fastRefreshInterval = fastRefreshInterval;
+        config.slowRefreshInterval = slowRefreshInterval;
+        return new SolarmanPollingPlanner(pollingKey, config, AVAILABLE_REQUESTS, paramToChannelMapping, channelPollingTiers,
+                linkedChannels::contains);
+    }
+
+    /**
+     * Ticks the planner from the given time, at the phase the scheduler gives the key, and returns when the tier was
+     * polled
+     */
+    private static List<Long> pollTimes(SolarmanPollingPlanner planner, String pollingKey, PollingTier pollingTier,
+                                        long start, long durationMillis) {
+        long tickMillis = planner.getTickInterval() * 1000;
+        long firstTick = start + Math.floorMod(SolarmanPollScheduler.phaseOf(pollingKey, tickMillis) - start,
+                tickMillis);
+        List<Long> pollTimes = new ArrayList<>();
+        for (long now = firstTick; now < start + durationMillis; now += tickMillis) {
+            Set<PollingTier> duePollingTiers = planner.getDuePollingTiers(now);
+            if (duePollingTiers.contains(pollingTier))
+                pollTimes.add(now);
+            planner.markPolled(duePollingTiers, now, parameterItem -> true);
+        }
+        return pollTimes;
+    }
+
+    /**
+     * @return the distinct intervals between two polls of the tier
+     */
+    private static List<Long> intervalsBetweenPolls(SolarmanPollingPlanner planner, PollingTier pollingTier,
+                                                    long durationMillis) {
+        List<Long> pollTimes = pollTimes(planner, POLLING_KEY, pollingTier, RESTART_TIME, durationMillis);
+        List<Long> intervals = new ArrayList<>();
+        for (int i = 1; i < pollTimes.size(); i++) {
+            long interval = pollTimes.get(i) - pollTimes.get(i - 1);
+            if (!intervals.contains(interval))
+                intervals.add(interval);
+        }
+        return intervals;
+    }
+
+    private void addChannel(ChannelUID channelUID, PollingTier pollingTier, int register) {
+        paramToChannelMapping.put(new ParameterItem(channelUID.getId(), "", "", "", BigDecimal.ONE, 1,
+                List.of(register), "", new Validation(), BigDecimal.ZERO, false), channelUID);
+        channelPollingTiers.put(channelUID, pollingTier);
+    }
+
+    private static String toString(List<Request> requests) {
+        return requests.stream()
+                .map(request -> String.format("%02X:%04X-%04X", request.getMbFunctioncode(), request.getStart(),
+                        request.getEnd()))
+                .collect(Collectors.joining(","));
+    }
+}
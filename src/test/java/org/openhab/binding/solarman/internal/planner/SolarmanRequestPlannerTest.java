@@ -0,0 +1,95 @@
+package org.openhab.binding.solarman.internal.planner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+
+class SolarmanRequestPlannerTest {
+
+    @Test
+    void testMergesOverlappingAndAdjacentRanges() {
+        List<Request> planned = new SolarmanRequestPlanner(0).planRequests(List.of(
+                new Request(0x03, 0x10, 0x20),
+                new Request(0x03, 0x18, 0x30),
+                new Request(0x03, 0x31, 0x40)));
+
+        assertEquals("03:0010-0040", toString(planned));
+    }
+
+    @Test
+    void testKeepsFunctionCodesSeparate() {
+        List<Request> planned = new SolarmanRequestPlanner(0).planRequests(List.of(
+                new Request(0x04, 0x10, 0x20),
+                new Request(0x03, 0x10, 0x20)));
+
+        assertEquals("03:0010-0020,04:0010-0020", toString(planned));
+    }
+
+    @Test
+    void testHonorsMaximumGap() {
+        List<Request> ranges = List.of(
+                new Request(0x03, 0x10, 0x20),
+                new Request(0x03, 0x25, 0x30));
+
+        assertEquals("03:0010-0020,03:0025-0030", toString(new SolarmanRequestPlanner(3).planRequests(ranges)));
+        assertEquals("03:0010-0030", toString(new SolarmanRequestPlanner(4).planRequests(ranges)));
+    }
+
+    @Test
+    void testSplitsOversizedRanges() {
+        // kstar_hybrid reads 3000-3125 which is one register over the limit
+        List<Request> planned = new SolarmanRequestPlanner(0).planRequests(List.of(
+                new Request(0x04, 3000, 3125),
+                new Request(0x04, 3125, 3200)));
+
+        assertEquals(2, planned.size());
+        assertEquals(3000, planned.get(0).getStart());
+        assertEquals(3124, planned.get(0).getEnd());
+        assertEquals(3125, planned.get(1).getStart());
+        assertEquals(3200, planned.get(1).getEnd());
+    }
+
+    @Test
+    void testRespectsLimitAcrossGaps() {
+        List<Request> planned = new SolarmanRequestPlanner(30).planRequests(List.of(
+                new Request(0x04, 3000, 3200),
+                new Request(0x04, 3228, 3500)));
+
+        assertEquals(5, planned.size());
+        assertTrue(planned.stream().allMatch(
+                request -> request.getEnd() - request.getStart() < SolarmanRequestPlanner.MAX_REGISTERS_PER_REQUEST));
+        assertEquals(3000, planned.get(0).getStart());
+        assertEquals(3500, planned.get(4).getEnd());
+    }
+
+    @Test
+    void testIgnoresInvalidRanges() {
+        List<Request> planned = new SolarmanRequestPlanner(0).planRequests(List.of(
+                new Request(0x03, 0x20, 0x10),
+                new Request(0x03, 0x30, 0x30)));
+
+        assertEquals("03:0030-0030", toString(planned));
+    }
+
+    @Test
+    void testPlansOnlyNeededRegisters() {
+        List<Request> planned = new SolarmanRequestPlanner(0).planRequestsForRegisters(List.of(
+                new Request(0x03, 0x0003, 0x0059),
+                new Request(0x03, 0x0202, 0x022E),
+                new Request(0x03, 0x024A, 0x024F)),
+                List.of(0x0210, 0x0203, 0x0216, 0x0217, 0x0300));
+
+        assertEquals("03:0203-0217", toString(planned));
+    }
+
+    private static String toString(List<Request> requests) {
+        return requests.stream()
+                .map(request -> String.format("%02X:%04X-%04X", request.getMbFunctioncode(), request.getStart(),
+                        request.getEnd()))
+                .collect(Collectors.joining(","));
+    }
+}
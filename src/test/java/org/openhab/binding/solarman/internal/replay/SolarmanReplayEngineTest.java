@@ -0,0 +1,245 @@
+package org.openhab.binding.solarman.internal.replay;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openhab.binding.solarman.internal.DefinitionParser;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.defmodel.InverterDefinition;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.binding.solarman.internal.history.RegisterSnapshotStore;
+import org.openhab.binding.solarman.internal.modbus.CRC16Modbus;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.openhab.binding.solarman.internal.planner.SolarmanRequestPlanner;
+import org.openhab.binding.solarman.internal.replay.SolarmanReplayEngine.ReplayResult;
+
+class SolarmanReplayEngineTest {
+    private static final long START = 1_714_557_600_000L;
+    private static final DateTimeFormatter LOG_TIME_FORMAT = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+    private static final String LOG_PREFIX = " [DEBUG] [internal.modbus.SolarmanLoggerConnection] - ";
+
+    private final InverterDefinition inverterDefinition = Objects.requireNonNull(
+            new DefinitionParser().parseDefinition("deye_sg04lp3"));
+    private final List<Request> requests = new SolarmanRequestPlanner(0)
+            .planRequests(inverterDefinition.getRequests());
+    private final FrameBuilder frameBuilder = new FrameBuilder(1234567890L);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testFrameLogAndSnapshotsDecodeTheSame() throws Exception {
+        List<RegisterBank> polls = List.of(randomRegisters(1), randomRegisters(2), randomRegisters(3));
+
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < polls.size(); i++) {
+            // The last poll is pipelined, its responses arrive out of order
+            appendPoll(log, START + i * 60_000L, polls.get(i), i == polls.size() - 1);
+        }
+        try (RegisterSnapshotStore store = new RegisterSnapshotStore(directory, 1 << 16, Long.MAX_VALUE)) {
+            for (int i = 0; i < polls.size(); i++) {
+                store.append(START + i * 60_000L, polls.get(i));
+            }
+        }
+
+        List<String> frameLogStates = new ArrayList<>();
+        ReplayResult frameLogResult = new SolarmanReplayEngine(inverterDefinition,
+                (channelUID, state) -> frameLogStates.add(channelUID.getId() + "=" + state), 0)
+                .replayFrameLog(new StringReader(log.toString()), ZoneOffset.UTC);
+        List<String> snapshotStates = new ArrayList<>();
+        ReplayResult snapshotResult = new SolarmanReplayEngine(inverterDefinition,
+                (channelUID, state) -> snapshotStates.add(channelUID.getId() + "=" + state), 0)
+                .replaySnapshots(directory, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(3, frameLogResult.polls());
+        assertEquals(3L * requests.size(), frameLogResult.frames());
+        assertEquals(3, snapshotResult.polls());
+        assertFalse(frameLogStates.isEmpty());
+        assertEquals(frameLogStates.size(), frameLogResult.channelUpdates());
+        assertEquals(frameLogStates, snapshotStates);
+    }
+
+    @Test
+    void testSplitsPollsOnRepeatedRequests() throws Exception {
+        StringBuilder log = new StringBuilder();
+        appendPoll(log, START, randomRegisters(1), false);
+        appendPoll(log, START + 60_000L, randomRegisters(2), false);
+        // Without the lines of the channel updater
+        String frames = log.toString().lines().filter(line -> line.contains(" frame: "))
+                .reduce("", (lines, line) -> lines + line + "\n");
+
+        FrameLogReader frameLogReader = new FrameLogReader(new StringReader(frames), ZoneOffset.UTC);
+        RecordedPoll firstPoll = frameLogReader.nextPoll();
+        RecordedPoll secondPoll = frameLogReader.nextPoll();
+
+        assertNotNull(firstPoll);
+        assertNotNull(secondPoll);
+        assertNull(frameLogReader.nextPoll());
+        assertEquals(START, firstPoll.timestamp());
+        assertEquals(START + 60_000L, secondPoll.timestamp());
+        assertEquals(requests.size(), secondPoll.exchanges().size());
+    }
+
+    @Test
+    void testTellsApartPollsOfSeveralLoggers() throws Exception {
+        FrameBuilder otherFrameBuilder = new FrameBuilder(2345678901L);
+        StringBuilder log = new StringBuilder();
+        StringBuilder interleavedLog = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            long timestamp = START + i * 60_000L;
+            List<String> lines = pollLines(frameBuilder, timestamp, randomRegisters(i), true);
+            List<String> otherLines = pollLines(otherFrameBuilder, timestamp, randomRegisters(10 + i), i == 1);
+            lines.forEach(line -> log.append(line).append('\n'));
+
+            // Both things fetch at once, their markers come first and their frames are interleaved
+            interleavedLog.append(lines.get(0)).append('\n').append(otherLines.get(0)).append('\n');
+            for (int j = 1; j < Math.max(lines.size(), otherLines.size()); j++) {
+                if (j < lines.size())
+                    interleavedLog.append(lines.get(j)).append('\n');
+                if (j < otherLines.size())
+                    interleavedLog.append(otherLines.get(j)).append('\n');
+            }
+        }
+
+        FrameLogReader frameLogReader = new FrameLogReader(new StringReader(interleavedLog.toString()),
+                ZoneOffset.UTC);
+        int polls = 0;
+        RecordedPoll recordedPoll;
+        while ((recordedPoll = frameLogReader.nextPoll()) != null) {
+            polls++;
+            assertEquals(requests.size(), recordedPoll.exchanges().size());
+            assertEquals(START + (polls - 1) / 2 * 60_000L, recordedPoll.timestamp());
+            for (RecordedPoll.Exchange exchange : recordedPoll.exchanges()) {
+                assertEquals(recordedPoll.serialNumber(), FrameLogReader.serialNumberOf(exchange.requestFrame()));
+                assertEquals(recordedPoll.serialNumber(), FrameLogReader.serialNumberOf(exchange.responseFrame()));
+                assertEquals(exchange.requestFrame()[5], exchange.responseFrame()[5]);
+            }
+        }
+        assertEquals(6, polls);
+
+        List<String> states = new ArrayList<>();
+        new SolarmanReplayEngine(inverterDefinition,
+                (channelUID, state) -> states.add(channelUID.getId() + "=" + state), 0)
+                .replayFrameLog(new StringReader(log.toString()), ZoneOffset.UTC);
+        List<String> filteredStates = new ArrayList<>();
+        ReplayResult filteredResult = new SolarmanReplayEngine(inverterDefinition,
+                (channelUID, state) -> filteredStates.add(channelUID.getId() + "=" + state), 0)
+                .replayFrameLog(new StringReader(interleavedLog.toString()), ZoneOffset.UTC, 1234567890L);
+
+        assertEquals(3, filteredResult.polls());
+        assertFalse(states.isEmpty());
+        assertEquals(states, filteredStates);
+    }
+
+    private void appendPoll(StringBuilder log, long timestamp, RegisterBank registerBank, boolean pipelined) {
+        pollLines(frameBuilder, timestamp, registerBank, pipelined).forEach(line -> log.append(line).append('\n'));
+    }
+
+    private List<String> pollLines(FrameBuilder frameBuilder, long timestamp, RegisterBank registerBank,
+                                   boolean pipelined) {
+        String time = LOG_TIME_FORMAT.format(Instant.ofEpochMilli(timestamp));
+        List<String> lines = new ArrayList<>();
+        lines.add(time + " [DEBUG] [internal.updater.SolarmanChannelUpdater] - Fetching data from logger");
+
+        List<byte[]> requestFrames = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            byte[] requestFrame = frameBuilder.requestFrame(i, requests.get(i));
+            requestFrames.add(requestFrame);
+            lines.add(time + LOG_PREFIX + "Request frame: " + hex(requestFrame));
+            if (!pipelined)
+                lines.add(responseLine(time, requestFrame, requests.get(i), registerBank));
+        }
+
+        if (pipelined) {
+            for (int i = requests.size() - 1; i >= 0; i--) {
+                lines.add(responseLine(time, requestFrames.get(i), requests.get(i), registerBank));
+            }
+        }
+        return lines;
+    }
+
+    private String responseLine(String time, byte[] requestFrame, Request request, RegisterBank registerBank) {
+        return time + LOG_PREFIX + "Response frame: "
+                + hex(FrameBuilder.responseFrame(requestFrame, request, registerBank));
+    }
+
+    private RegisterBank randomRegisters(long seed) {
+        Random random = new Random(seed);
+        RegisterBank registerBank = new RegisterBank();
+        for (Request request : requests) {
+            for (int register = request.getStart(); register <= request.getEnd(); register++) {
+                registerBank.put(register, (short) random.nextInt(2000));
+            }
+        }
+        return registerBank;
+    }
+
+    private static String hex(byte[] frame) {
+        StringBuilder hex = new StringBuilder(frame.length * 2);
+        for (byte b : frame) {
+            hex.append(String.format("%02X", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Builds the frames the logger would exchange, the request ones with the protocol itself
+     */
+    private static class FrameBuilder extends SolarmanV5Protocol {
+        private FrameBuilder(long serialNumber) {
+            super(new SolarmanLoggerConfiguration("127.0.0.1", 8899, String.valueOf(serialNumber), "deye_sg04lp3", 60,
+                    null));
+        }
+
+        private byte[] requestFrame(int sequenceNumber, Request request) {
+            return buildSolarmanV5Frame(sequenceNumber, (byte) request.getMbFunctioncode().intValue(),
+                    request.getStart(), request.getEnd()).clone();
+        }
+
+        private static byte[] responseFrame(byte[] requestFrame, Request request, RegisterBank registerBank) {
+            int registerCount = request.getEnd() - request.getStart() + 1;
+            int modbusLength = 3 + registerCount * 2 + 2;
+            int payloadLength = 14 + modbusLength;
+            byte[] frame = new byte[11 + payloadLength + 2];
+
+            frame[0] = (byte) 0xA5;
+            frame[1] = (byte) payloadLength;
+            frame[2] = (byte) (payloadLength >> 8);
+            frame[3] = (byte) 0x10;
+            frame[4] = (byte) 0x15;
+            frame[5] = requestFrame[5];
+            System.arraycopy(requestFrame, 7, frame, 7, 4);
+            frame[11] = (byte) 0x02;
+            frame[12] = (byte) 0x01;
+
+            int modbusOffset = 25;
+            frame[modbusOffset] = (byte) 0x01;
+            frame[modbusOffset + 1] = (byte) request.getMbFunctioncode().intValue();
+            frame[modbusOffset + 2] = (byte) (registerCount * 2);
+            for (int i = 0; i < registerCount; i++) {
+                short value = registerBank.get(request.getStart() + i);
+                frame[modbusOffset + 3 + i * 2] = (byte) (value >> 8);
+                frame[modbusOffset + 4 + i * 2] = (byte) value;
+            }
+            int crc = CRC16Modbus.calculate(frame, modbusOffset, modbusLength - 2);
+            frame[modbusOffset + modbusLength - 2] = (byte) crc;
+            frame[modbusOffset + modbusLength - 1] = (byte) (crc >> 8);
+
+            frame[frame.length - 1] = (byte) 0x15;
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.core.library.types.DecimalType;
+
+class ChannelStateFilterTest {
+    private static final long MAX_SILENCE = 60_000;
+
+    @Test
+    void testSkipsUnchangedRegisters() {
+        ChannelStateFilter channelStateFilter = new ChannelStateFilter(new int[]{0x10}, null, MAX_SILENCE);
+        RegisterBank registerBank = registerBank(100);
+
+        assertFalse(channelStateFilter.isUnchanged(registerBank, 0));
+        channelStateFilter.published(new DecimalType(100), registerBank, 0);
+
+        assertTrue(channelStateFilter.isUnchanged(registerBank, 1000));
+        assertFalse(channelStateFilter.isUnchanged(registerBank(101), 1000));
+    }
+
+    @Test
+    void testPublishesAfterMaxSilence() {
+        ChannelStateFilter channelStateFilter = new ChannelStateFilter(new int[]{0x10}, Deadband.fromString("10"),
+                MAX_SILENCE);
+        RegisterBank registerBank = registerBank(100);
+        channelStateFilter.published(new DecimalType(100), registerBank, 0);
+
+        assertFalse(channelStateFilter.isUnchanged(registerBank, MAX_SILENCE));
+        assertTrue(channelStateFilter.shouldPublish(new DecimalType(101), MAX_SILENCE));
+    }
+
+    @Test
+    void testAbsoluteDeadband() {
+        ChannelStateFilter channelStateFilter = new ChannelStateFilter(new int[]{0x10}, Deadband.fromString("0.5"),
+                MAX_SILENCE);
+        channelStateFilter.published(new DecimalType(new BigDecimal("10.0")), registerBank(100), 0);
+
+        assertFalse(channelStateFilter.shouldPublish(new DecimalType(new BigDecimal("10.4")), 1000));
+        assertFalse(channelStateFilter.shouldPublish(new DecimalType(new BigDecimal("9.6")), 1000));
+        assertTrue(channelStateFilter.shouldPublish(new DecimalType(new BigDecimal("10.5")), 1000));
+    }
+
+    @Test
+    void testPercentDeadband() {
+        ChannelStateFilter channelStateFilter = new ChannelStateFilter(new int[]{0x10}, Deadband.fromString("2 %"),
+                MAX_SILENCE);
+        channelStateFilter.published(new DecimalType(1000), registerBank(1000), 0);
+
+        assertFalse(channelStateFilter.shouldPublish(new DecimalType(1019), 1000));
+        assertTrue(channelStateFilter.shouldPublish(new DecimalType(1020), 1000));
+    }
+
+    @Test
+    void testInvalidDeadbands() {
+        assertNull(Deadband.fromString(null));
+        assertNull(Deadband.fromString(" "));
+        assertNull(Deadband.fromString("abc"));
+        assertNull(Deadband.fromString("-1"));
+    }
+
+    private static RegisterBank registerBank(int value) {
+        RegisterBank registerBank = new RegisterBank();
+        registerBank.put(0x10, (short) value);
+        return registerBank;
+    }
+}
@@ -0,0 +1,123 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.defmodel.LookupEntry;
+import org.openhab.binding.solarman.internal.defmodel.LookupTable;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StringType;
+
+class ParameterDecoderTest {
+    @Test
+    void testUnsignedValueWithScale() {
+        RegisterBank registerBank = registerBank(0x10, 0x0001, 0x0002);
+
+        ParameterDecoder parameterDecoder = compile(1, List.of(0x10, 0x11), new BigDecimal("0.1"), null);
+
+        assertEquals(new DecimalType(new BigDecimal("13107.3")), parameterDecoder.decode(registerBank));
+    }
+
+    @Test
+    void testSignedValueWithOffset() {
+        RegisterBank registerBank = registerBank(0x10, 0xFFFF);
+
+        ParameterDecoder parameterDecoder = compile(2, List.of(0x10), null, new BigDecimal("10"));
+
+        assertEquals(new DecimalType(new BigDecimal("-11")), parameterDecoder.decode(registerBank));
+    }
+
+    @Test
+    void testUnsignedValueOverflowingLong() {
+        RegisterBank registerBank = registerBank(0x10, 0xFFFF, 0xFFFF, 0xFFFF, 0xFFFF);
+
+        ParameterDecoder parameterDecoder = compile(3, List.of(0x10, 0x11, 0x12, 0x13), null, null);
+
+        assertEquals(new DecimalType(new BigDecimal("18446744073709551615")), parameterDecoder.decode(registerBank));
+    }
+
+    @Test
+    void testStringValues() {
+        RegisterBank registerBank = registerBank(0x10, 0x4142, 0x1234, 0x0905);
+
+        assertEquals(new StringType("AB"), compile(5, List.of(0x10), null, null).decode(registerBank));
+        assertEquals(new StringType("1.2.3.4"), compile(7, List.of(0x11), null, null).decode(registerBank));
+        assertEquals(new StringType("23:09"), compile(9, List.of(0x12), null, null).decode(registerBank));
+        assertEquals(new StringType("[0x905,0x1234]"), compile(6, List.of(0x11, 0x12), null, null)
+                .decode(registerBank));
+    }
+
+    @Test
+    void testMissingRegisters() {
+        RegisterBank registerBank = registerBank(0x10, 0x0001);
+
+        assertFalse(compile(1, List.of(0x10, 0x11), null, null).canDecode(registerBank));
+        assertTrue(compile(1, List.of(0x10), null, null).canDecode(registerBank));
+    }
+
+    @Test
+    void testLookupValues() {
+        RegisterBank registerBank = registerBank(0x10, 0x0002, 0x8000, 0x0005);
+        Map<String, StringType> internedStates = new HashMap<>();
+        ParameterItem status = parameterItem(1, List.of(0x10), new BigDecimal("0.1"), null);
+        status.setLookupTable(LookupTable.compile(List.of(new LookupEntry(0, "Stand-by"), new LookupEntry(2, "Normal"),
+                new LookupEntry(5, "Fault")), internedStates));
+        ParameterItem fault = parameterItem(1, List.of(0x11), null, null);
+        fault.setLookupTable(LookupTable.compile(List.of(new LookupEntry(1, "Normal"),
+                new LookupEntry(0x8000, "Grid loss")), internedStates));
+
+        ParameterDecoder statusDecoder = ParameterDecoder.compile(status);
+        ParameterDecoder faultDecoder = ParameterDecoder.compile(fault);
+
+        assertNotNull(statusDecoder);
+        assertNotNull(faultDecoder);
+        // The scale does not apply to the keys, and the states are the ones built with the lookup
+        assertSame(statusDecoder.decode(registerBank), statusDecoder.decode(registerBank));
+        assertEquals(new StringType("Normal"), statusDecoder.decode(registerBank));
+        assertEquals(new StringType("Grid loss"), faultDecoder.decode(registerBank));
+        assertSame(internedStates.get("Normal"), statusDecoder.decode(registerBank));
+        // Values missing from the lookup are published as they are
+        assertEquals(new StringType("5"), compile(1, List.of(0x12), null, null, List.of(new LookupEntry(0, "Off")))
+                .decode(registerBank));
+    }
+
+    @Test
+    void testUnsupportedRule() {
+        assertNull(ParameterDecoder.compile(parameterItem(42, List.of(0x10), null, null)));
+    }
+
+    private static ParameterDecoder compile(int rule, List<Integer> registers, BigDecimal scale, BigDecimal offset) {
+        ParameterDecoder parameterDecoder = ParameterDecoder.compile(parameterItem(rule, registers, scale, offset));
+        assertNotNull(parameterDecoder);
+        return parameterDecoder;
+    }
+
+    private static ParameterDecoder compile(int rule, List<Integer> registers, BigDecimal scale, BigDecimal offset,
+                                            List<LookupEntry> lookup) {
+        ParameterItem parameterItem = parameterItem(rule, registers, scale, offset);
+        parameterItem.setLookup(lookup);
+        ParameterDecoder parameterDecoder = ParameterDecoder.compile(parameterItem);
+        assertNotNull(parameterDecoder);
+        return parameterDecoder;
+    }
+
+    private static ParameterItem parameterItem(int rule, List<Integer> registers, BigDecimal scale, BigDecimal offset) {
+        return new ParameterItem("Test", "", "", "", scale, rule, registers, "", new Validation(), offset, false);
+    }
+
+    private static RegisterBank registerBank(int firstReg, int... values) {
+        RegisterBank registerBank = new RegisterBank();
+        for (int i = 0; i < values.length; i++) {
+            registerBank.put(firstReg + i, (short) values[i]);
+        }
+        return registerBank;
+    }
+}
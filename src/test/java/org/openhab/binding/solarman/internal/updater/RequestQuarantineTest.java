@@ -0,0 +1,101 @@
+package org.openhab.binding.solarman.internal.updater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.defmodel.Request;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+
+class RequestQuarantineTest {
+    private final RequestQuarantine requestQuarantine = new RequestQuarantine(
+            List.of(new Request(0x03, 0x10, 0x20), new Request(0x03, 0x21, 0x30)));
+    private final Request request = new Request(0x03, 0x10, 0x20);
+
+    @Test
+    void testQuarantinedAfterConsecutiveExceptions() {
+        for (int i = 0; i < RequestQuarantine.MAX_EXCEPTIONS - 1; i++) {
+            requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, 0);
+        }
+        assertFalse(isQuarantined(request, 0));
+
+        requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, 0);
+        assertTrue(isQuarantined(new Request(0x03, 0x10, 0x20), 0));
+        assertFalse(isQuarantined(new Request(0x03, 0x21, 0x30), 0));
+        assertFalse(isQuarantined(new Request(0x04, 0x10, 0x20), 0));
+    }
+
+    @Test
+    void testRetriedOnceQuarantineIsOver() {
+        for (int i = 0; i < RequestQuarantine.MAX_EXCEPTIONS; i++) {
+            requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, 0);
+        }
+
+        long later = RequestQuarantine.QUARANTINE_MILLIS;
+        assertFalse(isQuarantined(request, later));
+
+        // A single exception is enough to quarantine it again
+        requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, later);
+        assertTrue(isQuarantined(request, later + 1));
+    }
+
+    @Test
+    void testOnlySuccessResetsExceptionCount() {
+        for (int i = 0; i < RequestQuarantine.MAX_EXCEPTIONS - 1; i++) {
+            requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, 0);
+        }
+        requestQuarantine.record(request, ReadResult.SUCCESS, 0);
+        requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, 0);
+        assertFalse(isQuarantined(request, 0));
+
+        // Reads the logger did not answer say nothing about the range, they neither count nor reset the exceptions
+        for (int i = 1; i < RequestQuarantine.MAX_EXCEPTIONS; i++) {
+            requestQuarantine.record(request, ReadResult.NO_RESPONSE, 0);
+            assertFalse(isQuarantined(request, 0));
+            requestQuarantine.record(request, ReadResult.MODBUS_EXCEPTION, 0);
+        }
+        assertTrue(isQuarantined(request, 0));
+    }
+
+    @Test
+    void testTrimmedRequestsCountAgainstTheirDefinitionRange() {
+        // The planner trims the range to the linked channels, differently depending on the tiers due
+        requestQuarantine.record(new Request(0x03, 0x10, 0x14), ReadResult.MODBUS_EXCEPTION, 0);
+        requestQuarantine.record(new Request(0x03, 0x12, 0x20), ReadResult.MODBUS_EXCEPTION, 0);
+        requestQuarantine.record(new Request(0x03, 0x18, 0x1A), ReadResult.MODBUS_EXCEPTION, 0);
+
+        assertTrue(isQuarantined(new Request(0x03, 0x15, 0x16), 0));
+    }
+
+    @Test
+    void testMergedRequestSplitBeforeQuarantining() {
+        Request merged = new Request(0x03, 0x18, 0x28);
+        assertSplit(requestQuarantine.split(merged, 0), 0x18, 0x28);
+
+        // Which of the two ranges is refused is not known, nothing is quarantined but they are read apart from now on
+        for (int i = 0; i < RequestQuarantine.MAX_EXCEPTIONS; i++) {
+            requestQuarantine.record(merged, ReadResult.MODBUS_EXCEPTION, 0);
+        }
+        assertSplit(requestQuarantine.split(merged, 0), 0x18, 0x20, 0x21, 0x28);
+
+        // Only the refused one gets quarantined, the other one keeps being read
+        for (int i = 0; i < RequestQuarantine.MAX_EXCEPTIONS; i++) {
+            requestQuarantine.record(new Request(0x03, 0x21, 0x28), ReadResult.MODBUS_EXCEPTION, 0);
+            requestQuarantine.record(new Request(0x03, 0x18, 0x20), ReadResult.SUCCESS, 0);
+        }
+        assertSplit(requestQuarantine.split(merged, 0), 0x18, 0x20);
+    }
+
+    private boolean isQuarantined(Request request, long now) {
+        return requestQuarantine.split(request, now).isEmpty();
+    }
+
+    private static void assertSplit(List<Request> requests, int... bounds) {
+        assertEquals(bounds.length / 2, requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(bounds[2 * i], requests.get(i).getStart());
+            assertEquals(bounds[2 * i + 1], requests.get(i).getEnd());
+        }
+    }
+}
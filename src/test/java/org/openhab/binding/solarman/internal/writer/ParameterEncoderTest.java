@@ -0,0 +1,82 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.defmodel.LookupEntry;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.updater.ParameterDecoder;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StringType;
+
+class ParameterEncoderTest {
+    @Test
+    void testEncodesWhatIsDecoded() {
+        ParameterItem parameterItem = parameterItem(2, List.of(0x10, 0x11), new BigDecimal("0.1"),
+                new BigDecimal("1000"), new Validation());
+        DecimalType command = new DecimalType(new BigDecimal("-12.3"));
+
+        short[] values = compile(parameterItem).encode(command);
+
+        assertNotNull(values);
+        RegisterBank registerBank = new RegisterBank();
+        registerBank.put(0x10, values[0]);
+        registerBank.put(0x11, values[1]);
+        ParameterDecoder parameterDecoder = ParameterDecoder.compile(parameterItem);
+        assertNotNull(parameterDecoder);
+        assertEquals(0, command.toBigDecimal().compareTo(
+                ((DecimalType) parameterDecoder.decode(registerBank)).toBigDecimal()));
+    }
+
+    @Test
+    void testRejectsValuesOutOfRange() {
+        Validation validation = new Validation();
+        validation.setMin(0);
+        validation.setMax(240);
+        ParameterEncoder parameterEncoder = compile(parameterItem(1, List.of(0x10), null, null, validation));
+
+        assertNotNull(parameterEncoder.encode(new DecimalType(240)));
+        assertNull(parameterEncoder.encode(new DecimalType(241)));
+        assertNull(parameterEncoder.encode(new DecimalType(-1)));
+        assertNull(compile(parameterItem(1, List.of(0x10), null, null, new Validation()))
+                .encode(new DecimalType(65536)));
+        assertNull(parameterEncoder.encode(new StringType("100")));
+    }
+
+    @Test
+    void testEncodesLookupLabels() {
+        ParameterItem parameterItem = parameterItem(1, List.of(0x10), new BigDecimal("0.1"), null, new Validation());
+        parameterItem.setLookup(List.of(new LookupEntry(0, "Selling First"), new LookupEntry(2, "Zero Export To CT")));
+        ParameterEncoder parameterEncoder = compile(parameterItem);
+
+        short[] values = parameterEncoder.encode(new StringType("Zero Export To CT"));
+        assertNotNull(values);
+        assertEquals(2, values[0]);
+        values = parameterEncoder.encode(new DecimalType(0));
+        assertNotNull(values);
+        assertEquals(0, values[0]);
+        assertNull(parameterEncoder.encode(new StringType("Unknown")));
+        assertNull(parameterEncoder.encode(new DecimalType(new BigDecimal("0.5"))));
+    }
+
+    @Test
+    void testOnlyNumericRulesAreWritable() {
+        assertNull(ParameterEncoder.compile(parameterItem(5, List.of(0x10), null, null, new Validation())));
+    }
+
+    private static ParameterEncoder compile(ParameterItem parameterItem) {
+        ParameterEncoder parameterEncoder = ParameterEncoder.compile(parameterItem);
+        assertNotNull(parameterEncoder);
+        return parameterEncoder;
+    }
+
+    private static ParameterItem parameterItem(int rule, List<Integer> registers, BigDecimal scale, BigDecimal offset,
+                                               Validation validation) {
+        return new ParameterItem("Test", "", "", "", scale, rule, registers, "", validation, offset, false);
+    }
+}
@@ -0,0 +1,157 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.defmodel.ParameterItem;
+import org.openhab.binding.solarman.internal.defmodel.Validation;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerSimulator;
+import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.openhab.binding.solarman.internal.updater.SolarmanChannelUpdater;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.types.State;
+
+class SolarmanChannelWriterTest {
+    private static final long SERIAL_NUMBER = 1234567890L;
+    private static final ChannelUID WORK_MODE = new ChannelUID("solarman:logger:test:settings_work_mode");
+    private static final ChannelUID CHARGE_CURRENT = new ChannelUID(
+            "solarman:logger:test:settings_battery_max_charge_current");
+
+    private final ParameterItem workModeItem = parameterItem(0x8E, true);
+    private final List<State> workModeStates = new CopyOnWriteArrayList<>();
+    private SolarmanLoggerSimulator simulator;
+    private SolarmanLoggerConnector solarmanLoggerConnector;
+    private ScheduledExecutorService scheduler;
+    private SolarmanChannelWriter solarmanChannelWriter;
+    private SolarmanChannelUpdater solarmanChannelUpdater;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        simulator = new SolarmanLoggerSimulator(SERIAL_NUMBER);
+        SolarmanLoggerConfiguration config = new SolarmanLoggerConfiguration(simulator.getHostname(),
+                simulator.getPort(), String.valueOf(SERIAL_NUMBER), "deye_sg04lp3", 60, null);
+        solarmanLoggerConnector = new SolarmanLoggerConnector(config);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        solarmanChannelWriter = new SolarmanChannelWriter(
+                new SolarmanRegisterWriter(solarmanLoggerConnector, new SolarmanV5Protocol(config), scheduler, 20),
+                Map.of(workModeItem, WORK_MODE, parameterItem(0x6C, false), CHARGE_CURRENT),
+                (channelUID, state) -> {
+                    if (WORK_MODE.equals(channelUID))
+                        workModeStates.add(state);
+                    // As the handler does, the next poll publishes the polled state
+                    SolarmanChannelUpdater solarmanChannelUpdater = this.solarmanChannelUpdater;
+                    if (solarmanChannelUpdater != null)
+                        solarmanChannelUpdater.forgetPublishedState(channelUID);
+                });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        solarmanChannelWriter.dispose();
+        scheduler.shutdownNow();
+        solarmanLoggerConnector.dispose();
+        simulator.close();
+    }
+
+    @Test
+    void testPublishesCommandedStateRightAway() throws Exception {
+        CompletableFuture<WriteResult> writeResult = solarmanChannelWriter.handleCommand(WORK_MODE,
+                new DecimalType(2));
+
+        assertNotNull(writeResult);
+        assertEquals(List.of(new DecimalType(BigDecimal.valueOf(2))), workModeStates);
+        assertEquals(ReadResult.SUCCESS, writeResult.get(10, TimeUnit.SECONDS).writeResult());
+        assertEquals(2, simulator.getRegister(0x03, 0x8E));
+        // Verified by the read back
+        assertEquals(List.of(new DecimalType(BigDecimal.valueOf(2)), new DecimalType(BigDecimal.valueOf(2))),
+                workModeStates);
+    }
+
+    @Test
+    void testPublishesValueReadBackWhenWriteIsIgnored() throws Exception {
+        simulator.setRegister(0x03, 0x8E, 1);
+        simulator.ignoreWrites(0x8E);
+
+        CompletableFuture<WriteResult> writeResult = solarmanChannelWriter.handleCommand(WORK_MODE,
+                new DecimalType(2));
+
+        assertNotNull(writeResult);
+        assertEquals(ReadResult.SUCCESS, writeResult.get(10, TimeUnit.SECONDS).writeResult());
+        assertEquals(List.of(new DecimalType(BigDecimal.valueOf(2)), new DecimalType(BigDecimal.valueOf(1))),
+                workModeStates);
+    }
+
+    @Test
+    void testRestoresPolledStateWhenWriteFails() throws Exception {
+        solarmanChannelWriter.trackPolledStates((channelUID, state) -> {
+        }).updateState(WORK_MODE, new DecimalType(BigDecimal.ONE));
+        simulator.addModbusException(0x8E, 0x02);
+
+        CompletableFuture<WriteResult> writeResult = solarmanChannelWriter.handleCommand(WORK_MODE,
+                new DecimalType(2));
+
+        assertNotNull(writeResult);
+        assertEquals(ReadResult.MODBUS_EXCEPTION, writeResult.get(10, TimeUnit.SECONDS).writeResult());
+        assertEquals(List.of(new DecimalType(BigDecimal.valueOf(2)), new DecimalType(BigDecimal.ONE)),
+                workModeStates);
+    }
+
+    @Test
+    void testNextPollPublishesPolledStateAfterCommand() throws Exception {
+        solarmanChannelUpdater = new SolarmanChannelUpdater(solarmanChannelWriter.trackPolledStates((channelUID,
+                state) -> workModeStates.add(state)), List.of(workModeItem), Map.of(), 300);
+        RegisterBank registerBank = new RegisterBank();
+        registerBank.put(0x8E, (short) 1);
+        assertEquals(1, solarmanChannelUpdater.updateChannels(Map.of(workModeItem, WORK_MODE), registerBank, 0));
+        State polledState = workModeStates.get(0);
+
+        // The write is acknowledged but not applied, and the read back fails
+        simulator.setRegister(0x03, 0x8E, 1);
+        simulator.ignoreWrites(0x8E);
+        simulator.addModbusException(0x03, 0x8E, 0x02);
+        CompletableFuture<WriteResult> writeResult = solarmanChannelWriter.handleCommand(WORK_MODE,
+                new DecimalType(2));
+        assertNotNull(writeResult);
+        assertEquals(ReadResult.SUCCESS, writeResult.get(10, TimeUnit.SECONDS).writeResult());
+        assertEquals(List.of(polledState, new DecimalType(BigDecimal.valueOf(2))), workModeStates);
+
+        // The registers did not change since the previous poll, their state is still published over the command one
+        assertEquals(1, solarmanChannelUpdater.updateChannels(Map.of(workModeItem, WORK_MODE), registerBank, 5_000));
+        assertEquals(List.of(polledState, new DecimalType(BigDecimal.valueOf(2)), polledState), workModeStates);
+        assertEquals(0, solarmanChannelUpdater.updateChannels(Map.of(workModeItem, WORK_MODE), registerBank, 10_000));
+    }
+
+    @Test
+    void testIgnoresCommandsToReadOnlyChannels() {
+        assertFalse(solarmanChannelWriter.isWritable(CHARGE_CURRENT));
+        assertNull(solarmanChannelWriter.handleCommand(CHARGE_CURRENT, new DecimalType(10)));
+        assertNull(solarmanChannelWriter.handleCommand(WORK_MODE, new DecimalType(3)));
+        assertTrue(workModeStates.isEmpty());
+    }
+
+    private static ParameterItem parameterItem(int register, boolean writable) {
+        Validation validation = new Validation();
+        validation.setMin(0);
+        validation.setMax(2);
+        ParameterItem parameterItem = new ParameterItem("Test", "", "", "", BigDecimal.ONE, 1, List.of(register), "",
+                validation, BigDecimal.ZERO, false);
+        parameterItem.setWritable(writable);
+        return parameterItem;
+    }
+}
@@ -0,0 +1,106 @@
+package org.openhab.binding.solarman.internal.writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.solarman.internal.SolarmanLoggerConfiguration;
+import org.openhab.binding.solarman.internal.modbus.ReadResult;
+import org.openhab.binding.solarman.internal.modbus.RegisterBank;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerConnector;
+import org.openhab.binding.solarman.internal.modbus.SolarmanLoggerSimulator;
+import org.openhab.binding.solarman.internal.modbus.SolarmanV5Protocol;
+import org.openhab.binding.solarman.internal.writer.SolarmanRegisterWriter.RegisterRun;
+
+class SolarmanRegisterWriterTest {
+    private static final long SERIAL_NUMBER = 1234567890L;
+
+    private SolarmanLoggerSimulator simulator;
+    private SolarmanLoggerConnector solarmanLoggerConnector;
+    private ScheduledExecutorService scheduler;
+    private SolarmanRegisterWriter solarmanRegisterWriter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        simulator = new SolarmanLoggerSimulator(SERIAL_NUMBER);
+        SolarmanLoggerConfiguration config = new SolarmanLoggerConfiguration(simulator.getHostname(),
+                simulator.getPort(), String.valueOf(SERIAL_NUMBER), "deye_sg04lp3", 60, null);
+        solarmanLoggerConnector = new SolarmanLoggerConnector(config);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        solarmanRegisterWriter = new SolarmanRegisterWriter(solarmanLoggerConnector, new SolarmanV5Protocol(config),
+                scheduler, 50);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        solarmanRegisterWriter.dispose();
+        scheduler.shutdownNow();
+        solarmanLoggerConnector.dispose();
+        simulator.close();
+    }
+
+    @Test
+    void testCoalescesCommandsIntoContiguousWrites() throws Exception {
+        List<CompletableFuture<WriteResult>> writeResults = List.of(
+                solarmanRegisterWriter.write(new int[] { 0x6C }, new short[] { 50 }),
+                solarmanRegisterWriter.write(new int[] { 0x6D }, new short[] { 60 }),
+                solarmanRegisterWriter.write(new int[] { 0x8E }, new short[] { 1 }),
+                // The last command sent to a register wins
+                solarmanRegisterWriter.write(new int[] { 0x6C }, new short[] { 70 }));
+
+        for (CompletableFuture<WriteResult> writeResult : writeResults) {
+            assertEquals(ReadResult.SUCCESS, writeResult.get(10, TimeUnit.SECONDS).writeResult());
+        }
+        // Two writes, each one read back
+        assertEquals(4, simulator.getRequestCount());
+        assertEquals(1, simulator.getConnectionCount());
+        assertEquals(70, simulator.getRegister(0x03, 0x6C));
+        assertEquals(60, simulator.getRegister(0x03, 0x6D));
+        assertEquals(1, simulator.getRegister(0x03, 0x8E));
+
+        RegisterBank readBack = writeResults.get(0).get().readBack();
+        assertEquals(3, readBack.size());
+        assertEquals(70, readBack.get(0x6C));
+    }
+
+    @Test
+    void testReportsRefusedWrites() throws Exception {
+        simulator.addModbusException(0x8E, 0x02);
+
+        CompletableFuture<WriteResult> acceptedWrite = solarmanRegisterWriter.write(new int[] { 0x6C, 0x6D },
+                new short[] { 10, 20 });
+        CompletableFuture<WriteResult> refusedWrite = solarmanRegisterWriter.write(new int[] { 0x8E },
+                new short[] { 2 });
+
+        assertEquals(ReadResult.SUCCESS, acceptedWrite.get(10, TimeUnit.SECONDS).writeResult());
+        assertEquals(ReadResult.MODBUS_EXCEPTION, refusedWrite.get(10, TimeUnit.SECONDS).writeResult());
+        assertEquals(0, simulator.getRegister(0x03, 0x8E));
+    }
+
+    @Test
+    void testSplitsRunsLongerThanOneRequest() {
+        TreeMap<Integer, Short> values = new TreeMap<>();
+        for (int register = 0x100; register < 0x100 + 130; register++) {
+            values.put(register, (short) register);
+        }
+        values.put(0x200, (short) 1);
+
+        List<RegisterRun> registerRuns = SolarmanRegisterWriter.coalesce(values);
+
+        assertEquals(3, registerRuns.size());
+        assertEquals(0x100, registerRuns.get(0).firstRegister());
+        assertEquals(SolarmanV5Protocol.MAX_WRITE_REGISTERS, registerRuns.get(0).values().length);
+        assertEquals(0x100 + SolarmanV5Protocol.MAX_WRITE_REGISTERS, registerRuns.get(1).firstRegister());
+        assertEquals(130 - SolarmanV5Protocol.MAX_WRITE_REGISTERS, registerRuns.get(1).values().length);
+        assertEquals(0x200, registerRuns.get(2).firstRegister());
+        assertEquals(1, registerRuns.get(2).values()[0]);
+    }
+}